@@ -38,6 +38,9 @@ public class Arguments {
 	
 	private List<Path> aliasesFilesPaths = null;
 	
+	@Option(names = { "--client" }, description = "Forward the expression and the files to open to a running daemon, see --daemon. The daemon can be chosen with the \"address\" and \"port\" UI parameters.")
+	private boolean clientRequested = false;
+	
 	@Option(names = { "-c", "--config", "--configuration", "--config-dir",
 			"--configuration-directory" }, paramLabel = "CONFIGDIR", description = "Specify the directory for the configuration files.")
 	private String configurationDirectory = null;
@@ -54,6 +57,9 @@ public class Arguments {
 	
 	private List<Path> conversionsFilesPaths = null;
 	
+	@Option(names = { "--daemon" }, description = "Start a daemon which evaluates the expressions forwarded by clients, see --client. The port can be chosen with the \"port\" UI parameter.")
+	private boolean daemonRequested = false;
+	
 	private String expression = null;
 	
 	@Parameters(paramLabel = "EXPRESSION", description = "The expression to evaluate. By default the expression will be evaluated on the command line, no UI will be started.")
@@ -80,7 +86,7 @@ public class Arguments {
 	@Option(names = { "-u", "--ui" }, arity = "1", description = ""
 			+ "Define what user interface (UI) to start."
 			+ " The given parameter can either be a fully qualified classname, or a class- and packagename relative to the \"org.bonsaimind.jmathpaper.uis\" package."
-			+ " By default you can use \"cli\", \"service\", \"tui\", \"tui2\" and \"gui\" to start the different UIs. For further descriptions please see the README.")
+			+ " By default you can use \"cli\", \"service\", \"server\", \"daemon\", \"http\", \"check\", \"csv\", \"tui\", \"tui2\" and \"gui\" to start the different UIs. For further descriptions please see the README.")
 	private String ui = null;
 	
 	private UiParameters uiParameters = null;
@@ -213,6 +219,14 @@ public class Arguments {
 		return files != null && !files.isEmpty();
 	}
 	
+	public boolean isClientRequested() {
+		return clientRequested;
+	}
+	
+	public boolean isDaemonRequested() {
+		return daemonRequested;
+	}
+	
 	public boolean isHelpRequested() {
 		return helpRequested;
 	}
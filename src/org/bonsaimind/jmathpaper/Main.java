@@ -19,7 +19,10 @@
 
 package org.bonsaimind.jmathpaper;
 
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
 
 import org.bonsaimind.jmathpaper.core.configuration.Configuration;
 import org.bonsaimind.jmathpaper.core.configuration.ConfigurationProcessor;
@@ -27,6 +30,8 @@ import org.bonsaimind.jmathpaper.core.configuration.Definitions;
 import org.bonsaimind.jmathpaper.core.resources.ResourceLoader;
 import org.bonsaimind.jmathpaper.core.ui.Ui;
 import org.bonsaimind.jmathpaper.core.ui.UiLoader;
+import org.bonsaimind.jmathpaper.core.ui.UiParameters;
+import org.bonsaimind.jmathpaper.uis.daemon.DaemonClient;
 
 import picocli.CommandLine;
 import picocli.CommandLine.ParameterException;
@@ -59,15 +64,29 @@ public final class Main {
 			return;
 		}
 		
+		if (arguments.isClientRequested()) {
+			// Nothing else is set up, the daemon has already done that. Only
+			// the token of the daemon is read from the configuration.
+			Configuration.setConfigDirectory(arguments.getConfigurationDirectory());
+			runClient(arguments);
+			return;
+		}
+		
 		Configuration.init(arguments.getConfigurationDirectory());
 		
+		String uiName = arguments.getUi();
+		
+		if (arguments.isDaemonRequested()) {
+			uiName = "daemon";
+		}
+		
 		Ui ui = null;
 		
-		if (arguments.getUi() != null) {
+		if (uiName != null) {
 			try {
-				ui = UiLoader.getUi(arguments.getUi());
+				ui = UiLoader.getUi(uiName);
 			} catch (Exception e) {
-				System.out.println("Given UI \"" + arguments.getUi() + "\" could not be loaded, cause:");
+				System.out.println("Given UI \"" + uiName + "\" could not be loaded, cause:");
 				System.out.println(e.toString());
 				System.exit(1);
 			}
@@ -95,6 +114,8 @@ public final class Main {
 			ui.setDefaultDefinitions(createDefaultDefinitions(arguments));
 			
 			if (arguments.hasFiles()) {
+				// Opening only reads the files, they are evaluated concurrently
+				// in the background and the tabs are added in order.
 				for (Path file : arguments.getFiles()) {
 					ui.open(file);
 				}
@@ -176,4 +197,34 @@ public final class Main {
 		
 		return definitions;
 	}
+	
+	/**
+	 * Forwards the expression and the files from the given {@link Arguments}
+	 * to the running daemon and exits with a non-zero status if that failed.
+	 * 
+	 * @param arguments The {@link Arguments} to use.
+	 */
+	private static final void runClient(Arguments arguments) {
+		UiParameters uiParameters = arguments.getUiParameters();
+		List<Path> files = Collections.emptyList();
+		
+		if (arguments.hasFiles()) {
+			files = arguments.getFiles();
+		}
+		
+		try {
+			if (!DaemonClient.send(
+					uiParameters.getString("address", DaemonClient.DEFAULT_ADDRESS),
+					uiParameters.getInt("port", DaemonClient.DEFAULT_PORT),
+					files,
+					arguments.getExpression(),
+					System.out)) {
+				System.exit(1);
+			}
+		} catch (IOException e) {
+			System.out.println("Failed to reach the daemon, cause:");
+			System.out.println(e.toString());
+			System.exit(1);
+		}
+	}
 }
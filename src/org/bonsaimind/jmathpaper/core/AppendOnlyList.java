@@ -0,0 +1,152 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.core;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * {@link AppendOnlyList} is a {@link List} which only supports appending and
+ * clearing, but can create immutable {@link #snapshot() snapshots} of itself
+ * in constant time.
+ * <p>
+ * The snapshots share the backing array with the list. That is safe because
+ * elements are only ever written behind the last element of any snapshot,
+ * growing copies the array and clearing replaces it.
+ *
+ * @param <E> The type of the elements.
+ */
+final class AppendOnlyList<E> extends AbstractList<E> implements RandomAccess {
+	private static final Object[] EMPTY = new Object[0];
+	private static final int MINIMUM_CAPACITY = 16;
+	private Object[] elements = EMPTY;
+	private int size = 0;
+	
+	/**
+	 * Creates a new instance of {@link AppendOnlyList}.
+	 */
+	public AppendOnlyList() {
+		super();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean add(E element) {
+		if (size == elements.length) {
+			elements = Arrays.copyOf(elements, Math.max(size * 2, MINIMUM_CAPACITY));
+		}
+		
+		elements[size] = element;
+		size++;
+		modCount++;
+		
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void clear() {
+		elements = EMPTY;
+		size = 0;
+		modCount++;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public E get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		
+		return (E)elements[index];
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Creates an immutable snapshot of the current state of this list, which
+	 * is not affected by any later modification of it.
+	 * 
+	 * @return The immutable snapshot.
+	 */
+	public List<E> snapshot() {
+		return new Snapshot<>(elements, size);
+	}
+	
+	/**
+	 * {@link Snapshot} is the immutable view of the first elements of a
+	 * backing array.
+	 *
+	 * @param <E> The type of the elements.
+	 */
+	private static final class Snapshot<E> extends AbstractList<E> implements RandomAccess {
+		private final Object[] elements;
+		private final int size;
+		
+		/**
+		 * Creates a new instance of {@link Snapshot}.
+		 *
+		 * @param elements The backing array.
+		 * @param size The count of elements.
+		 */
+		public Snapshot(Object[] elements, int size) {
+			super();
+			
+			this.elements = elements;
+			this.size = size;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		@SuppressWarnings("unchecked")
+		public E get(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+			
+			return (E)elements[index];
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+}
@@ -0,0 +1,447 @@
+/*
+ * Copyright 2017, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.core;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.FieldPosition;
+import java.text.NumberFormat;
+import java.text.ParsePosition;
+import java.util.Locale;
+
+/**
+ * {@link BigDecimalFormat} is a {@link NumberFormat} which is specialized on
+ * formatting {@link BigDecimal}s with simple {@link DecimalFormat} patterns.
+ * <p>
+ * Only patterns which consist of an integer part with at least one {@code 0},
+ * optionally with grouping separators, and an optional fraction part are
+ * supported, for example {@code ,##0.###} or {@code 0.000}. The output is the
+ * same as the one of a {@link DecimalFormat} with the same pattern, but the
+ * digits are written directly from the unscaled value into a reused buffer.
+ * <p>
+ * Instances are immutable and can be used from multiple threads at the same
+ * time, all setters which would change the format throw an
+ * {@link UnsupportedOperationException}.
+ */
+public class BigDecimalFormat extends NumberFormat {
+	/** The buffer which is reused for every format, per thread. */
+	private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[64]);
+	
+	/** The biggest unscaled value which is formatted through a long. */
+	private static final BigInteger MAX_LONG = BigInteger.valueOf(Long.MAX_VALUE);
+	
+	/** The version of the serialized form. */
+	private static final long serialVersionUID = 1L;
+	
+	/** The character used as decimal separator. */
+	private final char decimalSeparator;
+	
+	/** If the decimal separator is always shown. */
+	private final boolean decimalSeparatorAlwaysShown;
+	
+	/** The character used as grouping separator. */
+	private final char groupingSeparator;
+	
+	/** The size of a group, {@code 0} if no grouping is used. */
+	private final int groupingSize;
+	
+	/** The maximum number of fraction digits. */
+	private final int maximumFractionDigits;
+	
+	/** The minimum number of fraction digits. */
+	private final int minimumFractionDigits;
+	
+	/** The minimum number of integer digits. */
+	private final int minimumIntegerDigits;
+	
+	/** The character used as minus sign. */
+	private final char minusSign;
+	
+	/** The pattern of this format. */
+	private final String pattern;
+	
+	/** The {@link RoundingMode} to use. */
+	private final RoundingMode roundingMode;
+	
+	/** The character used for the zero digit. */
+	private final char zeroDigit;
+	
+	/**
+	 * Creates a new instance of {@link BigDecimalFormat} with the symbols of
+	 * the default {@link Locale}.
+	 *
+	 * @param pattern The pattern.
+	 * @param roundingMode The {@link RoundingMode} to use.
+	 * @throws IllegalArgumentException If the given pattern is not supported.
+	 */
+	public BigDecimalFormat(String pattern, RoundingMode roundingMode) throws IllegalArgumentException {
+		this(pattern, roundingMode, DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT)));
+	}
+	
+	/**
+	 * Creates a new instance of {@link BigDecimalFormat}.
+	 *
+	 * @param pattern The pattern.
+	 * @param roundingMode The {@link RoundingMode} to use.
+	 * @param symbols The {@link DecimalFormatSymbols} to use.
+	 * @throws IllegalArgumentException If the given pattern is not supported.
+	 */
+	public BigDecimalFormat(String pattern, RoundingMode roundingMode, DecimalFormatSymbols symbols) throws IllegalArgumentException {
+		super();
+		
+		if (pattern == null) {
+			throw new IllegalArgumentException("pattern cannot be null.");
+		}
+		
+		if (roundingMode == null) {
+			throw new IllegalArgumentException("roundingMode cannot be null.");
+		}
+		
+		int decimalSeparatorIndex = pattern.indexOf('.');
+		String integerPattern = pattern;
+		String fractionPattern = "";
+		
+		if (decimalSeparatorIndex >= 0) {
+			integerPattern = pattern.substring(0, decimalSeparatorIndex);
+			fractionPattern = pattern.substring(decimalSeparatorIndex + 1);
+		}
+		
+		int integerZeros = 0;
+		int lastGroupingSeparatorIndex = -1;
+		
+		for (int index = 0; index < integerPattern.length(); index++) {
+			char character = integerPattern.charAt(index);
+			
+			if (character == '0') {
+				integerZeros++;
+			} else if (character == '#' && integerZeros == 0) {
+				// Optional digits are only allowed before the zeros.
+			} else if (character == ',') {
+				lastGroupingSeparatorIndex = index;
+			} else {
+				throw new IllegalArgumentException("Unsupported pattern: " + pattern);
+			}
+		}
+		
+		if (integerZeros == 0 || lastGroupingSeparatorIndex == integerPattern.length() - 1) {
+			throw new IllegalArgumentException("Unsupported pattern: " + pattern);
+		}
+		
+		int fractionZeros = 0;
+		int fractionHashes = 0;
+		
+		for (int index = 0; index < fractionPattern.length(); index++) {
+			char character = fractionPattern.charAt(index);
+			
+			if (character == '0' && fractionHashes == 0) {
+				fractionZeros++;
+			} else if (character == '#') {
+				fractionHashes++;
+			} else {
+				throw new IllegalArgumentException("Unsupported pattern: " + pattern);
+			}
+		}
+		
+		this.pattern = pattern;
+		this.roundingMode = roundingMode;
+		
+		decimalSeparator = symbols.getDecimalSeparator();
+		decimalSeparatorAlwaysShown = decimalSeparatorIndex >= 0 && fractionPattern.isEmpty();
+		groupingSeparator = symbols.getGroupingSeparator();
+		minusSign = symbols.getMinusSign();
+		zeroDigit = symbols.getZeroDigit();
+		
+		if (lastGroupingSeparatorIndex >= 0) {
+			groupingSize = integerPattern.length() - lastGroupingSeparatorIndex - 1;
+		} else {
+			groupingSize = 0;
+		}
+		
+		minimumIntegerDigits = integerZeros;
+		minimumFractionDigits = fractionZeros;
+		maximumFractionDigits = fractionZeros + fractionHashes;
+		
+		super.setGroupingUsed(groupingSize > 0);
+		super.setMaximumIntegerDigits(Integer.MAX_VALUE);
+		super.setMinimumIntegerDigits(minimumIntegerDigits);
+		super.setMaximumFractionDigits(maximumFractionDigits);
+		super.setMinimumFractionDigits(minimumFractionDigits);
+	}
+	
+	/**
+	 * Formats the given {@link BigDecimal}.
+	 *
+	 * @param value The {@link BigDecimal} to format.
+	 * @return The formatted value.
+	 */
+	public String format(BigDecimal value) {
+		char[] buffer = BUFFER.get();
+		
+		BigDecimal roundedValue = value.setScale(maximumFractionDigits, roundingMode);
+		BigInteger unscaledValue = roundedValue.unscaledValue().abs();
+		
+		int digitsCount = 0;
+		
+		// The digits are written at the end of the buffer, from there they are
+		// copied to the start while inserting the separators.
+		if (unscaledValue.compareTo(MAX_LONG) <= 0) {
+			long unscaledLongValue = unscaledValue.longValue();
+			
+			buffer = ensureCapacity(buffer, 20);
+			
+			do {
+				digitsCount++;
+				buffer[buffer.length - digitsCount] = (char)(zeroDigit + (int)(unscaledLongValue % 10));
+				unscaledLongValue = unscaledLongValue / 10;
+			} while (unscaledLongValue > 0);
+		} else {
+			String digits = unscaledValue.toString();
+			
+			digitsCount = digits.length();
+			buffer = ensureCapacity(buffer, digitsCount);
+			
+			for (int index = 0; index < digitsCount; index++) {
+				buffer[buffer.length - digitsCount + index] = (char)(zeroDigit + digits.charAt(index) - '0');
+			}
+		}
+		
+		int digitsStart = buffer.length - digitsCount;
+		int integerDigitsCount = Math.max(0, digitsCount - maximumFractionDigits);
+		int fractionDigitsCount = maximumFractionDigits;
+		
+		// Skip the zeros at the end of the fraction which are not required.
+		while (fractionDigitsCount > minimumFractionDigits && getDigit(buffer, digitsStart, digitsCount, digitsCount - maximumFractionDigits + fractionDigitsCount - 1) == zeroDigit) {
+			fractionDigitsCount--;
+		}
+		
+		int paddedIntegerDigitsCount = Math.max(integerDigitsCount, minimumIntegerDigits);
+		int groupingSeparatorsCount = 0;
+		
+		if (groupingSize > 0) {
+			groupingSeparatorsCount = (paddedIntegerDigitsCount - 1) / groupingSize;
+		}
+		
+		int length = 1 + paddedIntegerDigitsCount + groupingSeparatorsCount + 1 + fractionDigitsCount;
+		
+		if ((length + digitsCount) > buffer.length) {
+			char[] newBuffer = new char[length + digitsCount];
+			System.arraycopy(buffer, digitsStart, newBuffer, newBuffer.length - digitsCount, digitsCount);
+			
+			buffer = newBuffer;
+			digitsStart = buffer.length - digitsCount;
+			BUFFER.set(buffer);
+		}
+		
+		int position = 0;
+		
+		if (value.signum() < 0) {
+			buffer[position++] = minusSign;
+		}
+		
+		for (int integerIndex = paddedIntegerDigitsCount - 1; integerIndex >= 0; integerIndex--) {
+			if (integerIndex < integerDigitsCount) {
+				buffer[position++] = buffer[digitsStart + integerDigitsCount - 1 - integerIndex];
+			} else {
+				buffer[position++] = zeroDigit;
+			}
+			
+			if (groupingSize > 0 && integerIndex > 0 && (integerIndex % groupingSize) == 0) {
+				buffer[position++] = groupingSeparator;
+			}
+		}
+		
+		if (fractionDigitsCount > 0 || decimalSeparatorAlwaysShown) {
+			buffer[position++] = decimalSeparator;
+		}
+		
+		for (int fractionIndex = 0; fractionIndex < fractionDigitsCount; fractionIndex++) {
+			buffer[position++] = getDigit(buffer, digitsStart, digitsCount, digitsCount - maximumFractionDigits + fractionIndex);
+		}
+		
+		return new String(buffer, 0, position);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public StringBuffer format(double number, StringBuffer toAppendTo, FieldPosition pos) {
+		return toAppendTo.append(format(BigDecimal.valueOf(number)));
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public StringBuffer format(long number, StringBuffer toAppendTo, FieldPosition pos) {
+		return toAppendTo.append(format(BigDecimal.valueOf(number)));
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public StringBuffer format(Object number, StringBuffer toAppendTo, FieldPosition pos) {
+		if (number instanceof BigDecimal) {
+			return toAppendTo.append(format((BigDecimal)number));
+		} else if (number instanceof BigInteger) {
+			return toAppendTo.append(format(new BigDecimal((BigInteger)number)));
+		} else {
+			return super.format(number, toAppendTo, pos);
+		}
+	}
+	
+	/**
+	 * Gets the pattern of this format.
+	 *
+	 * @return The pattern of this format.
+	 */
+	public String getPattern() {
+		return pattern;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public RoundingMode getRoundingMode() {
+		return roundingMode;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Parsing is delegated to a {@link DecimalFormat} with the same pattern.
+	 */
+	@Override
+	public Number parse(String source, ParsePosition parsePosition) {
+		DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT));
+		symbols.setDecimalSeparator(decimalSeparator);
+		symbols.setGroupingSeparator(groupingSeparator);
+		symbols.setMinusSign(minusSign);
+		symbols.setZeroDigit(zeroDigit);
+		
+		DecimalFormat decimalFormat = new DecimalFormat(pattern, symbols);
+		decimalFormat.setParseBigDecimal(true);
+		
+		return decimalFormat.parse(source, parsePosition);
+	}
+	
+	/**
+	 * Not supported, {@link BigDecimalFormat} is immutable.
+	 *
+	 * @throws UnsupportedOperationException Always.
+	 */
+	@Override
+	public void setGroupingUsed(boolean newValue) {
+		throw new UnsupportedOperationException("BigDecimalFormat is immutable.");
+	}
+	
+	/**
+	 * Not supported, {@link BigDecimalFormat} is immutable.
+	 *
+	 * @throws UnsupportedOperationException Always.
+	 */
+	@Override
+	public void setMaximumFractionDigits(int newValue) {
+		throw new UnsupportedOperationException("BigDecimalFormat is immutable.");
+	}
+	
+	/**
+	 * Not supported, {@link BigDecimalFormat} is immutable.
+	 *
+	 * @throws UnsupportedOperationException Always.
+	 */
+	@Override
+	public void setMaximumIntegerDigits(int newValue) {
+		throw new UnsupportedOperationException("BigDecimalFormat is immutable.");
+	}
+	
+	/**
+	 * Not supported, {@link BigDecimalFormat} is immutable.
+	 *
+	 * @throws UnsupportedOperationException Always.
+	 */
+	@Override
+	public void setMinimumFractionDigits(int newValue) {
+		throw new UnsupportedOperationException("BigDecimalFormat is immutable.");
+	}
+	
+	/**
+	 * Not supported, {@link BigDecimalFormat} is immutable.
+	 *
+	 * @throws UnsupportedOperationException Always.
+	 */
+	@Override
+	public void setMinimumIntegerDigits(int newValue) {
+		throw new UnsupportedOperationException("BigDecimalFormat is immutable.");
+	}
+	
+	/**
+	 * Not supported, {@link BigDecimalFormat} is immutable.
+	 *
+	 * @throws UnsupportedOperationException Always.
+	 */
+	@Override
+	public void setRoundingMode(RoundingMode roundingMode) {
+		throw new UnsupportedOperationException("BigDecimalFormat is immutable.");
+	}
+	
+	/**
+	 * Makes sure that the given buffer has at least the given capacity,
+	 * replacing the buffer of this thread if necessary.
+	 *
+	 * @param buffer The current buffer.
+	 * @param capacity The required capacity.
+	 * @return The buffer with at least the given capacity.
+	 */
+	private char[] ensureCapacity(char[] buffer, int capacity) {
+		if (buffer.length >= capacity) {
+			return buffer;
+		}
+		
+		char[] newBuffer = new char[Math.max(buffer.length * 2, capacity)];
+		BUFFER.set(newBuffer);
+		
+		return newBuffer;
+	}
+	
+	/**
+	 * Gets the digit at the given index from the digits in the buffer, with
+	 * leading zeros if the index is before the first digit.
+	 *
+	 * @param buffer The buffer.
+	 * @param digitsStart The index in the buffer at which the digits start.
+	 * @param digitsCount The count of the digits.
+	 * @param index The index of the digit, relative to the last digit minus
+	 *        the count of digits, can be negative.
+	 * @return The digit at the given index.
+	 */
+	private char getDigit(char[] buffer, int digitsStart, int digitsCount, int index) {
+		if (index < 0) {
+			return zeroDigit;
+		}
+		
+		return buffer[digitsStart + index];
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.core;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * {@link Bindings} holds the values of variables with which a
+ * {@link PreparedExpression} is evaluated.
+ * <p>
+ * The names of the variables are case-insensitive, like all names in
+ * expressions. {@link Bindings} are meant to be cheap and to be reused with
+ * {@link #clear()}, they are not thread-safe.
+ */
+public class Bindings {
+	private static final int INITIAL_CAPACITY = 8;
+	protected String[] names = new String[INITIAL_CAPACITY];
+	protected int size = 0;
+	protected BigDecimal[] values = new BigDecimal[INITIAL_CAPACITY];
+	
+	/**
+	 * Creates a new, empty instance of {@link Bindings}.
+	 */
+	public Bindings() {
+		super();
+	}
+	
+	/**
+	 * Removes all values.
+	 * 
+	 * @return This {@link Bindings}.
+	 */
+	public Bindings clear() {
+		Arrays.fill(names, 0, size, null);
+		Arrays.fill(values, 0, size, null);
+		size = 0;
+		
+		return this;
+	}
+	
+	/**
+	 * Gets the value of the given variable.
+	 * 
+	 * @param name The name of the variable.
+	 * @return The value, {@code null} if no value is bound to the variable.
+	 */
+	public BigDecimal get(String name) {
+		int index = indexOf(name);
+		
+		if (index >= 0) {
+			return values[index];
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Gets the count of bound variables.
+	 * 
+	 * @return The count of bound variables.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Binds the given value to the given variable, replacing any value which
+	 * is already bound to it.
+	 * 
+	 * @param name The name of the variable, must not be {@code null}.
+	 * @param value The value, must not be {@code null}.
+	 * @return This {@link Bindings}.
+	 */
+	public Bindings with(String name, BigDecimal value) {
+		if (name == null) {
+			throw new IllegalArgumentException("name cannot be null.");
+		}
+		if (value == null) {
+			throw new IllegalArgumentException("value cannot be null.");
+		}
+		
+		int index = indexOf(name);
+		
+		if (index < 0) {
+			if (size == names.length) {
+				names = Arrays.copyOf(names, size * 2);
+				values = Arrays.copyOf(values, size * 2);
+			}
+			
+			index = size;
+			names[index] = name;
+			size++;
+		}
+		
+		values[index] = value;
+		
+		return this;
+	}
+	
+	/**
+	 * Binds the given value to the given variable, replacing any value which
+	 * is already bound to it.
+	 * 
+	 * @param name The name of the variable, must not be {@code null}.
+	 * @param value The value, must be a valid number.
+	 * @return This {@link Bindings}.
+	 * @throws NumberFormatException If the value is not a valid number.
+	 */
+	public Bindings with(String name, String value) {
+		return with(name, new BigDecimal(value));
+	}
+	
+	private int indexOf(String name) {
+		for (int index = 0; index < size; index++) {
+			if (names[index].equalsIgnoreCase(name)) {
+				return index;
+			}
+		}
+		
+		return -1;
+	}
+}
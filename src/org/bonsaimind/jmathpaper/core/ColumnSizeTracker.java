@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.core;
+
+import java.util.Arrays;
+
+/**
+ * {@link ColumnSizeTracker} keeps track of the sizes of all values in a column
+ * and their maximum.
+ * <p>
+ * Internally it keeps a count of how many values there are for every size, so
+ * that sizes can be added and removed in constant time without having to
+ * measure all other values again to find the new maximum.
+ */
+public final class ColumnSizeTracker {
+	/** The count of values, indexed by their size. */
+	private int[] counts = new int[64];
+	
+	/** The current maximum. */
+	private int maximum = 0;
+	
+	/**
+	 * Creates a new instance of {@link ColumnSizeTracker}.
+	 */
+	public ColumnSizeTracker() {
+		super();
+	}
+	
+	/**
+	 * Adds the given size.
+	 * 
+	 * @param size The size to add.
+	 */
+	public void add(int size) {
+		if (size >= counts.length) {
+			counts = Arrays.copyOf(counts, Math.max(counts.length * 2, size + 1));
+		}
+		
+		counts[size] = counts[size] + 1;
+		
+		maximum = Math.max(maximum, size);
+	}
+	
+	/**
+	 * Removes all sizes.
+	 */
+	public void clear() {
+		Arrays.fill(counts, 0);
+		
+		maximum = 0;
+	}
+	
+	/**
+	 * Gets the maximum of all added sizes, {@code 0} if there are none.
+	 * 
+	 * @return The maximum of all added sizes.
+	 */
+	public int getMaximum() {
+		return maximum;
+	}
+	
+	/**
+	 * Removes the given size, if it has been added before.
+	 * 
+	 * @param size The size to remove.
+	 */
+	public void remove(int size) {
+		if (size < 0 || size >= counts.length || counts[size] == 0) {
+			return;
+		}
+		
+		counts[size] = counts[size] - 1;
+		
+		while (maximum > 0 && counts[maximum] == 0) {
+			maximum--;
+		}
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.bonsaimind.jmathpaper.core.units.CompoundUnit;
+
+/**
+ * {@link CompiledExpression} holds an expression after it has been processed
+ * by the {@link Evaluator}, but before it has been evaluated.
+ * <p>
+ * That is, aliases, comments and number formats have been resolved, the ID
+ * has been split off and the units have been determined. What remains is the
+ * plain mathematical expression.
+ */
+public class CompiledExpression {
+	/** The expression as it has been entered, after pre-processing. */
+	protected String expression = null;
+	
+	/** If this is a function definition. */
+	protected boolean function = false;
+	
+	/** The ID, {@code null} if none was given. */
+	protected String id = null;
+	
+	/** The plain mathematical expression, or the body of a function. */
+	protected String mathExpression = null;
+	
+	/** The {@link List} of parameter names of a function. */
+	protected List<String> parameters = Collections.emptyList();
+	
+	/** The {@link CompoundUnit} to convert from, can be {@code null}. */
+	protected CompoundUnit unitSource = null;
+	
+	/** The {@link CompoundUnit} to convert to, can be {@code null}. */
+	protected CompoundUnit unitTarget = null;
+	
+	/**
+	 * Creates a new instance of {@link CompiledExpression} for a function.
+	 *
+	 * @param id The ID of the function.
+	 * @param expression The pre-processed expression.
+	 * @param parameters The names of the parameters, can be {@code null}.
+	 * @param body The body of the function.
+	 */
+	public CompiledExpression(String id, String expression, List<String> parameters, String body) {
+		super();
+		
+		this.id = id;
+		this.expression = expression;
+		this.function = true;
+		this.mathExpression = body;
+		
+		if (parameters != null) {
+			this.parameters = Collections.unmodifiableList(new ArrayList<>(parameters));
+		}
+	}
+	
+	/**
+	 * Creates a new instance of {@link CompiledExpression}.
+	 *
+	 * @param id The ID, can be {@code null}.
+	 * @param expression The pre-processed expression.
+	 * @param mathExpression The plain mathematical expression.
+	 * @param unitSource The {@link CompoundUnit} to convert from, can be
+	 *        {@code null}.
+	 * @param unitTarget The {@link CompoundUnit} to convert to, can be
+	 *        {@code null}.
+	 */
+	public CompiledExpression(String id, String expression, String mathExpression, CompoundUnit unitSource, CompoundUnit unitTarget) {
+		super();
+		
+		this.id = id;
+		this.expression = expression;
+		this.mathExpression = mathExpression;
+		this.unitSource = unitSource;
+		this.unitTarget = unitTarget;
+	}
+	
+	/**
+	 * Gets the expression as it has been entered, after pre-processing.
+	 * 
+	 * @return The expression.
+	 */
+	public String getExpression() {
+		return expression;
+	}
+	
+	/**
+	 * Gets the ID, {@code null} if none was given.
+	 * 
+	 * @return The ID.
+	 */
+	public String getId() {
+		return id;
+	}
+	
+	/**
+	 * Gets the plain mathematical expression, or the body if this is a
+	 * function.
+	 * 
+	 * @return The plain mathematical expression.
+	 */
+	public String getMathExpression() {
+		return mathExpression;
+	}
+	
+	/**
+	 * Gets the names of the parameters, empty if there are none or this is
+	 * not a function.
+	 * 
+	 * @return The names of the parameters.
+	 */
+	public List<String> getParameters() {
+		return parameters;
+	}
+	
+	/**
+	 * Gets the {@link CompoundUnit} to convert from.
+	 * 
+	 * @return The {@link CompoundUnit} to convert from, {@code null} if there
+	 *         is no conversion.
+	 */
+	public CompoundUnit getUnitSource() {
+		return unitSource;
+	}
+	
+	/**
+	 * Gets the {@link CompoundUnit} to convert to.
+	 * 
+	 * @return The {@link CompoundUnit} to convert to, {@code null} if there
+	 *         is no conversion.
+	 */
+	public CompoundUnit getUnitTarget() {
+		return unitTarget;
+	}
+	
+	/**
+	 * If this is a function definition.
+	 * 
+	 * @return {@code true} if this is a function definition.
+	 */
+	public boolean isFunction() {
+		return function;
+	}
+}
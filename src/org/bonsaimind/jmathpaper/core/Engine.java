@@ -0,0 +1,166 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.core;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+
+import org.bonsaimind.jmathpaper.core.configuration.Definitions;
+import org.bonsaimind.jmathpaper.core.evaluatedexpressions.NumberEvaluatedExpression;
+import org.bonsaimind.jmathpaper.core.units.CompoundUnit;
+import org.bonsaimind.jmathpaper.core.units.UnitConverter;
+
+/**
+ * {@link Engine} is the entry point for using jMathPaper as library, for
+ * evaluating the same expressions many times with different values.
+ * <p>
+ * Expressions are {@link #compile(String) compiled} once into
+ * {@link PreparedExpression}s, which are evaluated with {@link Bindings}. In
+ * contrast to {@link Evaluator#evaluate(String)}, this does not add anything
+ * to a history, does not assign IDs and does not parse the expression again.
+ * <p>
+ * The {@link Engine} works on an {@link EvaluatorSnapshot}, which provides the
+ * aliases, units, context expressions, functions and settings. It is immutable
+ * and thread-safe, as are the {@link PreparedExpression}s it creates.
+ * 
+ * @see Definitions#createEngine()
+ */
+public class Engine {
+	/** The {@link EvaluatorSnapshot} on which this {@link Engine} works. */
+	protected EvaluatorSnapshot snapshot = null;
+	
+	/**
+	 * Creates a new instance of {@link Engine} without any units or context
+	 * expressions.
+	 */
+	public Engine() {
+		this(new Evaluator().getSnapshot());
+	}
+	
+	/**
+	 * Creates a new instance of {@link Engine} which works on the given
+	 * {@link EvaluatorSnapshot}, for example of a {@link Paper} whose
+	 * functions and variables should be available.
+	 *
+	 * @param snapshot The {@link EvaluatorSnapshot}, must not be {@code null}.
+	 */
+	public Engine(EvaluatorSnapshot snapshot) {
+		super();
+		
+		if (snapshot == null) {
+			throw new IllegalArgumentException("snapshot cannot be null.");
+		}
+		
+		this.snapshot = snapshot;
+	}
+	
+	/**
+	 * Creates a new instance of {@link Engine} which uses the given
+	 * {@link UnitConverter}.
+	 * <p>
+	 * The {@link UnitConverter} is shared and not copied, so it can be shared
+	 * between multiple {@link Engine}s, but must not be modified anymore.
+	 *
+	 * @param unitConverter The {@link UnitConverter}, must not be
+	 *        {@code null}.
+	 */
+	public Engine(UnitConverter unitConverter) {
+		this(createSnapshot(unitConverter));
+	}
+	
+	private static final EvaluatorSnapshot createSnapshot(UnitConverter unitConverter) {
+		if (unitConverter == null) {
+			throw new IllegalArgumentException("unitConverter cannot be null.");
+		}
+		
+		Evaluator evaluator = new Evaluator();
+		evaluator.setUnitConverter(unitConverter);
+		
+		return evaluator.getSnapshot();
+	}
+	
+	/**
+	 * Compiles the given expression.
+	 * 
+	 * @param expression The expression to compile.
+	 * @return The {@link PreparedExpression}.
+	 * @throws InvalidExpressionException If the expression could not be
+	 *         compiled or is a function definition.
+	 * @see #compile(String, List)
+	 */
+	public PreparedExpression compile(String expression) throws InvalidExpressionException {
+		return compile(expression, Collections.emptyList());
+	}
+	
+	/**
+	 * Compiles the given expression with the given variables.
+	 * <p>
+	 * Declaring the variables makes sure that they are treated as variables
+	 * and not as units, for example {@code m} would otherwise be treated as
+	 * meter. Their values are bound when evaluating the expression.
+	 * 
+	 * @param expression The expression to compile.
+	 * @param variables The names of the variables, must not be {@code null}.
+	 * @return The {@link PreparedExpression}.
+	 * @throws InvalidExpressionException If the expression could not be
+	 *         compiled or is a function definition.
+	 */
+	public PreparedExpression compile(String expression, List<String> variables) throws InvalidExpressionException {
+		if (variables == null) {
+			throw new IllegalArgumentException("variables cannot be null.");
+		}
+		
+		Evaluator evaluator = snapshot.getEvaluator();
+		Evaluator compilingEvaluator = evaluator;
+		
+		if (!variables.isEmpty()) {
+			// The snapshot must not be modified, so the variables are made
+			// known to a copy of it.
+			compilingEvaluator = new Evaluator(evaluator);
+			compilingEvaluator.evaluatedExpressions.addAll(evaluator.evaluatedExpressions);
+			
+			for (String variable : variables) {
+				compilingEvaluator.evaluatedExpressions.add(new NumberEvaluatedExpression(
+						variable,
+						variable,
+						BigDecimal.ZERO,
+						CompoundUnit.ONE));
+			}
+		}
+		
+		CompiledExpression compiledExpression = compilingEvaluator.compile(expression);
+		
+		if (compiledExpression.isFunction()) {
+			throw new InvalidExpressionException("Function definitions cannot be compiled: " + expression);
+		}
+		
+		return new PreparedExpression(evaluator, compiledExpression);
+	}
+	
+	/**
+	 * Gets the {@link EvaluatorSnapshot} on which this {@link Engine} works.
+	 * 
+	 * @return The {@link EvaluatorSnapshot}.
+	 */
+	public EvaluatorSnapshot getSnapshot() {
+		return snapshot;
+	}
+}
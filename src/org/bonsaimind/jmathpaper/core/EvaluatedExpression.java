@@ -39,6 +39,19 @@ public interface EvaluatedExpression {
 	 */
 	public String format(int idColumnWidth, int expressionColumnWidth, int resultColumnWidth, NumberFormat numberFormat);
 	
+	/**
+	 * Appends a well defined string representation of this
+	 * {@link EvaluatedExpression} to the given {@link StringBuilder}.
+	 * 
+	 * @param builder The {@link StringBuilder} to append to.
+	 * @param idColumnWidth The width of the column for the ID.
+	 * @param expressionColumnWidth The width of the column for the expression.
+	 * @param resultColumnWidth The width of the column for the result.
+	 * @param numberFormat The {@link NumberFormat} to use for formatting.
+	 * @see #format(int, int, int, NumberFormat)
+	 */
+	public void format(StringBuilder builder, int idColumnWidth, int expressionColumnWidth, int resultColumnWidth, NumberFormat numberFormat);
+	
 	/**
 	 * Gets the expression.
 	 * 
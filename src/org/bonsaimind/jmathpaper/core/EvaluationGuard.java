@@ -0,0 +1,162 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.core;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+import com.udojava.evalex.Expression;
+
+/**
+ * {@link EvaluationGuard} enforces the {@link EvaluationLimits} of a single
+ * evaluation, and whether it has been cancelled.
+ * <p>
+ * The guard of the running evaluation is bound to the current thread, so that
+ * it can be checked from functions which are invoked deep inside of EvalEx.
+ * Violations are reported as {@link Expression.ExpressionException}, which the
+ * {@link Evaluator} turns into an {@link InvalidExpressionException}.
+ */
+final class EvaluationGuard implements AutoCloseable {
+	private static final ThreadLocal<EvaluationGuard> CURRENT = new ThreadLocal<>();
+	private long cancellation = 0;
+	private long deadline = 0;
+	private int depth = 0;
+	private Evaluator evaluator = null;
+	private EvaluationLimits limits = null;
+	private EvaluationGuard previous = null;
+	
+	private EvaluationGuard(Evaluator evaluator) {
+		super();
+		
+		this.evaluator = evaluator;
+		this.limits = evaluator.getLimits();
+		this.cancellation = evaluator.getCancellation();
+		
+		if (limits.getMaxDuration() > 0) {
+			deadline = System.nanoTime() + limits.getMaxDuration() * 1000000L;
+		}
+	}
+	
+	/**
+	 * Starts guarding an evaluation of the given {@link Evaluator} on the
+	 * current thread, until the returned guard is closed.
+	 * 
+	 * @param evaluator The {@link Evaluator} which is evaluating.
+	 * @return The {@link EvaluationGuard}.
+	 */
+	public static EvaluationGuard begin(Evaluator evaluator) {
+		EvaluationGuard guard = new EvaluationGuard(evaluator);
+		guard.previous = CURRENT.get();
+		
+		CURRENT.set(guard);
+		
+		return guard;
+	}
+	
+	/**
+	 * Gets the guard of the evaluation running on the current thread.
+	 * 
+	 * @return The {@link EvaluationGuard}, {@code null} if there is none.
+	 */
+	public static EvaluationGuard current() {
+		return CURRENT.get();
+	}
+	
+	/**
+	 * Checks whether the evaluation has been cancelled, interrupted or has
+	 * run out of time.
+	 * 
+	 * @throws Expression.ExpressionException If the evaluation must not continue.
+	 */
+	public void check() {
+		if (evaluator.getCancellation() != cancellation) {
+			throw new Expression.ExpressionException("The evaluation has been cancelled.");
+		}
+		if (Thread.currentThread().isInterrupted()) {
+			throw new Expression.ExpressionException("The evaluation has been interrupted.");
+		}
+		if (deadline != 0 && System.nanoTime() - deadline > 0) {
+			throw new Expression.ExpressionException("The evaluation took longer than " + limits.getMaxDuration() + " ms.");
+		}
+	}
+	
+	/**
+	 * Checks that the given {@link MathContext} does not exceed the maximum
+	 * precision.
+	 * 
+	 * @param mathContext The {@link MathContext} to check.
+	 * @throws Expression.ExpressionException If the precision is too high.
+	 */
+	public void checkMathContext(MathContext mathContext) {
+		if (limits.getMaxDigits() > 0
+				&& (mathContext.getPrecision() == 0 || mathContext.getPrecision() > limits.getMaxDigits())) {
+			throw new Expression.ExpressionException("The precision exceeds the maximum of " + limits.getMaxDigits() + " digits.");
+		}
+	}
+	
+	/**
+	 * Checks that the given value does not exceed the maximum exponent.
+	 * 
+	 * @param value The value to check, can be {@code null}.
+	 * @throws Expression.ExpressionException If the exponent is too large.
+	 */
+	public void checkValue(BigDecimal value) {
+		if (value != null
+				&& limits.getMaxExponent() > 0
+				&& value.signum() != 0
+				&& Math.abs((long)value.precision() - value.scale() - 1) > limits.getMaxExponent()) {
+			throw new Expression.ExpressionException("The number exceeds the maximum exponent of " + limits.getMaxExponent() + ".");
+		}
+	}
+	
+	@Override
+	public void close() {
+		if (previous != null) {
+			CURRENT.set(previous);
+		} else {
+			CURRENT.remove();
+		}
+	}
+	
+	/**
+	 * Enters a function call, which must be followed by
+	 * {@link #exitFunction()}.
+	 * 
+	 * @param name The name of the function.
+	 * @throws Expression.ExpressionException If the maximum recursion depth is exceeded,
+	 *         or the evaluation must not continue.
+	 */
+	public void enterFunction(String name) {
+		if (limits.getMaxRecursionDepth() > 0 && depth >= limits.getMaxRecursionDepth()) {
+			throw new Expression.ExpressionException("The function " + name + " exceeds the maximum recursion depth of " + limits.getMaxRecursionDepth() + ".");
+		}
+		
+		check();
+		
+		depth++;
+	}
+	
+	/**
+	 * Exits a function call entered with {@link #enterFunction(String)}.
+	 */
+	public void exitFunction() {
+		depth--;
+	}
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.core;
+
+/**
+ * {@link EvaluationLimits} holds the limits of the resources an
+ * {@link Evaluator} may use, for example when evaluating untrusted input in a
+ * shared service.
+ * <p>
+ * Every limit is disabled with a value of zero, which is also the default.
+ * Exceeding a limit lets the evaluation fail with an
+ * {@link InvalidExpressionException}. The limits should not be changed while
+ * an evaluation is running.
+ */
+public class EvaluationLimits {
+	/** The maximum precision, in digits, of the calculations. */
+	protected int maxDigits = 0;
+	/** The maximum wall time of a single evaluation, in milliseconds. */
+	protected long maxDuration = 0;
+	/** The maximum exponent, in both directions, of the numbers. */
+	protected int maxExponent = 0;
+	/** The maximum count of expressions. */
+	protected int maxLines = 0;
+	/** The maximum depth of nested function calls. */
+	protected int maxRecursionDepth = 0;
+	
+	/**
+	 * Creates a new instance of {@link EvaluationLimits} without any limits.
+	 */
+	public EvaluationLimits() {
+		super();
+	}
+	
+	/**
+	 * Creates a new instance of {@link EvaluationLimits} with the limits of
+	 * the given {@link EvaluationLimits}.
+	 * 
+	 * @param evaluationLimits The {@link EvaluationLimits} to copy.
+	 */
+	public EvaluationLimits(EvaluationLimits evaluationLimits) {
+		super();
+		
+		maxDigits = evaluationLimits.maxDigits;
+		maxDuration = evaluationLimits.maxDuration;
+		maxExponent = evaluationLimits.maxExponent;
+		maxLines = evaluationLimits.maxLines;
+		maxRecursionDepth = evaluationLimits.maxRecursionDepth;
+	}
+	
+	/**
+	 * Creates a new instance of {@link EvaluationLimits} with the defaults for
+	 * services which are shared between multiple users.
+	 * 
+	 * @return A new instance of {@link EvaluationLimits} with the defaults for
+	 *         services.
+	 */
+	public static EvaluationLimits createServiceDefaults() {
+		EvaluationLimits evaluationLimits = new EvaluationLimits();
+		evaluationLimits.setMaxDigits(1000);
+		evaluationLimits.setMaxDuration(5000);
+		evaluationLimits.setMaxExponent(10000);
+		evaluationLimits.setMaxLines(10000);
+		evaluationLimits.setMaxRecursionDepth(256);
+		
+		return evaluationLimits;
+	}
+	
+	/**
+	 * Gets the maximum precision, in digits, of the calculations.
+	 * 
+	 * @return The maximum precision, zero if unlimited.
+	 */
+	public int getMaxDigits() {
+		return maxDigits;
+	}
+	
+	/**
+	 * Gets the maximum wall time of a single evaluation, in milliseconds.
+	 * 
+	 * @return The maximum wall time, zero if unlimited.
+	 */
+	public long getMaxDuration() {
+		return maxDuration;
+	}
+	
+	/**
+	 * Gets the maximum exponent, in both directions, of the numbers.
+	 * 
+	 * @return The maximum exponent, zero if unlimited.
+	 */
+	public int getMaxExponent() {
+		return maxExponent;
+	}
+	
+	/**
+	 * Gets the maximum count of expressions.
+	 * 
+	 * @return The maximum count of expressions, zero if unlimited.
+	 */
+	public int getMaxLines() {
+		return maxLines;
+	}
+	
+	/**
+	 * Gets the maximum depth of nested function calls.
+	 * 
+	 * @return The maximum depth of nested function calls, zero if unlimited.
+	 */
+	public int getMaxRecursionDepth() {
+		return maxRecursionDepth;
+	}
+	
+	/**
+	 * Sets the maximum precision, in digits, of the calculations. If set, an
+	 * unlimited precision is not allowed either.
+	 * 
+	 * @param maxDigits The maximum precision, zero for unlimited.
+	 */
+	public void setMaxDigits(int maxDigits) {
+		this.maxDigits = Math.max(0, maxDigits);
+	}
+	
+	/**
+	 * Sets the maximum wall time of a single evaluation, in milliseconds.
+	 * 
+	 * @param maxDuration The maximum wall time, zero for unlimited.
+	 */
+	public void setMaxDuration(long maxDuration) {
+		this.maxDuration = Math.max(0, maxDuration);
+	}
+	
+	/**
+	 * Sets the maximum exponent, in both directions, of the numbers. It limits
+	 * the results and the arguments of functions whose costs depend on the
+	 * size of the number, like {@code FACT} or {@code FLOOR}.
+	 * 
+	 * @param maxExponent The maximum exponent, zero for unlimited.
+	 */
+	public void setMaxExponent(int maxExponent) {
+		this.maxExponent = Math.max(0, maxExponent);
+	}
+	
+	/**
+	 * Sets the maximum count of expressions.
+	 * 
+	 * @param maxLines The maximum count of expressions, zero for unlimited.
+	 */
+	public void setMaxLines(int maxLines) {
+		this.maxLines = Math.max(0, maxLines);
+	}
+	
+	/**
+	 * Sets the maximum depth of nested function calls.
+	 * 
+	 * @param maxRecursionDepth The maximum depth of nested function calls, zero
+	 *        for unlimited.
+	 */
+	public void setMaxRecursionDepth(int maxRecursionDepth) {
+		this.maxRecursionDepth = Math.max(0, maxRecursionDepth);
+	}
+}
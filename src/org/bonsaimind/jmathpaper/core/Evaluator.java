@@ -29,6 +29,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.regex.Matcher;
@@ -48,6 +49,12 @@ import org.bonsaimind.jmathpaper.core.units.UnitConverter;
 import com.udojava.evalex.Expression;
 
 public class Evaluator {
+	/**
+	 * The amount of digits which are used in addition to the result precision
+	 * as the first working precision which can be accepted when using
+	 * adaptive precision.
+	 */
+	protected static final int ADAPTIVE_GUARD_DIGITS = 8;
 	protected static final Pattern BINARY_NUMBER = ResourceLoader.compileRegex("binary-number");
 	protected static final String COMMENT_INLINE_END = "*/";
 	protected static final String COMMENT_INLINE_START = "/*";
@@ -60,12 +67,17 @@ public class Evaluator {
 	protected static final Pattern ID = ResourceLoader.compileRegex("id");
 	protected static final Pattern LAST_REFERENCE = ResourceLoader.compileRegex("last-reference");
 	protected static final Pattern OCTAL_NUMBER = ResourceLoader.compileRegex("octal-number");
+	protected boolean adaptivePrecision = false;
 	protected Map<String, String> aliases = new HashMap<>();
 	protected MathContext calculationMathContext = DEFAULT_CALCULATION_MATH_CONTEXT;
 	protected List<EvaluatedExpression> contextExpressions = new ArrayList<>();
-	protected List<EvaluatedExpression> evaluatedExpressions = new ArrayList<>();
+	protected List<EvaluatedExpression> evaluatedExpressions = new AppendOnlyList<>();
+	protected EvaluationLimits limits = new EvaluationLimits();
 	protected MathContext resultMathContext = DEFAULT_RESULT_MATH_CONTEXT;
 	protected UnitConverter unitConverter = new UnitConverter();
+	/** The latest published {@link EvaluatorSnapshot}. */
+	volatile EvaluatorSnapshot snapshot = null;
+	private AtomicLong cancellations = new AtomicLong();
 	private int expressionCounter = 0;
 	private List<EvaluatedExpression> readonlyEvaluatedExpressions = null;
 	
@@ -78,8 +90,40 @@ public class Evaluator {
 	public Evaluator(Evaluator evaluator) {
 		this();
 		
+		adaptivePrecision = evaluator.adaptivePrecision;
 		aliases = evaluator.aliases;
 		calculationMathContext = evaluator.calculationMathContext;
+		cancellations = evaluator.cancellations;
+		contextExpressions = evaluator.contextExpressions;
+		limits = evaluator.limits;
+		resultMathContext = evaluator.resultMathContext;
+		unitConverter = evaluator.unitConverter;
+		
+		publishSnapshot();
+	}
+	
+	/**
+	 * Creates a new frozen copy of the given {@link Evaluator} for an
+	 * {@link EvaluatorSnapshot}, which is never modified and never publishes
+	 * snapshots of its own.
+	 * <p>
+	 * The aliases, context expressions and the {@link UnitConverter} are
+	 * shared, as the given {@link Evaluator} replaces them instead of
+	 * modifying them.
+	 * 
+	 * @param evaluator The {@link Evaluator} to copy.
+	 * @param evaluatedExpressions The immutable evaluated expressions.
+	 */
+	private Evaluator(Evaluator evaluator, List<EvaluatedExpression> evaluatedExpressions) {
+		super();
+		
+		adaptivePrecision = evaluator.adaptivePrecision;
+		aliases = evaluator.aliases;
+		calculationMathContext = evaluator.calculationMathContext;
+		cancellations = evaluator.cancellations;
+		contextExpressions = evaluator.contextExpressions;
+		this.evaluatedExpressions = evaluatedExpressions;
+		limits = new EvaluationLimits(evaluator.limits);
 		resultMathContext = evaluator.resultMathContext;
 		unitConverter = evaluator.unitConverter;
 	}
@@ -96,7 +140,161 @@ public class Evaluator {
 		return Long.toString(Long.parseLong(value, 8));
 	}
 	
+	/**
+	 * Cancels all evaluations which are currently running, of this
+	 * {@link Evaluator} and of all copies of it. They fail with an
+	 * {@link InvalidExpressionException}.
+	 */
+	public void cancel() {
+		cancellations.incrementAndGet();
+	}
+	
+	/**
+	 * Compiles the given expression, without evaluating it.
+	 * <p>
+	 * The returned {@link CompiledExpression} depends on the current state of
+	 * this {@link Evaluator}, as IDs of previous expressions take precedence
+	 * over units with the same name.
+	 * 
+	 * @param expression The expression to compile.
+	 * @return The {@link CompiledExpression}.
+	 * @throws InvalidExpressionException If the expression could not be
+	 *         compiled, for example because of an unknown unit.
+	 */
+	public CompiledExpression compile(String expression) throws InvalidExpressionException {
+		if (expression == null || expression.trim().isEmpty()) {
+			return new CompiledExpression(null, "0", "0", null, null);
+		}
+		
+		String preProcessedExpression = preProcess(expression);
+		String processedExpression = stripComments(preProcessedExpression);
+		processedExpression = replaceAliases(processedExpression);
+		processedExpression = convertNumbers(processedExpression);
+		
+		Matcher functionMatcher = FUNCTION.matcher(processedExpression);
+		
+		if (functionMatcher.matches()) {
+			String parametersList = functionMatcher.group("PARAMETERS");
+			List<String> parameters = null;
+			
+			if (parametersList != null && !parametersList.trim().isEmpty()) {
+				parameters = Arrays.asList(parametersList.split("\\s*,\\s*"));
+			}
+			
+			return new CompiledExpression(
+					functionMatcher.group("ID"),
+					preProcessedExpression,
+					parameters,
+					functionMatcher.group("EXPRESSION"));
+		}
+		
+		String id = null;
+		
+		Matcher idMatcher = ID.matcher(processedExpression);
+		
+		if (idMatcher.matches()) {
+			id = idMatcher.group("ID");
+			processedExpression = idMatcher.group("EXPRESSION");
+		}
+		
+		CompoundUnit unitSource = null;
+		CompoundUnit unitTarget = null;
+		
+		Matcher expressionUnitSeparatorMatcher = EXPRESSION_UNIT_SEPARATOR.matcher(processedExpression);
+		
+		if (findExpressionUnitSeparatorPosition(processedExpression, expressionUnitSeparatorMatcher)) {
+			String expressionPart = processedExpression.substring(0, expressionUnitSeparatorMatcher.start() + 1);
+			String unitsPart = processedExpression.substring(expressionUnitSeparatorMatcher.start() + 1);
+			
+			UnitConversion unitConversion = splitUnitConversion(unitsPart);
+			
+			if (unitConversion.getSourceString() != null && unitConversion.getSourceString().isEmpty()) {
+				unitSource = unitConverter.getCompoundUnit(expressionPart.trim());
+				
+				if (unitSource != null && !isKnown(unitSource) && !unitSource.isOne()) {
+					expressionPart = "1";
+				} else if (unitConversion.getKeywordString() != null) {
+					unitSource = unitConverter.getCompoundUnit(unitConversion.getKeywordString());
+					
+					if (unitSource == null) {
+						throw new InvalidExpressionException("No such unit: " + unitConversion.getKeywordString());
+					}
+					
+					unitConversion.setSourceString(unitConversion.getKeywordString());
+					unitConversion.setKeywordString(null);
+				} else {
+					unitSource = unitConverter.getCompoundUnit(unitConversion.getTargetString());
+					
+					if (unitSource == null) {
+						throw new InvalidExpressionException("No such unit: " + unitConversion.getTargetString());
+					}
+					
+					unitConversion.setSourceString(unitConversion.getTargetString());
+					unitConversion.setTargetString(null);
+				}
+			} else if (unitConversion.getTargetString() != null && unitConversion.getTargetString().isEmpty()) {
+				unitSource = unitConverter.getCompoundUnit(expressionPart.trim());
+				
+				if (unitSource == null) {
+					throw new InvalidExpressionException("No such unit: " + expressionPart.trim());
+				}
+				
+				expressionPart = "1";
+				unitConversion.setTargetString(unitConversion.getSourceString());
+			} else {
+				unitSource = unitConverter.getCompoundUnit(unitConversion.getSourceString());
+				
+				if (unitSource == null) {
+					throw new InvalidExpressionException("No such unit: " + unitConversion.getSourceString());
+				}
+			}
+			
+			if (unitConversion.getTargetString() == null) {
+				unitTarget = unitSource.atBase();
+			} else {
+				unitTarget = unitConverter.getCompoundUnit(unitConversion.getTargetString());
+				
+				if (unitTarget == null) {
+					throw new InvalidExpressionException("No such unit: " + unitConversion.getTargetString());
+				}
+			}
+			
+			processedExpression = expressionPart;
+		} else if (!isKnown(processedExpression)) {
+			unitSource = unitConverter.getCompoundUnit(processedExpression);
+			
+			if (unitSource != null) {
+				// Disallow automatic conversion from 1.
+				if (!isKnown(unitSource) && !unitSource.isOne()) {
+					unitTarget = unitSource.atBase();
+					processedExpression = "1";
+				} else {
+					unitSource = null;
+				}
+			}
+		}
+		
+		return new CompiledExpression(id, preProcessedExpression, processedExpression, unitSource, unitTarget);
+	}
+	
+	/**
+	 * Evaluates the given {@link CompiledExpression} and adds the result to
+	 * the evaluated expressions.
+	 * 
+	 * @param compiledExpression The {@link CompiledExpression} to evaluate.
+	 * @return The {@link EvaluatedExpression}.
+	 * @throws InvalidExpressionException If the expression could not be
+	 *         evaluated.
+	 */
+	public EvaluatedExpression evaluate(CompiledExpression compiledExpression) throws InvalidExpressionException {
+		checkLinesLimit();
+		
+		return addEvaluatedExpression(evaluateCompiled(compiledExpression, this::getNextId));
+	}
+	
 	public EvaluatedExpression evaluate(String expression) throws InvalidExpressionException {
+		checkLinesLimit();
+		
 		return addEvaluatedExpression(evaluateInternal(expression, this::getNextId));
 	}
 	
@@ -112,14 +310,59 @@ public class Evaluator {
 		return evaluatedExpressions;
 	}
 	
+	/**
+	 * Gets the {@link EvaluationLimits} of this {@link Evaluator}.
+	 * 
+	 * @return The {@link EvaluationLimits}.
+	 */
+	public EvaluationLimits getLimits() {
+		return limits;
+	}
+	
 	public MathContext getResultMathContext() {
 		return resultMathContext;
 	}
 	
+	/**
+	 * Gets the latest {@link EvaluatorSnapshot} of this {@link Evaluator}.
+	 * <p>
+	 * A new snapshot is published with every modification of this
+	 * {@link Evaluator}, so this method can be invoked from any thread and
+	 * always returns a consistent state, but not necessarily one which
+	 * includes modifications which are still in progress. Changes to the
+	 * {@link #getLimits() limits} themselves are only included with the next
+	 * modification.
+	 * 
+	 * @return The latest {@link EvaluatorSnapshot}.
+	 */
+	public EvaluatorSnapshot getSnapshot() {
+		return snapshot;
+	}
+	
+	/**
+	 * Gets the {@link UnitConverter}.
+	 * <p>
+	 * The {@link UnitConverter} is shared with the published
+	 * {@link EvaluatorSnapshot}s, so it must not be modified, use
+	 * {@link #loadConversion(String)}, {@link #loadPrefix(String)} and
+	 * {@link #loadUnit(String)} instead.
+	 * 
+	 * @return The {@link UnitConverter}.
+	 */
 	public UnitConverter getUnitConverter() {
 		return unitConverter;
 	}
 	
+	/**
+	 * Gets whether adaptive precision is used.
+	 * 
+	 * @return {@code true} if adaptive precision is used.
+	 * @see #setAdaptivePrecision(boolean)
+	 */
+	public boolean isAdaptivePrecision() {
+		return adaptivePrecision;
+	}
+	
 	public void loadAlias(String aliasDefinition) {
 		if (aliasDefinition == null || aliasDefinition.isEmpty()) {
 			return;
@@ -136,14 +379,61 @@ public class Evaluator {
 	
 	public void loadContextExpression(String expression) {
 		try {
-			contextExpressions.add(evaluateInternal(expression, null));
+			List<EvaluatedExpression> newContextExpressions = new ArrayList<>(contextExpressions);
+			newContextExpressions.add(evaluateInternal(expression, null));
+			
+			contextExpressions = newContextExpressions;
+			publishSnapshot();
 		} catch (InvalidExpressionException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
 	}
 	
+	/**
+	 * Loads the given conversion definition into a copy of the
+	 * {@link UnitConverter}, which replaces the current one.
+	 * 
+	 * @param conversionDefinition The conversion definition.
+	 */
+	public void loadConversion(String conversionDefinition) {
+		UnitConverter newUnitConverter = new UnitConverter(unitConverter);
+		newUnitConverter.loadConversion(conversionDefinition);
+		
+		setUnitConverter(newUnitConverter);
+	}
+	
+	/**
+	 * Loads the given prefix definition into a copy of the
+	 * {@link UnitConverter}, which replaces the current one.
+	 * 
+	 * @param prefixDefinition The prefix definition.
+	 */
+	public void loadPrefix(String prefixDefinition) {
+		UnitConverter newUnitConverter = new UnitConverter(unitConverter);
+		newUnitConverter.loadPrefix(prefixDefinition);
+		
+		setUnitConverter(newUnitConverter);
+	}
+	
+	/**
+	 * Loads the given unit definition into a copy of the {@link UnitConverter},
+	 * which replaces the current one.
+	 * 
+	 * @param unitDefinition The unit definition.
+	 */
+	public void loadUnit(String unitDefinition) {
+		UnitConverter newUnitConverter = new UnitConverter(unitConverter);
+		newUnitConverter.loadUnit(unitDefinition);
+		
+		setUnitConverter(newUnitConverter);
+	}
+	
 	public Expression prepareExpression(String expression) {
+		return prepareExpression(expression, calculationMathContext);
+	}
+	
+	public Expression prepareExpression(String expression, MathContext mathContext) {
 		if (expression == null || expression.length() == 0) {
 			return new Expression("0");
 		}
@@ -153,7 +443,7 @@ public class Evaluator {
 		EvaluatorAwareExpression mathExpression = new EvaluatorAwareExpression(
 				this,
 				processedExpression,
-				calculationMathContext);
+				mathContext);
 		
 		for (EvaluatedExpression contextExpression : contextExpressions) {
 			applyEvaluatedExpression(mathExpression, contextExpression);
@@ -166,25 +456,90 @@ public class Evaluator {
 		return mathExpression;
 	}
 	
+	/**
+	 * Evaluates the given expression against the latest
+	 * {@link #getSnapshot() snapshot}, without adding it to the evaluated
+	 * expressions.
+	 * 
+	 * @param expression The expression to evaluate.
+	 * @return The {@link EvaluatedExpression}.
+	 * @throws InvalidExpressionException If the expression could not be
+	 *         evaluated.
+	 * @see EvaluatorSnapshot#preview(String)
+	 */
 	public EvaluatedExpression preview(String expression) throws InvalidExpressionException {
-		return evaluateInternal(expression, null);
+		return snapshot.preview(expression);
 	}
 	
 	public void registerAlias(String alias, String replacement) {
-		aliases.put("(^| )" + alias + "( |$)", replacement);
+		Map<String, String> newAliases = new HashMap<>(aliases);
+		newAliases.put("(^| )" + alias + "( |$)", replacement);
+		
+		aliases = newAliases;
+		publishSnapshot();
 	}
 	
 	public void reset() {
 		expressionCounter = 0;
 		evaluatedExpressions.clear();
+		
+		publishSnapshot();
+	}
+	
+	/**
+	 * Sets whether adaptive precision should be used.
+	 * <p>
+	 * With adaptive precision, expressions are first evaluated with a working
+	 * precision of about half the precision of the result and then with a
+	 * doubled one, slightly above the precision of the result. The error of
+	 * the second result is estimated from the difference between both, only
+	 * if the result cannot be rounded correctly within that estimate, the
+	 * precision is doubled again, up to the precision of the
+	 * {@link #setCalculationMathContext(MathContext) calculation}. The
+	 * estimate is a heuristic and not a guaranteed bound. Results which are
+	 * zero, for example because of cancellation, are always evaluated with
+	 * the full precision.
+	 * 
+	 * @param adaptivePrecision {@code true} if adaptive precision should be
+	 *        used.
+	 */
+	public void setAdaptivePrecision(boolean adaptivePrecision) {
+		this.adaptivePrecision = adaptivePrecision;
+		
+		publishSnapshot();
 	}
 	
 	public void setCalculationMathContext(MathContext calculationMathContext) {
 		this.calculationMathContext = calculationMathContext;
+		
+		publishSnapshot();
+	}
+	
+	/**
+	 * Sets the {@link EvaluationLimits} of this {@link Evaluator}.
+	 * 
+	 * @param limits The {@link EvaluationLimits}, must not be {@code null}.
+	 */
+	public void setLimits(EvaluationLimits limits) {
+		if (limits == null) {
+			throw new IllegalArgumentException("limits cannot be null.");
+		}
+		
+		this.limits = limits;
+		
+		publishSnapshot();
 	}
 	
 	public void setResultMathContext(MathContext resultMathContext) {
 		this.resultMathContext = resultMathContext;
+		
+		publishSnapshot();
+	}
+	
+	public void setUnitConverter(UnitConverter unitConverter) {
+		this.unitConverter = unitConverter;
+		
+		publishSnapshot();
 	}
 	
 	protected void applyEvaluatedExpression(EvaluatorAwareExpression mathExpression, EvaluatedExpression evaluatedExpression) {
@@ -203,135 +558,45 @@ public class Evaluator {
 		}
 	}
 	
-	protected EvaluatedExpression evaluateInternal(String expression, Supplier<String> idSupplier) throws InvalidExpressionException {
-		if (expression == null || expression.trim().isEmpty()) {
-			if (idSupplier != null) {
-				return new NumberEvaluatedExpression(idSupplier.get(), "0", BigDecimal.ZERO, CompoundUnit.ONE);
-			} else {
-				return new NumberEvaluatedExpression(null, "0", BigDecimal.ZERO, CompoundUnit.ONE);
-			}
-		}
-		
-		String preProcessedExpression = preProcess(expression);
-		String processedExpression = stripComments(preProcessedExpression);
-		processedExpression = replaceAliases(processedExpression);
-		processedExpression = convertNumbers(processedExpression);
-		
-		Matcher functionMatcher = FUNCTION.matcher(processedExpression);
+	protected EvaluatedExpression evaluateCompiled(CompiledExpression compiledExpression, Supplier<String> idSupplier) throws InvalidExpressionException {
+		String id = compiledExpression.getId();
+		String preProcessedExpression = compiledExpression.getExpression();
+		String processedExpression = compiledExpression.getMathExpression();
+		CompoundUnit unitSource = compiledExpression.getUnitSource();
+		CompoundUnit unitTarget = compiledExpression.getUnitTarget();
 		
-		if (functionMatcher.matches()) {
-			String parametersList = functionMatcher.group("PARAMETERS");
-			List<String> parameters = null;
-			
-			if (parametersList != null && !parametersList.trim().isEmpty()) {
-				parameters = Arrays.asList(parametersList.split("\\s*,\\s*"));
-			}
-			
+		if (compiledExpression.isFunction()) {
 			try {
 				return new FunctionEvaluatedExpression(
-						functionMatcher.group("ID"),
+						id,
 						preProcessedExpression,
-						parameters,
-						functionMatcher.group("EXPRESSION"),
-						prepareExpression(functionMatcher.group("EXPRESSION")).isBoolean());
+						compiledExpression.getParameters(),
+						processedExpression,
+						prepareExpression(processedExpression).isBoolean());
 			} catch (Expression.ExpressionException e) {
 				throw new InvalidExpressionException(e.getMessage(), e);
 			}
 		}
 		
-		String id = null;
-		
-		Matcher idMatcher = ID.matcher(processedExpression);
-		
-		if (idMatcher.matches()) {
-			id = idMatcher.group("ID");
-			processedExpression = idMatcher.group("EXPRESSION");
-		}
-		
-		CompoundUnit unitSource = null;
-		CompoundUnit unitTarget = null;
-		
-		Matcher expressionUnitSeparatorMatcher = EXPRESSION_UNIT_SEPARATOR.matcher(processedExpression);
-		
-		if (findExpressionUnitSeparatorPosition(processedExpression, expressionUnitSeparatorMatcher)) {
-			String expressionPart = processedExpression.substring(0, expressionUnitSeparatorMatcher.start() + 1);
-			String unitsPart = processedExpression.substring(expressionUnitSeparatorMatcher.start() + 1);
-			
-			UnitConversion unitConversion = splitUnitConversion(unitsPart);
+		try (EvaluationGuard guard = EvaluationGuard.begin(this)) {
+			guard.checkMathContext(calculationMathContext);
 			
-			if (unitConversion.getSourceString() != null && unitConversion.getSourceString().isEmpty()) {
-				unitSource = unitConverter.getCompoundUnit(expressionPart.trim());
-				
-				if (unitSource != null && !isKnown(unitSource) && !unitSource.isOne()) {
-					expressionPart = "1";
-				} else if (unitConversion.getKeywordString() != null) {
-					unitSource = unitConverter.getCompoundUnit(unitConversion.getKeywordString());
-					
-					if (unitSource == null) {
-						throw new InvalidExpressionException("No such unit: " + unitConversion.getKeywordString());
-					}
-					
-					unitConversion.setSourceString(unitConversion.getKeywordString());
-					unitConversion.setKeywordString(null);
-				} else {
-					unitSource = unitConverter.getCompoundUnit(unitConversion.getTargetString());
-					
-					if (unitSource == null) {
-						throw new InvalidExpressionException("No such unit: " + unitConversion.getTargetString());
-					}
-					
-					unitConversion.setSourceString(unitConversion.getTargetString());
-					unitConversion.setTargetString(null);
-				}
-			} else if (unitConversion.getTargetString() != null && unitConversion.getTargetString().isEmpty()) {
-				unitSource = unitConverter.getCompoundUnit(expressionPart.trim());
-				
-				if (unitSource == null) {
-					throw new InvalidExpressionException("No such unit: " + expressionPart.trim());
-				}
-				
-				expressionPart = "1";
-				unitConversion.setTargetString(unitConversion.getSourceString());
-			} else {
-				unitSource = unitConverter.getCompoundUnit(unitConversion.getSourceString());
-				
-				if (unitSource == null) {
-					throw new InvalidExpressionException("No such unit: " + unitConversion.getSourceString());
-				}
-			}
+			MathContext workingMathContext = getInitialWorkingMathContext();
+			Expression mathExpression = prepareExpression(processedExpression, workingMathContext);
+			BigDecimal result = evaluateMathExpression(mathExpression, unitSource, unitTarget, workingMathContext);
+			BigDecimal previousResult = null;
+			MathContext previousMathContext = null;
 			
-			if (unitConversion.getTargetString() == null) {
-				unitTarget = unitSource.atBase();
-			} else {
-				unitTarget = unitConverter.getCompoundUnit(unitConversion.getTargetString());
+			while (!isCorrectlyRoundable(result, previousResult, previousMathContext, workingMathContext)) {
+				guard.check();
 				
-				if (unitTarget == null) {
-					throw new InvalidExpressionException("No such unit: " + unitConversion.getTargetString());
-				}
-			}
-			
-			processedExpression = expressionPart;
-		} else if (!isKnown(processedExpression)) {
-			unitSource = unitConverter.getCompoundUnit(processedExpression);
-			
-			if (unitSource != null) {
-				// Disallow automatic conversion from 1.
-				if (!isKnown(unitSource) && !unitSource.isOne()) {
-					unitTarget = unitSource.atBase();
-					processedExpression = "1";
-				} else {
-					unitSource = null;
-				}
-			}
-		}
-		
-		try {
-			Expression mathExpression = prepareExpression(processedExpression);
-			
-			BigDecimal result = mathExpression.eval();
-			
-			if (unitSource != null && unitTarget != null) {
-				result = unitConverter.convert(unitSource, unitTarget, result, calculationMathContext).stripTrailingZeros();
+				previousResult = result;
+				previousMathContext = workingMathContext;
+				workingMathContext = new MathContext(
+						Math.min(workingMathContext.getPrecision() * 2, calculationMathContext.getPrecision()),
+						workingMathContext.getRoundingMode());
+				mathExpression = prepareExpression(processedExpression, workingMathContext);
+				result = evaluateMathExpression(mathExpression, unitSource, unitTarget, workingMathContext);
 			}
 			
 			if (id == null && idSupplier != null) {
@@ -339,6 +604,7 @@ public class Evaluator {
 			}
 			
 			result = result.round(resultMathContext);
+			guard.checkValue(result);
 			
 			if (mathExpression.isBoolean()) {
 				return new BooleanEvaluatedExpression(id, preProcessedExpression, result);
@@ -354,6 +620,122 @@ public class Evaluator {
 		}
 	}
 	
+	protected EvaluatedExpression evaluateInternal(String expression, Supplier<String> idSupplier) throws InvalidExpressionException {
+		return evaluateCompiled(compile(expression), idSupplier);
+	}
+	
+	/**
+	 * Evaluates the given {@link Expression} and converts the result between
+	 * the given units, if any.
+	 * 
+	 * @param mathExpression The {@link Expression} to evaluate.
+	 * @param unitSource The {@link CompoundUnit} to convert from, can be
+	 *        {@code null}.
+	 * @param unitTarget The {@link CompoundUnit} to convert to, can be
+	 *        {@code null}.
+	 * @param mathContext The {@link MathContext} to use for the conversion.
+	 * @return The (not yet rounded) result.
+	 */
+	protected BigDecimal evaluateMathExpression(Expression mathExpression, CompoundUnit unitSource, CompoundUnit unitTarget, MathContext mathContext) {
+		BigDecimal result = mathExpression.eval();
+		
+		if (unitSource != null && unitTarget != null) {
+			result = unitConverter.convert(unitSource, unitTarget, result, mathContext).stripTrailingZeros();
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Gets the count of cancellations, evaluations which have been started
+	 * before the count changed are cancelled.
+	 * 
+	 * @return The count of cancellations.
+	 */
+	protected long getCancellation() {
+		return cancellations.get();
+	}
+	
+	/**
+	 * Gets the {@link MathContext} with which the evaluation is started.
+	 * <p>
+	 * That is the {@link #calculationMathContext} unless
+	 * {@link #adaptivePrecision adaptive precision} is enabled and applicable,
+	 * in which case it is half of the result precision plus the
+	 * {@link #ADAPTIVE_GUARD_DIGITS guard digits}, so that the second
+	 * evaluation with the doubled precision is the first one which can be
+	 * accepted.
+	 * 
+	 * @return The {@link MathContext} with which the evaluation is started.
+	 */
+	protected MathContext getInitialWorkingMathContext() {
+		int resultPrecision = resultMathContext.getPrecision();
+		int calculationPrecision = calculationMathContext.getPrecision();
+		
+		if (adaptivePrecision
+				&& resultPrecision > 0
+				&& calculationPrecision > 0
+				&& (resultPrecision + ADAPTIVE_GUARD_DIGITS) < calculationPrecision) {
+			return new MathContext(
+					(resultPrecision + ADAPTIVE_GUARD_DIGITS + 1) / 2,
+					calculationMathContext.getRoundingMode());
+		}
+		
+		return calculationMathContext;
+	}
+	
+	/**
+	 * Checks whether the given result, which has been calculated with the
+	 * given working {@link MathContext}, can be rounded correctly to the
+	 * {@link #resultMathContext}.
+	 * <p>
+	 * If the working {@link MathContext} already has the full calculation
+	 * precision, the result is always accepted. Otherwise the error of the
+	 * result is estimated, this is a heuristic and not a guaranteed bound. The
+	 * difference to the previous result is taken as the error of the previous
+	 * result, and the error is assumed to shrink by one order of magnitude
+	 * with every additional digit of working precision, minus one digit as
+	 * margin. One unit in the last place of the working precision is added on
+	 * top. The result is only accepted if it is rounded to the same value
+	 * anywhere within that estimate. Without a previous result there is no
+	 * estimate, and a result or previous result of zero hints at
+	 * cancellation, so neither is ever accepted.
+	 * 
+	 * @param result The result to check.
+	 * @param previousResult The result calculated with the previous working
+	 *        precision, {@code null} if there is none.
+	 * @param previousMathContext The {@link MathContext} with which the
+	 *        previous result has been calculated, {@code null} if there is
+	 *        none.
+	 * @param workingMathContext The {@link MathContext} with which the result
+	 *        has been calculated.
+	 * @return {@code true} if the result can be rounded correctly.
+	 */
+	protected boolean isCorrectlyRoundable(BigDecimal result, BigDecimal previousResult, MathContext previousMathContext, MathContext workingMathContext) {
+		if (workingMathContext.getPrecision() == 0
+				|| workingMathContext.getPrecision() >= calculationMathContext.getPrecision()) {
+			return true;
+		}
+		
+		if (previousResult == null
+				|| previousMathContext == null
+				|| result.signum() == 0
+				|| previousResult.signum() == 0) {
+			return false;
+		}
+		
+		int gainedDigits = workingMathContext.getPrecision() - previousMathContext.getPrecision() - 1;
+		
+		BigDecimal inaccuracy = result.subtract(previousResult).abs()
+				.scaleByPowerOfTen(-Math.max(gainedDigits, 0))
+				.add(result.round(workingMathContext).ulp());
+		
+		BigDecimal lowerResult = result.subtract(inaccuracy).round(resultMathContext);
+		BigDecimal upperResult = result.add(inaccuracy).round(resultMathContext);
+		
+		return lowerResult.compareTo(upperResult) == 0;
+	}
+	
 	/**
 	 * Strips any comments from the given expression.
 	 * 
@@ -404,6 +786,8 @@ public class Evaluator {
 	private EvaluatedExpression addEvaluatedExpression(EvaluatedExpression evaluatedExpression) {
 		if (evaluatedExpression != null) {
 			evaluatedExpressions.add(evaluatedExpression);
+			
+			publishSnapshot();
 		}
 		
 		return evaluatedExpression;
@@ -422,6 +806,12 @@ public class Evaluator {
 		return buffer.toString();
 	}
 	
+	private void checkLinesLimit() throws InvalidExpressionException {
+		if (limits.getMaxLines() > 0 && evaluatedExpressions.size() >= limits.getMaxLines()) {
+			throw new InvalidExpressionException("The paper exceeds the maximum of " + limits.getMaxLines() + " lines.");
+		}
+	}
+	
 	private String convertNumbers(String expression) {
 		expression = applyPattern(expression, BINARY_NUMBER, Evaluator::convertFromBinary);
 		expression = applyPattern(expression, OCTAL_NUMBER, Evaluator::convertFromOctal);
@@ -510,6 +900,26 @@ public class Evaluator {
 		return applyPattern(expression.trim(), LAST_REFERENCE, this::replaceLastReference);
 	}
 	
+	/**
+	 * Publishes a new {@link EvaluatorSnapshot} of the current state.
+	 * <p>
+	 * The evaluated expressions are shared with the snapshot in constant time,
+	 * everything else is shared as is because it is replaced instead of being
+	 * modified.
+	 */
+	@SuppressWarnings("unchecked")
+	private void publishSnapshot() {
+		List<EvaluatedExpression> evaluatedExpressionsSnapshot = null;
+		
+		if (evaluatedExpressions instanceof AppendOnlyList) {
+			evaluatedExpressionsSnapshot = ((AppendOnlyList<EvaluatedExpression>)evaluatedExpressions).snapshot();
+		} else {
+			evaluatedExpressionsSnapshot = Collections.unmodifiableList(new ArrayList<>(evaluatedExpressions));
+		}
+		
+		snapshot = new EvaluatorSnapshot(new Evaluator(this, evaluatedExpressionsSnapshot));
+	}
+	
 	private String replaceAliases(String expression) {
 		for (Entry<String, String> alias : aliases.entrySet()) {
 			expression = expression.replaceAll(alias.getKey(), alias.getValue());
@@ -33,6 +33,9 @@ class EvaluatorAwareExpression extends Expression {
 	/** The {@link Evaluator}. */
 	private Evaluator evaluator = null;
 	
+	/** The {@link MathContext} to use, {@code null} for the default one. */
+	private MathContext mathContext = null;
+	
 	/**
 	 * Creates a new instance of {@link EvaluatorAwareExpression}.
 	 *
@@ -43,6 +46,8 @@ class EvaluatorAwareExpression extends Expression {
 		super(expression);
 		
 		this.evaluator = evaluator;
+		
+		guardFunctions();
 	}
 	
 	/**
@@ -56,6 +61,27 @@ class EvaluatorAwareExpression extends Expression {
 		super(expression, defaultMathContext);
 		
 		this.evaluator = evaluator;
+		this.mathContext = defaultMathContext;
+		
+		guardFunctions();
+	}
+	
+	private void guardFunction(GuardedFunction guardedFunction) {
+		guardedFunction.delegate = addFunction(guardedFunction);
+	}
+	
+	/**
+	 * Replaces the builtin functions whose costs depend on the size of their
+	 * arguments with {@link GuardedFunction}s, if the exponent is limited.
+	 */
+	private void guardFunctions() {
+		if (evaluator.getLimits().getMaxExponent() > 0) {
+			guardFunction(new GuardedFunction("CEILING", 1));
+			guardFunction(new GuardedFunction("FACT", 1));
+			guardFunction(new GuardedFunction("FLOOR", 1));
+			guardFunction(new GuardedFunction("ROUND", 2));
+			guardFunction(new GuardedFunction("SQRT", 1));
+		}
 	}
 	
 	/**
@@ -91,15 +117,89 @@ class EvaluatorAwareExpression extends Expression {
 		 */
 		@Override
 		public BigDecimal eval(List<BigDecimal> parameters) {
-			Expression mathExpression = evaluator.prepareExpression(body);
+			EvaluationGuard guard = EvaluationGuard.current();
 			
-			for (int index = 0; index < parameters.size(); index++) {
-				mathExpression.with(
-						parameterNames.get(index),
-						parameters.get(index));
+			if (guard != null) {
+				guard.enterFunction(getName());
 			}
 			
-			return mathExpression.eval();
+			try {
+				Expression mathExpression = null;
+				
+				if (mathContext != null) {
+					mathExpression = evaluator.prepareExpression(body, mathContext);
+				} else {
+					mathExpression = evaluator.prepareExpression(body);
+				}
+				
+				for (int index = 0; index < parameters.size(); index++) {
+					mathExpression.with(
+							parameterNames.get(index),
+							parameters.get(index));
+				}
+				
+				return mathExpression.eval();
+			} finally {
+				if (guard != null) {
+					guard.exitFunction();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * {@link GuardedFunction} is a
+	 * {@link com.udojava.evalex.Expression.Function} implementation which
+	 * checks the arguments and the result of a builtin function against the
+	 * {@link EvaluationLimits} before delegating to it.
+	 */
+	public class GuardedFunction extends Function {
+		/** The builtin function. */
+		private com.udojava.evalex.Function delegate = null;
+		
+		/**
+		 * Creates a new instance of {@link GuardedFunction}.
+		 *
+		 * @param name The name of the builtin function.
+		 * @param numParams The count of parameters.
+		 */
+		public GuardedFunction(String name, int numParams) {
+			super(name, numParams);
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public BigDecimal eval(List<BigDecimal> parameters) {
+			EvaluationGuard guard = EvaluationGuard.current();
+			
+			if (guard == null) {
+				return delegate.eval(parameters);
+			}
+			
+			guard.check();
+			
+			for (BigDecimal parameter : parameters) {
+				guard.checkValue(parameter);
+			}
+			
+			if (getName().equals("FACT") && parameters.get(0) != null) {
+				// The factorial is calculated exactly, so the size of the
+				// result has to be estimated beforehand with Stirling's
+				// approximation.
+				double value = Math.max(parameters.get(0).doubleValue(), 1.0d);
+				guard.checkValue(BigDecimal.ONE.scaleByPowerOfTen((int)Math.min(
+						value * Math.log10(value / Math.E) + Math.log10(2 * Math.PI * value) / 2,
+						Integer.MAX_VALUE)));
+			} else if (getName().equals("ROUND") && parameters.get(1) != null) {
+				guard.checkValue(BigDecimal.ONE.scaleByPowerOfTen(parameters.get(1).intValue()));
+			}
+			
+			BigDecimal result = delegate.eval(parameters);
+			guard.checkValue(result);
+			
+			return result;
 		}
 	}
 }
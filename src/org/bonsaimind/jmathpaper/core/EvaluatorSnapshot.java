@@ -0,0 +1,143 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.core;
+
+import java.math.MathContext;
+import java.util.List;
+
+/**
+ * {@link EvaluatorSnapshot} is an immutable snapshot of the state of an
+ * {@link Evaluator}, which includes the evaluated expressions, the context
+ * expressions, aliases, units and the settings.
+ * <p>
+ * The {@link Evaluator} publishes a new {@link EvaluatorSnapshot} with every
+ * modification, previous snapshots are not affected by that. Any number of
+ * threads can use the same {@link EvaluatorSnapshot} concurrently and without
+ * any locking to compile and preview expressions, even while the
+ * {@link Evaluator} is being modified.
+ * <p>
+ * Evaluations of a snapshot are subject to the {@link EvaluationLimits} the
+ * {@link Evaluator} had at the time the snapshot has been taken, and are
+ * cancelled by {@link Evaluator#cancel()}.
+ */
+public final class EvaluatorSnapshot {
+	/** The frozen copy of the {@link Evaluator}, which is never modified. */
+	private final Evaluator evaluator;
+	
+	/**
+	 * Creates a new instance of {@link EvaluatorSnapshot}.
+	 *
+	 * @param evaluator The frozen copy of the {@link Evaluator}, which must not
+	 *        be modified anymore.
+	 */
+	EvaluatorSnapshot(Evaluator evaluator) {
+		super();
+		
+		this.evaluator = evaluator;
+		this.evaluator.snapshot = this;
+	}
+	
+	/**
+	 * Compiles the given expression, without evaluating it.
+	 * 
+	 * @param expression The expression to compile.
+	 * @return The {@link CompiledExpression}.
+	 * @throws InvalidExpressionException If the expression could not be
+	 *         compiled.
+	 * @see Evaluator#compile(String)
+	 */
+	public CompiledExpression compile(String expression) throws InvalidExpressionException {
+		return evaluator.compile(expression);
+	}
+	
+	/**
+	 * Gets the {@link MathContext} which is used for calculations.
+	 * 
+	 * @return The {@link MathContext} which is used for calculations.
+	 */
+	public MathContext getCalculationMathContext() {
+		return evaluator.getCalculationMathContext();
+	}
+	
+	/**
+	 * Gets the immutable {@link List} of the evaluated expressions.
+	 * 
+	 * @return The immutable {@link List} of the evaluated expressions.
+	 */
+	public List<EvaluatedExpression> getEvaluatedExpressions() {
+		return evaluator.evaluatedExpressions;
+	}
+	
+	/**
+	 * Gets the {@link MathContext} to which the results are rounded.
+	 * 
+	 * @return The {@link MathContext} to which the results are rounded.
+	 */
+	public MathContext getResultMathContext() {
+		return evaluator.getResultMathContext();
+	}
+	
+	/**
+	 * Gets whether adaptive precision is used.
+	 * 
+	 * @return {@code true} if adaptive precision is used.
+	 */
+	public boolean isAdaptivePrecision() {
+		return evaluator.isAdaptivePrecision();
+	}
+	
+	/**
+	 * Evaluates the given {@link CompiledExpression} without adding it to the
+	 * evaluated expressions.
+	 * 
+	 * @param compiledExpression The {@link CompiledExpression} to evaluate.
+	 * @return The {@link EvaluatedExpression}, without an ID if the expression
+	 *         did not declare one.
+	 * @throws InvalidExpressionException If the expression could not be
+	 *         evaluated.
+	 */
+	public EvaluatedExpression preview(CompiledExpression compiledExpression) throws InvalidExpressionException {
+		return evaluator.evaluateCompiled(compiledExpression, null);
+	}
+	
+	/**
+	 * Evaluates the given expression without adding it to the evaluated
+	 * expressions.
+	 * 
+	 * @param expression The expression to evaluate.
+	 * @return The {@link EvaluatedExpression}, without an ID if the expression
+	 *         did not declare one.
+	 * @throws InvalidExpressionException If the expression could not be
+	 *         evaluated.
+	 */
+	public EvaluatedExpression preview(String expression) throws InvalidExpressionException {
+		return evaluator.evaluateInternal(expression, null);
+	}
+	
+	/**
+	 * Gets the frozen copy of the {@link Evaluator}, which must not be
+	 * modified.
+	 * 
+	 * @return The frozen copy of the {@link Evaluator}.
+	 */
+	Evaluator getEvaluator() {
+		return evaluator;
+	}
+}
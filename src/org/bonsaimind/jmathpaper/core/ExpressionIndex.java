@@ -0,0 +1,239 @@
+/*
+ * Copyright 2017, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link ExpressionIndex} is a substring index over a list of expressions,
+ * which is maintained incrementally as expressions are appended.
+ * <p>
+ * For every expression all substrings of up to {@link #GRAM_LENGTH}
+ * characters (n-grams) are recorded together with the index of the
+ * expression. Searching for a term of up to {@link #GRAM_LENGTH} characters
+ * is a single lookup, for longer terms only the expressions which contain all
+ * n-grams of the term are checked, see {@link #find(String)}.
+ */
+public class ExpressionIndex {
+	/** The maximum length of the indexed substrings. */
+	public static final int GRAM_LENGTH = 3;
+	
+	/** All indexed expressions. */
+	private List<String> expressions = new ArrayList<>();
+	
+	/** The indexes of the expressions, by n-gram. */
+	private Map<String, Postings> postings = new HashMap<>();
+	
+	/**
+	 * Creates a new instance of {@link ExpressionIndex}.
+	 */
+	public ExpressionIndex() {
+		super();
+	}
+	
+	/**
+	 * Appends the given expression to the index.
+	 * 
+	 * @param expression The expression to append.
+	 */
+	public void add(String expression) {
+		int expressionIndex = expressions.size();
+		
+		expressions.add(expression);
+		
+		for (int start = 0; start < expression.length(); start++) {
+			for (int end = start + 1; end <= Math.min(expression.length(), start + GRAM_LENGTH); end++) {
+				String gram = expression.substring(start, end);
+				Postings gramPostings = postings.get(gram);
+				
+				if (gramPostings == null) {
+					gramPostings = new Postings();
+					postings.put(gram, gramPostings);
+				}
+				
+				gramPostings.add(expressionIndex);
+			}
+		}
+	}
+	
+	/**
+	 * Removes all expressions from the index.
+	 */
+	public void clear() {
+		postings.clear();
+		expressions.clear();
+	}
+	
+	/**
+	 * Finds all expressions which contain the given term.
+	 * <p>
+	 * A term of up to {@link #GRAM_LENGTH} characters is a single lookup, so
+	 * it takes O(m) for m matches. For longer terms, the expressions which
+	 * contain the rarest n-gram of the term are looked up in the sorted
+	 * expression indexes of every other n-gram of the term by binary search,
+	 * and only those which contain all of them are checked for the term
+	 * itself. That takes O(r * k * log(n)), with r being the count of
+	 * expressions which contain the rarest n-gram, k the count of n-grams in
+	 * the term and n the count of expressions, plus the substring checks of
+	 * the remaining candidates.
+	 * 
+	 * @param term The term to find.
+	 * @return The indexes of all expressions which contain the given term, in
+	 *         ascending order.
+	 */
+	public int[] find(String term) {
+		if (term == null || term.isEmpty()) {
+			int[] indexes = new int[expressions.size()];
+			
+			for (int index = 0; index < indexes.length; index++) {
+				indexes[index] = index;
+			}
+			
+			return indexes;
+		}
+		
+		if (term.length() <= GRAM_LENGTH) {
+			Postings termPostings = postings.get(term);
+			
+			if (termPostings == null) {
+				return new int[0];
+			}
+			
+			return termPostings.toArray();
+		}
+		
+		Postings[] gramPostings = new Postings[term.length() - GRAM_LENGTH + 1];
+		Postings rarestPostings = null;
+		
+		for (int start = 0; start < gramPostings.length; start++) {
+			gramPostings[start] = postings.get(term.substring(start, start + GRAM_LENGTH));
+			
+			if (gramPostings[start] == null) {
+				return new int[0];
+			}
+			
+			if (rarestPostings == null || gramPostings[start].size < rarestPostings.size) {
+				rarestPostings = gramPostings[start];
+			}
+		}
+		
+		int[] indexes = new int[rarestPostings.size];
+		int count = 0;
+		
+		for (int index = 0; index < rarestPostings.size; index++) {
+			int expressionIndex = rarestPostings.values[index];
+			
+			if (containsAll(gramPostings, expressionIndex)
+					&& expressions.get(expressionIndex).contains(term)) {
+				indexes[count] = expressionIndex;
+				count++;
+			}
+		}
+		
+		return Arrays.copyOf(indexes, count);
+	}
+	
+	/**
+	 * Gets the count of indexed expressions.
+	 * 
+	 * @return The count of indexed expressions.
+	 */
+	public int size() {
+		return expressions.size();
+	}
+	
+	/**
+	 * Checks whether all of the given {@link Postings} contain the given
+	 * expression index.
+	 * 
+	 * @param allPostings The {@link Postings} to check.
+	 * @param expressionIndex The expression index.
+	 * @return {@code true} if all {@link Postings} contain it.
+	 */
+	private static final boolean containsAll(Postings[] allPostings, int expressionIndex) {
+		for (Postings gramPostings : allPostings) {
+			if (!gramPostings.contains(expressionIndex)) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * {@link Postings} is a growable list of expression indexes, which are
+	 * always appended in ascending order.
+	 */
+	private static final class Postings {
+		/** The count of values. */
+		private int size = 0;
+		
+		/** The values. */
+		private int[] values = new int[4];
+		
+		/**
+		 * Creates a new instance of {@link Postings}.
+		 */
+		public Postings() {
+			super();
+		}
+		
+		/**
+		 * Adds the given expression index, if it is not already the last one.
+		 * 
+		 * @param expressionIndex The expression index to add.
+		 */
+		public void add(int expressionIndex) {
+			if (size > 0 && values[size - 1] == expressionIndex) {
+				return;
+			}
+			
+			if (size == values.length) {
+				values = Arrays.copyOf(values, values.length * 2);
+			}
+			
+			values[size] = expressionIndex;
+			size++;
+		}
+		
+		/**
+		 * Checks whether the given expression index is contained.
+		 * 
+		 * @param expressionIndex The expression index.
+		 * @return {@code true} if it is contained.
+		 */
+		public boolean contains(int expressionIndex) {
+			return Arrays.binarySearch(values, 0, size, expressionIndex) >= 0;
+		}
+		
+		/**
+		 * Gets the values as array.
+		 * 
+		 * @return The values as array.
+		 */
+		public int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
@@ -32,6 +32,7 @@ import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -40,14 +41,31 @@ import org.bonsaimind.jmathpaper.core.evaluatedexpressions.NumberEvaluatedExpres
 public class Paper {
 	private static final int DEFAULT_WIDTH = 50;
 	protected boolean changed = true;
-	protected Evaluator evaluator = new Evaluator();
+	/** The failure of the last evaluation of the pending lines, if any. */
+	protected InvalidExpressionException evaluationFailure = null;
+	protected volatile Evaluator evaluator = new Evaluator();
 	protected int expressionColumnSize = 0;
+	protected ColumnSizeTracker expressionColumnSizes = new ColumnSizeTracker();
+	protected ExpressionIndex expressionIndex = new ExpressionIndex();
 	protected Path file = null;
 	protected int idColumnSize = 0;
-	protected String notes = "";
-	protected NumberFormat numberFormat = null;
+	protected ColumnSizeTracker idColumnSizes = new ColumnSizeTracker();
+	protected volatile String notes = "";
+	protected volatile NumberFormat numberFormat = null;
 	protected String originalNumberFormat = null;
+	/** Whether there are lines which have been loaded but not evaluated. */
+	protected volatile boolean pending = false;
+	/** The lines which have been loaded but not yet evaluated. */
+	protected List<String> pendingLines = null;
 	protected int resultColumnSize = 0;
+	protected ColumnSizeTracker resultColumnSizes = new ColumnSizeTracker();
+	/**
+	 * The lines which have been loaded lazily but could not be evaluated,
+	 * starting with the failing one. As long as there are any, the
+	 * {@link Paper} can neither be changed nor saved, so that they are not
+	 * lost and the references in them keep pointing to the same lines.
+	 */
+	protected List<String> unevaluatedLines = new ArrayList<>();
 	
 	public Paper() {
 		super();
@@ -55,13 +73,74 @@ public class Paper {
 		setNumberFormat(",##0.?");
 	}
 	
+	/**
+	 * Evaluates the lines which have been loaded by
+	 * {@link #loadLazilyFrom(Path)}, or waits until they have been evaluated if
+	 * that is already happening on another thread.
+	 * <p>
+	 * All methods which access the expressions call this first, so a lazily
+	 * loaded {@link Paper} can be used like any other. If the evaluation
+	 * fails, the {@link Paper} contains the expressions up to the failing one
+	 * and the failure is reported by {@link #checkEvaluation()}. The failing
+	 * line and all lines after it are kept as they are, see
+	 * {@link #getUnevaluatedLines()}, and until the {@link Paper} is loaded
+	 * again or {@link #clear() cleared}, no expressions can be evaluated and
+	 * it cannot be saved.
+	 */
+	public void awaitEvaluation() {
+		if (pending) {
+			evaluatePendingLines();
+		}
+	}
+	
+	/**
+	 * Cancels the evaluations of this {@link Paper} which are currently
+	 * running, they fail with an {@link InvalidExpressionException}.
+	 * <p>
+	 * This method can be invoked from any thread.
+	 */
+	public void cancelEvaluation() {
+		evaluator.cancel();
+	}
+	
+	/**
+	 * Waits until the lines which have been loaded by
+	 * {@link #loadLazilyFrom(Path)} have been evaluated and throws the failure
+	 * of that evaluation, if any. The failure is only thrown once.
+	 * 
+	 * @throws InvalidExpressionException If the evaluation of the lazily loaded
+	 *         lines failed.
+	 */
+	public void checkEvaluation() throws InvalidExpressionException {
+		awaitEvaluation();
+		
+		synchronized (this) {
+			if (evaluationFailure != null) {
+				InvalidExpressionException failure = evaluationFailure;
+				evaluationFailure = null;
+				
+				throw failure;
+			}
+		}
+	}
+	
 	public void clear() {
+		awaitEvaluation();
+		
 		evaluator.reset();
+		expressionIndex.clear();
+		
+		remeasureColumnSizes();
 		
+		evaluationFailure = null;
+		unevaluatedLines = new ArrayList<>();
 		changed = true;
 	}
 	
 	public EvaluatedExpression evaluate(String expression) throws InvalidExpressionException {
+		awaitEvaluation();
+		checkCompletelyEvaluated();
+		
 		EvaluatedExpression evaluatedExpression = evaluator.evaluate(expression);
 		
 		measureExpression(evaluatedExpression);
@@ -76,28 +155,49 @@ public class Paper {
 	}
 	
 	public void evaluateLines(List<String> lines) throws InvalidExpressionException {
-		StringBuilder notesBuilder = new StringBuilder();
-		boolean notesReached = false;
+		awaitEvaluation();
 		
-		for (String line : lines) {
-			if (!notesReached) {
-				if (!line.trim().isEmpty()) {
-					evaluate(extractExpression(line));
-				} else {
-					notesReached = true;
-				}
-			} else {
-				notesBuilder.append(line);
-				notesBuilder.append("\n");
-			}
+		int notesIndex = indexOfNotes(lines);
+		
+		for (String line : lines.subList(0, notesIndex)) {
+			evaluate(extractExpression(line));
 		}
 		
-		notes = notesBuilder.toString().trim();
+		notes = extractNotes(lines.subList(notesIndex, lines.size()));
 		
 		remeasureColumnSizes();
 	}
 	
+	/**
+	 * Finds all expressions which contain the given term.
+	 * <p>
+	 * The expressions are kept in an {@link ExpressionIndex}, which is brought
+	 * up to date with the expressions which have been appended since the last
+	 * search, so every expression is only indexed once.
+	 * 
+	 * @param term The term to find.
+	 * @return The indexes of all expressions which contain the given term, in
+	 *         ascending order.
+	 */
+	public int[] find(String term) {
+		awaitEvaluation();
+		
+		List<EvaluatedExpression> evaluatedExpressions = evaluator.getEvaluatedExpressions();
+		
+		if (expressionIndex.size() > evaluatedExpressions.size()) {
+			expressionIndex.clear();
+		}
+		
+		for (int index = expressionIndex.size(); index < evaluatedExpressions.size(); index++) {
+			expressionIndex.add(evaluatedExpressions.get(index).getExpression());
+		}
+		
+		return expressionIndex.find(term);
+	}
+	
 	public String format(EvaluatedExpression evaluatedExpression) {
+		awaitEvaluation();
+		
 		return evaluatedExpression.format(
 				idColumnSize,
 				expressionColumnSize,
@@ -106,14 +206,24 @@ public class Paper {
 	}
 	
 	public List<EvaluatedExpression> getEvaluatedExpressions() {
+		awaitEvaluation();
+		
 		return evaluator.getEvaluatedExpressions();
 	}
 	
+	public EvaluationLimits getEvaluationLimits() {
+		return evaluator.getLimits();
+	}
+	
 	public Evaluator getEvaluator() {
+		awaitEvaluation();
+		
 		return evaluator;
 	}
 	
 	public int getExpressionColumnSize() {
+		awaitEvaluation();
+		
 		return expressionColumnSize;
 	}
 	
@@ -122,10 +232,14 @@ public class Paper {
 	}
 	
 	public int getIdColumnSize() {
+		awaitEvaluation();
+		
 		return idColumnSize;
 	}
 	
 	public String getNotes() {
+		awaitEvaluation();
+		
 		return notes;
 	}
 	
@@ -138,6 +252,8 @@ public class Paper {
 	}
 	
 	public int getResultColumnSize() {
+		awaitEvaluation();
+		
 		return resultColumnSize;
 	}
 	
@@ -145,10 +261,52 @@ public class Paper {
 		return evaluator.getResultMathContext().getRoundingMode();
 	}
 	
+	/**
+	 * Gets the latest {@link EvaluatorSnapshot} of this {@link Paper}, against
+	 * which expressions can be previewed from any thread without locking.
+	 * <p>
+	 * In contrast to the other methods, this does not wait for lazily loaded
+	 * lines to be evaluated, so they are only contained if they have already
+	 * been evaluated, see {@link #awaitEvaluation()}.
+	 * 
+	 * @return The latest {@link EvaluatorSnapshot}.
+	 */
+	public EvaluatorSnapshot getSnapshot() {
+		return evaluator.getSnapshot();
+	}
+	
+	/**
+	 * Gets the lines which have been loaded by {@link #loadLazilyFrom(Path)}
+	 * but could not be evaluated, starting with the failing one.
+	 * 
+	 * @return The lines which could not be evaluated, an empty {@link List}
+	 *         if there are none.
+	 */
+	public List<String> getUnevaluatedLines() {
+		awaitEvaluation();
+		
+		return Collections.unmodifiableList(unevaluatedLines);
+	}
+	
+	public boolean isAdaptivePrecision() {
+		return evaluator.isAdaptivePrecision();
+	}
+	
 	public boolean isChanged() {
 		return changed;
 	}
 	
+	/**
+	 * Gets whether this {@link Paper} has been loaded by
+	 * {@link #loadLazilyFrom(Path)} and its lines have not been evaluated
+	 * yet.
+	 * 
+	 * @return {@code true} if the lines have not been evaluated yet.
+	 */
+	public boolean isPending() {
+		return pending;
+	}
+	
 	public void load() throws InvalidExpressionException, IOException {
 		loadFrom(file);
 	}
@@ -169,7 +327,40 @@ public class Paper {
 		changed = false;
 	}
 	
+	/**
+	 * Loads the given file without evaluating it.
+	 * <p>
+	 * Only the lines are read, they are evaluated by
+	 * {@link #awaitEvaluation()}, either explicitly, for example from a
+	 * background thread, or as soon as the expressions are accessed.
+	 * 
+	 * @param file The file to load.
+	 * @throws IOException If reading the file failed.
+	 */
+	public void loadLazilyFrom(Path file) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("file cannot be null.");
+		}
+		
+		if (!Files.exists(file)) {
+			throw new FileNotFoundException(file.toAbsolutePath().toString());
+		}
+		
+		List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+		
+		clear();
+		
+		synchronized (this) {
+			pendingLines = lines;
+			pending = true;
+		}
+		
+		changed = false;
+	}
+	
 	public EvaluatedExpression preview(String expression) throws InvalidExpressionException {
+		awaitEvaluation();
+		
 		return evaluator.preview(expression);
 	}
 	
@@ -209,6 +400,8 @@ public class Paper {
 	 *         reevaluate.
 	 */
 	public void reevaluate() throws InvalidExpressionException {
+		awaitEvaluation();
+		
 		if (evaluator.getEvaluatedExpressions().isEmpty()) {
 			return;
 		}
@@ -228,6 +421,26 @@ public class Paper {
 		remeasureColumnSizes();
 	}
 	
+	/**
+	 * Formats all results again with the current {@link NumberFormat} and
+	 * updates the column sizes accordingly.
+	 * <p>
+	 * In contrast to {@link #reevaluate()} the statements are not evaluated
+	 * again, so this is sufficient if only the {@link #setNumberFormat(String)
+	 * number format} has been changed.
+	 */
+	public void reformat() {
+		awaitEvaluation();
+		
+		resultColumnSizes.clear();
+		
+		for (EvaluatedExpression evaluatedExpression : evaluator.getEvaluatedExpressions()) {
+			resultColumnSizes.add(evaluatedExpression.getFormattedResult(numberFormat).length());
+		}
+		
+		updateColumnSizes();
+	}
+	
 	public void save() throws IOException {
 		saveTo(file);
 	}
@@ -237,28 +450,80 @@ public class Paper {
 			throw new IllegalArgumentException("file cannot be null.");
 		}
 		
+		awaitEvaluation();
+		checkCompletelyEvaluated();
+		
 		try (BufferedWriter writer = Files.newBufferedWriter(
 				file,
 				StandardCharsets.UTF_8,
 				StandardOpenOption.CREATE,
 				StandardOpenOption.TRUNCATE_EXISTING)) {
-			writer.write(toString());
+			writeTo(writer);
 		}
 		
 		changed = false;
 	}
 	
+	/**
+	 * Searches for all expressions which contain the given term.
+	 * 
+	 * @param term The term to search for.
+	 * @return All {@link EvaluatedExpression}s which contain the given term.
+	 * @see #find(String)
+	 */
+	public List<EvaluatedExpression> search(String term) {
+		awaitEvaluation();
+		
+		List<EvaluatedExpression> evaluatedExpressions = evaluator.getEvaluatedExpressions();
+		List<EvaluatedExpression> foundEvaluatedExpressions = new ArrayList<>();
+		
+		for (int index : find(term)) {
+			foundEvaluatedExpressions.add(evaluatedExpressions.get(index));
+		}
+		
+		return foundEvaluatedExpressions;
+	}
+	
+	public void setAdaptivePrecision(boolean adaptivePrecision) {
+		awaitEvaluation();
+		
+		evaluator.setAdaptivePrecision(adaptivePrecision);
+	}
+	
+	public void setEvaluationLimits(EvaluationLimits evaluationLimits) {
+		awaitEvaluation();
+		
+		evaluator.setLimits(evaluationLimits);
+	}
+	
 	public void setFile(Path file) {
 		this.file = file;
 	}
 	
 	public void setNotes(String notes) {
+		awaitEvaluation();
+		
 		changed = changed || !Objects.equals(this.notes, notes);
 		
 		this.notes = notes;
 	}
 	
+	/**
+	 * Sets the format which is used for the results.
+	 * <p>
+	 * A new {@link NumberFormat} instance is created on every change, which
+	 * also serves as the version of the formatting. The formatted results are
+	 * cached per {@link NumberFormat} instance, so the instance must never be
+	 * modified after it has been created.
+	 * <p>
+	 * Patterns which are supported by {@link BigDecimalFormat} use it, all
+	 * others use a {@link DecimalFormat}.
+	 * 
+	 * @param format The format to use.
+	 */
 	public void setNumberFormat(String format) {
+		awaitEvaluation();
+		
 		originalNumberFormat = format;
 		
 		if (format.contains("?")) {
@@ -271,11 +536,25 @@ public class Paper {
 			format = format.replaceFirst("\\?", builder.toString());
 		}
 		
-		numberFormat = new DecimalFormat(format);
-		numberFormat.setRoundingMode(evaluator.getResultMathContext().getRoundingMode());
+		try {
+			numberFormat = new BigDecimalFormat(format, evaluator.getResultMathContext().getRoundingMode());
+		} catch (IllegalArgumentException e) {
+			// The pattern is not supported by the specialized format, fall
+			// back to the general one.
+			numberFormat = new DecimalFormat(format);
+			numberFormat.setRoundingMode(evaluator.getResultMathContext().getRoundingMode());
+		}
 	}
 	
 	public void setPrecision(int precision) {
+		awaitEvaluation();
+		
+		int maxDigits = evaluator.getLimits().getMaxDigits();
+		
+		if (maxDigits > 0 && (precision <= 0 || precision * 2 > maxDigits)) {
+			throw new IllegalArgumentException("The precision exceeds the maximum of " + maxDigits / 2 + " digits.");
+		}
+		
 		if (precision <= 0) {
 			evaluator.setCalculationMathContext(new MathContext(
 					precision,
@@ -293,6 +572,8 @@ public class Paper {
 	}
 	
 	public void setRoundingMode(RoundingMode roundingMode) {
+		awaitEvaluation();
+		
 		evaluator.setCalculationMathContext(new MathContext(
 				evaluator.getCalculationMathContext().getPrecision(),
 				roundingMode));
@@ -300,25 +581,75 @@ public class Paper {
 				evaluator.getResultMathContext().getPrecision(),
 				roundingMode));
 		
-		numberFormat.setRoundingMode(evaluator.getResultMathContext().getRoundingMode());
+		setNumberFormat(originalNumberFormat);
 	}
 	
 	@Override
 	public String toString() {
 		StringBuilder builder = new StringBuilder();
 		
+		try {
+			writeTo(builder);
+		} catch (IOException e) {
+			// Cannot happen, StringBuilder does not throw.
+			throw new IllegalStateException(e);
+		}
+		
+		return builder.toString();
+	}
+	
+	/**
+	 * Writes this {@link Paper} in its save format to the given
+	 * {@link Appendable}.
+	 * <p>
+	 * The lines are formatted one after another into a single reused buffer
+	 * and handed to the {@link Appendable} as soon as they are complete, so
+	 * the whole paper is never held in memory as one {@link String}.
+	 * 
+	 * @param appendable The {@link Appendable} to write to.
+	 * @throws IOException If writing to the {@link Appendable} failed.
+	 */
+	public void writeTo(Appendable appendable) throws IOException {
+		awaitEvaluation();
+		
+		StringBuilder lineBuilder = new StringBuilder(idColumnSize + expressionColumnSize + resultColumnSize + 5);
+		
 		for (EvaluatedExpression evaluatedExpression : evaluator.getEvaluatedExpressions()) {
-			builder.append(format(evaluatedExpression));
-			builder.append('\n');
+			lineBuilder.setLength(0);
+			
+			evaluatedExpression.format(
+					lineBuilder,
+					idColumnSize,
+					expressionColumnSize,
+					resultColumnSize,
+					numberFormat);
+			lineBuilder.append('\n');
+			
+			appendable.append(lineBuilder);
 		}
 		
-		if (notes != null && notes.trim().length() > 0) {
-			builder.append('\n');
-			builder.append(notes);
-			builder.append('\n');
+		for (String unevaluatedLine : unevaluatedLines) {
+			appendable.append(unevaluatedLine);
+			appendable.append('\n');
 		}
 		
-		return builder.toString();
+		if (notes != null && notes.trim().length() > 0) {
+			appendable.append('\n');
+			appendable.append(notes);
+			appendable.append('\n');
+		}
+	}
+	
+	/**
+	 * Checks that the lazily loaded lines have been evaluated completely.
+	 * 
+	 * @throws IllegalStateException If there are lines which could not be
+	 *         evaluated.
+	 */
+	protected void checkCompletelyEvaluated() throws IllegalStateException {
+		if (!unevaluatedLines.isEmpty()) {
+			throw new IllegalStateException("The paper could only be evaluated partially, it has to be reloaded or cleared before it can be changed or saved.");
+		}
 	}
 	
 	protected String extractExpression(String line) {
@@ -343,27 +674,111 @@ public class Paper {
 		return trimmedString;
 	}
 	
-	protected void measureExpression(EvaluatedExpression evaluatedExpression) {
-		idColumnSize = Math.max(idColumnSize, evaluatedExpression.getId().length());
-		expressionColumnSize = Math.max(expressionColumnSize, evaluatedExpression.getExpression().length());
-		resultColumnSize = Math.max(resultColumnSize, evaluatedExpression.getFormattedResult(numberFormat).length());
+	/**
+	 * Extracts the notes from the given lines, which follow the expressions.
+	 * 
+	 * @param lines The lines after the expressions.
+	 * @return The notes.
+	 */
+	protected String extractNotes(List<String> lines) {
+		StringBuilder notesBuilder = new StringBuilder();
 		
-		if ((idColumnSize + expressionColumnSize + resultColumnSize + 4) < DEFAULT_WIDTH) {
-			expressionColumnSize = DEFAULT_WIDTH - 4 - idColumnSize - resultColumnSize;
+		for (String line : lines) {
+			notesBuilder.append(line);
+			notesBuilder.append("\n");
 		}
+		
+		return notesBuilder.toString().trim();
+	}
+	
+	/**
+	 * Evaluates the {@link #pendingLines}, if they have not been evaluated
+	 * yet.
+	 */
+	protected synchronized void evaluatePendingLines() {
+		if (pendingLines != null) {
+			List<String> lines = pendingLines;
+			
+			// Cleared first, so that the evaluation itself does not try to
+			// evaluate the lines again.
+			pendingLines = null;
+			
+			int notesIndex = indexOfNotes(lines);
+			
+			for (int index = 0; index < notesIndex; index++) {
+				try {
+					evaluate(extractExpression(lines.get(index)));
+				} catch (InvalidExpressionException e) {
+					unevaluatedLines = new ArrayList<>(lines.subList(index, notesIndex));
+					evaluationFailure = e;
+					
+					break;
+				}
+			}
+			
+			notes = extractNotes(lines.subList(notesIndex, lines.size()));
+			
+			remeasureColumnSizes();
+			
+			changed = false;
+			pending = false;
+		}
+	}
+	
+	protected void measureExpression(EvaluatedExpression evaluatedExpression) {
+		trackExpression(evaluatedExpression);
+		updateColumnSizes();
 	}
 	
 	protected void remeasureColumnSizes() {
-		idColumnSize = 0;
-		expressionColumnSize = 0;
-		resultColumnSize = 0;
+		idColumnSizes.clear();
+		expressionColumnSizes.clear();
+		resultColumnSizes.clear();
 		
 		for (EvaluatedExpression evaluatedExpression : evaluator.getEvaluatedExpressions()) {
-			measureExpression(evaluatedExpression);
+			trackExpression(evaluatedExpression);
 		}
 		
-		if ((idColumnSize + expressionColumnSize + resultColumnSize + 4) < DEFAULT_WIDTH) {
-			expressionColumnSize = DEFAULT_WIDTH - 4 - idColumnSize - resultColumnSize;
+		updateColumnSizes();
+	}
+	
+	/**
+	 * Adds the sizes of the given {@link EvaluatedExpression} to the column
+	 * size trackers, without updating the column sizes.
+	 * 
+	 * @param evaluatedExpression The {@link EvaluatedExpression} to add.
+	 */
+	protected void trackExpression(EvaluatedExpression evaluatedExpression) {
+		idColumnSizes.add(evaluatedExpression.getId().length());
+		expressionColumnSizes.add(evaluatedExpression.getExpression().length());
+		resultColumnSizes.add(evaluatedExpression.getFormattedResult(numberFormat).length());
+	}
+	
+	/**
+	 * Updates the column sizes from the column size trackers.
+	 */
+	protected void updateColumnSizes() {
+		idColumnSize = idColumnSizes.getMaximum();
+		resultColumnSize = resultColumnSizes.getMaximum();
+		expressionColumnSize = Math.max(
+				expressionColumnSizes.getMaximum(),
+				DEFAULT_WIDTH - 4 - idColumnSize - resultColumnSize);
+	}
+	
+	/**
+	 * Gets the index of the first empty line, after which the notes follow.
+	 * 
+	 * @param lines The lines of a paper.
+	 * @return The index of the first empty line, the size of the given lines
+	 *         if there is none.
+	 */
+	private static final int indexOfNotes(List<String> lines) {
+		for (int index = 0; index < lines.size(); index++) {
+			if (lines.get(index).trim().isEmpty()) {
+				return index;
+			}
 		}
+		
+		return lines.size();
 	}
 }
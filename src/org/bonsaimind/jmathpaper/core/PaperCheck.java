@@ -0,0 +1,269 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.core;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.bonsaimind.jmathpaper.core.configuration.Definitions;
+
+/**
+ * {@link PaperCheck} evaluates a saved paper again and compares the results
+ * with the ones stored in the file, for example to find papers which are
+ * outdated after the definitions have changed.
+ * <p>
+ * Every instance holds its own {@link Paper}, so multiple files can be checked
+ * concurrently, even with the same {@link Definitions}.
+ */
+public class PaperCheck {
+	/** The duration of the check in nanoseconds. */
+	protected long duration = 0;
+	/** The checked file. */
+	protected Path file = null;
+	/** The {@link Mismatch}es which have been found. */
+	protected List<Mismatch> mismatches = new ArrayList<>();
+	/** The {@link Paper} which has been evaluated from the file. */
+	protected Paper paper = null;
+	private List<Mismatch> readonlyMismatches = null;
+	
+	/**
+	 * Creates a new instance of {@link PaperCheck}.
+	 * 
+	 * @param file The file to check, must not be {@code null}.
+	 */
+	public PaperCheck(Path file) {
+		super();
+		
+		if (file == null) {
+			throw new IllegalArgumentException("file cannot be null.");
+		}
+		
+		this.file = file;
+	}
+	
+	/**
+	 * Evaluates the file again and compares the results.
+	 * 
+	 * @param definitions The {@link Definitions} to evaluate the file with, can
+	 *        be {@code null}.
+	 * @throws InvalidExpressionException If an expression of the file could not
+	 *         be evaluated.
+	 * @throws IOException If reading the file failed.
+	 */
+	public void check(Definitions definitions) throws InvalidExpressionException, IOException {
+		long start = System.nanoTime();
+		
+		List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+		
+		paper = new Paper();
+		
+		if (definitions != null) {
+			definitions.apply(paper);
+			
+			// The paper template is not part of the file.
+			paper.clear();
+		}
+		
+		paper.evaluateLines(lines);
+		paper.setFile(file);
+		
+		mismatches.clear();
+		
+		List<EvaluatedExpression> evaluatedExpressions = paper.getEvaluatedExpressions();
+		
+		// Every line up to the notes holds one expression, in order.
+		for (int lineIndex = 0; lineIndex < lines.size() && lineIndex < evaluatedExpressions.size(); lineIndex++) {
+			EvaluatedExpression evaluatedExpression = evaluatedExpressions.get(lineIndex);
+			String storedResult = extractStoredResult(lines.get(lineIndex));
+			
+			if (!matches(storedResult, evaluatedExpression)) {
+				mismatches.add(new Mismatch(
+						lineIndex + 1,
+						evaluatedExpression.getExpression(),
+						storedResult,
+						evaluatedExpression.getFormattedResult(paper.getNumberFormat())));
+			}
+		}
+		
+		duration = System.nanoTime() - start;
+	}
+	
+	/**
+	 * Gets the duration of the last {@link #check(Definitions)}.
+	 * 
+	 * @return The duration in nanoseconds.
+	 */
+	public long getDuration() {
+		return duration;
+	}
+	
+	public Path getFile() {
+		return file;
+	}
+	
+	public List<Mismatch> getMismatches() {
+		if (readonlyMismatches == null) {
+			readonlyMismatches = Collections.unmodifiableList(mismatches);
+		}
+		
+		return readonlyMismatches;
+	}
+	
+	/**
+	 * Gets whether all stored results match the evaluated ones.
+	 * 
+	 * @return {@code true} if all stored results match.
+	 */
+	public boolean isUpToDate() {
+		return mismatches.isEmpty();
+	}
+	
+	/**
+	 * Saves the file again with the evaluated results.
+	 * 
+	 * @throws IllegalStateException If the file has not been checked yet.
+	 * @throws IOException If writing the file failed.
+	 */
+	public void rewrite() throws IOException {
+		if (paper == null) {
+			throw new IllegalStateException("The file has not been checked yet.");
+		}
+		
+		paper.save();
+	}
+	
+	/**
+	 * Extracts the result from the given line of a saved paper, which is
+	 * everything after the last equal sign.
+	 * 
+	 * @param line The line.
+	 * @return The stored result, {@code null} if there is none.
+	 */
+	protected String extractStoredResult(String line) {
+		int lastSeparatorIndex = line.lastIndexOf('=');
+		
+		if (lastSeparatorIndex < 0) {
+			return null;
+		}
+		
+		return line.substring(lastSeparatorIndex + 1).trim();
+	}
+	
+	/**
+	 * Gets whether the given stored result matches the result of the given
+	 * {@link EvaluatedExpression}.
+	 * <p>
+	 * The file might have been saved with another number format, so the
+	 * stored result matches if it has either the same formatting or the same
+	 * value.
+	 * 
+	 * @param storedResult The stored result, can be {@code null}.
+	 * @param evaluatedExpression The {@link EvaluatedExpression}.
+	 * @return {@code true} if the stored result matches.
+	 */
+	protected boolean matches(String storedResult, EvaluatedExpression evaluatedExpression) {
+		if (storedResult == null) {
+			return false;
+		}
+		
+		NumberFormat numberFormat = paper.getNumberFormat();
+		
+		if (storedResult.equals(evaluatedExpression.getFormattedResult(numberFormat))) {
+			return true;
+		}
+		
+		if (evaluatedExpression.getResult() == null) {
+			return false;
+		}
+		
+		String storedValue = storedResult;
+		
+		if (numberFormat instanceof DecimalFormat) {
+			DecimalFormatSymbols symbols = ((DecimalFormat)numberFormat).getDecimalFormatSymbols();
+			
+			storedValue = storedValue
+					.replace(String.valueOf(symbols.getGroupingSeparator()), "")
+					.replace(symbols.getDecimalSeparator(), '.');
+		}
+		
+		try {
+			return new BigDecimal(storedValue).compareTo(evaluatedExpression.getResult()) == 0;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * {@link Mismatch} is a line of a saved paper whose stored result does not
+	 * match the evaluated one.
+	 */
+	public static class Mismatch {
+		/** The expression. */
+		protected String expression = null;
+		/** The number of the line, starting at 1. */
+		protected int lineNumber = 0;
+		/** The evaluated result. */
+		protected String result = null;
+		/** The stored result, {@code null} if there was none. */
+		protected String storedResult = null;
+		
+		/**
+		 * Creates a new instance of {@link Mismatch}.
+		 * 
+		 * @param lineNumber The number of the line, starting at 1.
+		 * @param expression The expression.
+		 * @param storedResult The stored result, can be {@code null}.
+		 * @param result The evaluated result.
+		 */
+		public Mismatch(int lineNumber, String expression, String storedResult, String result) {
+			super();
+			
+			this.lineNumber = lineNumber;
+			this.expression = expression;
+			this.storedResult = storedResult;
+			this.result = result;
+		}
+		
+		public String getExpression() {
+			return expression;
+		}
+		
+		public int getLineNumber() {
+			return lineNumber;
+		}
+		
+		public String getResult() {
+			return result;
+		}
+		
+		public String getStoredResult() {
+			return storedResult;
+		}
+	}
+}
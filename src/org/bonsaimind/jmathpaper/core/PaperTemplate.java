@@ -0,0 +1,338 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.core;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import org.bonsaimind.jmathpaper.core.evaluatedexpressions.FunctionEvaluatedExpression;
+
+import com.udojava.evalex.Expression;
+
+/**
+ * {@link PaperTemplate} uses a {@link Paper} as template of formulas which is
+ * evaluated again and again with different values for some of its
+ * variables, for example once for every row of a table.
+ * <p>
+ * The expressions of the {@link Paper} are compiled only once, the
+ * {@link Evaluation}s created by {@link #newEvaluation()} keep their parsed
+ * form and only bind new values to them. Expressions of the {@link Paper}
+ * which assign one of the variables are skipped, so that the {@link Paper}
+ * itself can hold sample values for them.
+ * <p>
+ * The {@link PaperTemplate} itself can be shared between threads, but every
+ * thread needs its own {@link Evaluation}. Unit conversions are prepared when
+ * compiling the template. Every evaluation of a row is subject to the
+ * {@link EvaluationLimits} of the {@link Paper}. Adaptive precision is not used, the
+ * calculation precision of the {@link Paper} is used for every evaluation.
+ */
+public class PaperTemplate {
+	/** The compiled expressions of the template. */
+	protected List<CompiledExpression> compiledExpressions = new ArrayList<>();
+	/** The {@link Evaluator} with which the template has been compiled. */
+	protected Evaluator evaluator = null;
+	/**
+	 * The IDs of the {@link #compiledExpressions}, as assigned when compiling
+	 * the template.
+	 */
+	protected List<String> ids = new ArrayList<>();
+	/**
+	 * The prepared unit conversions of the {@link #compiledExpressions},
+	 * {@code null} for those without.
+	 */
+	protected List<UnaryOperator<BigDecimal>> conversions = new ArrayList<>();
+	/**
+	 * The sources for the variables used by every compiled expression, see
+	 * {@link #resolveSources(List, int)}.
+	 */
+	protected List<int[]> sources = new ArrayList<>();
+	/** The variables whose values are given on every evaluation. */
+	protected List<String> variables = null;
+	private List<String> readonlyIds = null;
+	
+	/**
+	 * Creates a new instance of {@link PaperTemplate}.
+	 *
+	 * @param paper The {@link Paper} to use as template, must not be
+	 *        {@code null}.
+	 * @param variables The names of the variables whose values are given on
+	 *        every evaluation, must not be {@code null}.
+	 * @throws InvalidExpressionException If an expression of the
+	 *         {@link Paper} could not be compiled.
+	 */
+	public PaperTemplate(Paper paper, List<String> variables) throws InvalidExpressionException {
+		super();
+		
+		if (paper == null) {
+			throw new IllegalArgumentException("paper cannot be null.");
+		}
+		if (variables == null) {
+			throw new IllegalArgumentException("variables cannot be null.");
+		}
+		
+		this.variables = Collections.unmodifiableList(new ArrayList<>(variables));
+		
+		evaluator = new Evaluator(paper.getEvaluator());
+		
+		for (EvaluatedExpression evaluatedExpression : paper.getEvaluatedExpressions()) {
+			CompiledExpression compiledExpression = evaluator.compile(evaluatedExpression.getExpression());
+			// Evaluating it with the sample values makes the ID known to the
+			// following expressions, which influences how units are detected.
+			String id = evaluator.evaluate(compiledExpression).getId();
+			
+			if (compiledExpression.getId() == null || indexOfIgnoreCase(this.variables, id) < 0) {
+				if (!compiledExpression.isFunction()) {
+					sources.add(resolveSources(
+							new Expression(compiledExpression.getMathExpression().replace('#', 'R')).getUsedVariables(),
+							compiledExpressions.size()));
+				} else {
+					sources.add(null);
+				}
+				
+				if (compiledExpression.getUnitSource() != null && compiledExpression.getUnitTarget() != null) {
+					conversions.add(evaluator.getUnitConverter().prepareConversion(
+							compiledExpression.getUnitSource(),
+							compiledExpression.getUnitTarget(),
+							evaluator.getCalculationMathContext()));
+				} else {
+					conversions.add(null);
+				}
+				
+				compiledExpressions.add(compiledExpression);
+				ids.add(id);
+			}
+		}
+	}
+	
+	/**
+	 * Gets the IDs of the expressions of this template, in the order of the
+	 * results returned by {@link Evaluation#evaluate(BigDecimal[])}.
+	 * 
+	 * @return The IDs of the expressions.
+	 */
+	public List<String> getIds() {
+		if (readonlyIds == null) {
+			readonlyIds = Collections.unmodifiableList(ids);
+		}
+		
+		return readonlyIds;
+	}
+	
+	/**
+	 * Gets the names of the variables whose values are given on every
+	 * evaluation.
+	 * 
+	 * @return The names of the variables.
+	 */
+	public List<String> getVariables() {
+		return variables;
+	}
+	
+	/**
+	 * Gets the index of the result with the given ID, if an ID is assigned
+	 * multiple times the index of the last one is returned.
+	 * 
+	 * @param id The ID.
+	 * @return The index of the result, {@code -1} if there is none.
+	 */
+	public int indexOf(String id) {
+		for (int index = ids.size() - 1; index >= 0; index--) {
+			if (ids.get(index).equalsIgnoreCase(id)) {
+				return index;
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Gets whether the expression at the given index is a function, which has
+	 * no result.
+	 * 
+	 * @param index The index of the expression.
+	 * @return {@code true} if the expression is a function.
+	 */
+	public boolean isFunction(int index) {
+		return compiledExpressions.get(index).isFunction();
+	}
+	
+	/**
+	 * Creates a new {@link Evaluation} of this template, which must only be
+	 * used by one thread at a time.
+	 * 
+	 * @return A new {@link Evaluation}.
+	 */
+	public Evaluation newEvaluation() {
+		return new Evaluation();
+	}
+	
+	/**
+	 * Resolves where the values of the given variables are coming from.
+	 * <p>
+	 * A value of zero or greater is the index of the variable in
+	 * {@link #variables}, a negative value {@code -(index + 1)} is the index of
+	 * a previous result. Variables which are neither, like context
+	 * expressions, are bound only once and are not included.
+	 * 
+	 * @param usedVariables The variables used by the expression.
+	 * @param index The index of the expression.
+	 * @return The sources of the variables.
+	 */
+	protected int[] resolveSources(List<String> usedVariables, int index) {
+		List<Integer> resolvedSources = new ArrayList<>();
+		
+		for (String usedVariable : usedVariables) {
+			int variableIndex = indexOfIgnoreCase(variables, usedVariable);
+			
+			if (variableIndex >= 0) {
+				resolvedSources.add(Integer.valueOf(variableIndex));
+			} else {
+				for (int previousIndex = index - 1; previousIndex >= 0; previousIndex--) {
+					if (!compiledExpressions.get(previousIndex).isFunction()
+							&& ids.get(previousIndex).replace('#', 'R').equalsIgnoreCase(usedVariable)) {
+						resolvedSources.add(Integer.valueOf(-(previousIndex + 1)));
+						break;
+					}
+				}
+			}
+		}
+		
+		return resolvedSources.stream().mapToInt(Integer::intValue).toArray();
+	}
+	
+	private static final int indexOfIgnoreCase(List<String> values, String value) {
+		for (int index = 0; index < values.size(); index++) {
+			if (values.get(index).equalsIgnoreCase(value)) {
+				return index;
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * {@link Evaluation} holds the parsed expressions of a
+	 * {@link PaperTemplate} and evaluates them with given values. It is not
+	 * thread-safe.
+	 */
+	public class Evaluation {
+		private EvaluatorAwareExpression[] mathExpressions = null;
+		
+		/**
+		 * Creates a new instance of {@link Evaluation}.
+		 */
+		protected Evaluation() {
+			super();
+			
+			mathExpressions = new EvaluatorAwareExpression[compiledExpressions.size()];
+			
+			List<EvaluatedExpression> templateExpressions = new ArrayList<>(compiledExpressions.size());
+			
+			for (int index = 0; index < compiledExpressions.size(); index++) {
+				CompiledExpression compiledExpression = compiledExpressions.get(index);
+				
+				if (!compiledExpression.isFunction()) {
+					EvaluatorAwareExpression mathExpression = new EvaluatorAwareExpression(
+							evaluator,
+							compiledExpression.getMathExpression().replace('#', 'R'),
+							evaluator.getCalculationMathContext());
+					
+					for (EvaluatedExpression contextExpression : evaluator.contextExpressions) {
+						evaluator.applyEvaluatedExpression(mathExpression, contextExpression);
+					}
+					
+					for (EvaluatedExpression templateExpression : templateExpressions) {
+						evaluator.applyEvaluatedExpression(mathExpression, templateExpression);
+					}
+					
+					mathExpressions[index] = mathExpression;
+				} else {
+					templateExpressions.add(new FunctionEvaluatedExpression(
+							compiledExpression.getId(),
+							compiledExpression.getExpression(),
+							compiledExpression.getParameters(),
+							compiledExpression.getMathExpression(),
+							new Expression(compiledExpression.getMathExpression()).isBoolean()));
+				}
+			}
+		}
+		
+		/**
+		 * Evaluates the template with the given values.
+		 * 
+		 * @param values The values of the variables, in the same order as
+		 *        {@link PaperTemplate#getVariables()}.
+		 * @return The results, in the same order as
+		 *         {@link PaperTemplate#getIds()}, {@code null} for functions.
+		 * @throws InvalidExpressionException If an expression could not be
+		 *         evaluated.
+		 */
+		public BigDecimal[] evaluate(BigDecimal[] values) throws InvalidExpressionException {
+			if (values == null || values.length != variables.size()) {
+				throw new IllegalArgumentException("Expected " + variables.size() + " values.");
+			}
+			
+			BigDecimal[] results = new BigDecimal[mathExpressions.length];
+			
+			try (EvaluationGuard guard = EvaluationGuard.begin(evaluator)) {
+				for (int index = 0; index < mathExpressions.length; index++) {
+					EvaluatorAwareExpression mathExpression = mathExpressions[index];
+					
+					if (mathExpression != null) {
+						UnaryOperator<BigDecimal> conversion = conversions.get(index);
+						int[] expressionSources = sources.get(index);
+						
+						try {
+							guard.check();
+							guard.checkMathContext(evaluator.getCalculationMathContext());
+							
+							for (int sourceIndex = 0; sourceIndex < expressionSources.length; sourceIndex++) {
+								int source = expressionSources[sourceIndex];
+								
+								if (source >= 0) {
+									guard.checkValue(values[source]);
+									mathExpression.with(variables.get(source), values[source]);
+								} else {
+									mathExpression.with(ids.get(-source - 1).replace('#', 'R'), results[-source - 1]);
+								}
+							}
+							
+							BigDecimal result = mathExpression.eval();
+							
+							if (conversion != null) {
+								result = conversion.apply(result);
+							}
+							
+							results[index] = result.round(evaluator.getResultMathContext());
+							guard.checkValue(results[index]);
+						} catch (Throwable th) {
+							throw new InvalidExpressionException(ids.get(index) + ": " + th.getMessage(), th);
+						}
+					}
+				}
+			}
+			
+			return results;
+		}
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.core;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import org.bonsaimind.jmathpaper.core.evaluatedexpressions.FunctionEvaluatedExpression;
+import org.bonsaimind.jmathpaper.core.units.CompoundUnit;
+
+import com.udojava.evalex.Expression;
+
+/**
+ * {@link PreparedExpression} is an expression which has been compiled by an
+ * {@link Engine} once and can be evaluated any number of times with different
+ * {@link Bindings}.
+ * <p>
+ * A {@link PreparedExpression} is immutable and thread-safe. Every thread
+ * which evaluates it keeps its own parsed form of the expression, so that
+ * evaluating it only binds the values and calculates the result. Unit
+ * conversions are prepared when compiling the expression.
+ * <p>
+ * Variables which are not bound fall back to the value they have in the
+ * {@link EvaluatorSnapshot} of the {@link Engine}, if any. Every evaluation
+ * is subject to the {@link EvaluationLimits} of that snapshot. Adaptive
+ * precision is not used, the calculation precision is used for every
+ * evaluation.
+ */
+public class PreparedExpression {
+	/** The {@link CompiledExpression}. */
+	protected CompiledExpression compiledExpression = null;
+	/** The prepared unit conversion, {@code null} if there is none. */
+	protected UnaryOperator<BigDecimal> conversion = null;
+	/**
+	 * The values of the {@link #variables} from the snapshot, {@code null} for
+	 * those without one.
+	 */
+	protected BigDecimal[] defaultValues = null;
+	/** The frozen {@link Evaluator} of the snapshot. */
+	protected Evaluator evaluator = null;
+	/** The parsed expression of every thread. */
+	protected ThreadLocal<Expression> mathExpressions = null;
+	/** The names of the variables used by the expression. */
+	protected List<String> variables = null;
+	
+	/**
+	 * Creates a new instance of {@link PreparedExpression}.
+	 *
+	 * @param evaluator The frozen {@link Evaluator} of an
+	 *        {@link EvaluatorSnapshot}, which must not be modified anymore.
+	 * @param compiledExpression The {@link CompiledExpression}, must not be a
+	 *        function.
+	 */
+	PreparedExpression(Evaluator evaluator, CompiledExpression compiledExpression) {
+		super();
+		
+		this.evaluator = evaluator;
+		this.compiledExpression = compiledExpression;
+		
+		String mathExpression = compiledExpression.getMathExpression();
+		
+		List<String> usedVariables = new ArrayList<>();
+		
+		for (String usedVariable : new Expression(mathExpression.replace('#', 'R')).getUsedVariables()) {
+			if (!containsIgnoreCase(usedVariables, usedVariable)) {
+				usedVariables.add(usedVariable);
+			}
+		}
+		
+		variables = Collections.unmodifiableList(usedVariables);
+		defaultValues = new BigDecimal[variables.size()];
+		
+		for (int index = 0; index < defaultValues.length; index++) {
+			defaultValues[index] = findValue(variables.get(index));
+		}
+		
+		if (compiledExpression.getUnitSource() != null && compiledExpression.getUnitTarget() != null) {
+			conversion = evaluator.getUnitConverter().prepareConversion(
+					compiledExpression.getUnitSource(),
+					compiledExpression.getUnitTarget(),
+					evaluator.getCalculationMathContext());
+		}
+		
+		mathExpressions = ThreadLocal.withInitial(() -> evaluator.prepareExpression(mathExpression));
+	}
+	
+	/**
+	 * Evaluates this expression with the given {@link Bindings}.
+	 * 
+	 * @param bindings The {@link Bindings}, can be {@code null} if all
+	 *        variables have a value in the snapshot.
+	 * @return The result, rounded to the result precision of the snapshot.
+	 * @throws InvalidExpressionException If a variable has no value or the
+	 *         expression could not be evaluated.
+	 */
+	public BigDecimal evaluate(Bindings bindings) throws InvalidExpressionException {
+		BigDecimal[] values = new BigDecimal[defaultValues.length];
+		
+		for (int index = 0; index < values.length; index++) {
+			if (bindings != null) {
+				values[index] = bindings.get(variables.get(index));
+			}
+			
+			if (values[index] == null) {
+				values[index] = defaultValues[index];
+				
+				if (values[index] == null) {
+					throw new InvalidExpressionException("No value has been bound to: " + variables.get(index));
+				}
+			}
+		}
+		
+		Expression mathExpression = mathExpressions.get();
+		
+		try (EvaluationGuard guard = EvaluationGuard.begin(evaluator)) {
+			guard.checkMathContext(evaluator.getCalculationMathContext());
+			
+			for (int index = 0; index < values.length; index++) {
+				guard.checkValue(values[index]);
+				mathExpression.with(variables.get(index), values[index]);
+			}
+			
+			BigDecimal result = mathExpression.eval();
+			
+			if (conversion != null) {
+				result = conversion.apply(result);
+			}
+			
+			result = result.round(evaluator.getResultMathContext());
+			guard.checkValue(result);
+			
+			return result;
+		} catch (Throwable th) {
+			throw new InvalidExpressionException(th.getMessage(), th);
+		}
+	}
+	
+	/**
+	 * Gets the {@link CompiledExpression} from which this has been prepared.
+	 * 
+	 * @return The {@link CompiledExpression}.
+	 */
+	public CompiledExpression getCompiledExpression() {
+		return compiledExpression;
+	}
+	
+	/**
+	 * Gets the {@link CompoundUnit} of the results.
+	 * 
+	 * @return The {@link CompoundUnit} of the results, {@link CompoundUnit#ONE}
+	 *         if there is no unit.
+	 */
+	public CompoundUnit getUnit() {
+		if (compiledExpression.getUnitTarget() != null) {
+			return compiledExpression.getUnitTarget();
+		}
+		
+		return CompoundUnit.ONE;
+	}
+	
+	/**
+	 * Gets the names of the variables used by this expression, which can be
+	 * bound when evaluating it.
+	 * 
+	 * @return The names of the variables.
+	 */
+	public List<String> getVariables() {
+		return variables;
+	}
+	
+	/**
+	 * Finds the value the given variable has in the snapshot, the last
+	 * evaluated expression takes precedence over the context expressions.
+	 * 
+	 * @param variable The name of the variable.
+	 * @return The value, {@code null} if there is none.
+	 */
+	protected BigDecimal findValue(String variable) {
+		BigDecimal value = findValue(evaluator.evaluatedExpressions, variable);
+		
+		if (value == null) {
+			value = findValue(evaluator.contextExpressions, variable);
+		}
+		
+		return value;
+	}
+	
+	private static final boolean containsIgnoreCase(List<String> values, String value) {
+		for (String currentValue : values) {
+			if (currentValue.equalsIgnoreCase(value)) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	private static final BigDecimal findValue(List<EvaluatedExpression> evaluatedExpressions, String variable) {
+		for (int index = evaluatedExpressions.size() - 1; index >= 0; index--) {
+			EvaluatedExpression evaluatedExpression = evaluatedExpressions.get(index);
+			
+			if (!(evaluatedExpression instanceof FunctionEvaluatedExpression)
+					&& evaluatedExpression.getId().replace('#', 'R').equalsIgnoreCase(variable)) {
+				return evaluatedExpression.getResult();
+			}
+		}
+		
+		return null;
+	}
+}
@@ -35,6 +35,8 @@ import org.bonsaimind.jmathpaper.core.resources.ResourceLoader;
  */
 public final class Configuration {
 	private static Path cachedConfigDirectory = null;
+	private static final String DAEMON_TOKEN_NAME_PREFIX = "daemon-";
+	private static final String DAEMON_TOKEN_NAME_SUFFIX = ".token";
 	private static final String DIRECTORY_NAME = "jmathpaper";
 	private static final String GLOBAL_PAPER_NAME = "global.jmathpaper";
 	private static final String USER_ALIASES_NAME = "user.aliases";
@@ -78,6 +80,17 @@ public final class Configuration {
 		return cachedConfigDirectory;
 	}
 	
+	/**
+	 * Gets the {@link Path} of the file which holds the token of the daemon
+	 * which is listening on the given port.
+	 * 
+	 * @param port The port of the daemon.
+	 * @return The {@link Path} of the token file.
+	 */
+	public static final Path getDaemonTokenFile(int port) {
+		return getConfigDirectory().resolve(DAEMON_TOKEN_NAME_PREFIX + port + DAEMON_TOKEN_NAME_SUFFIX);
+	}
+	
 	/**
 	 * Gets the {@link Path} for the global paper.
 	 * 
@@ -131,9 +144,7 @@ public final class Configuration {
 	 *        defaults.
 	 */
 	public static final void init(Path providedConfigurationDirectory) {
-		if (providedConfigurationDirectory != null) {
-			cachedConfigDirectory = providedConfigurationDirectory.normalize().toAbsolutePath();
-		}
+		setConfigDirectory(providedConfigurationDirectory);
 		
 		migrateGlobalPaper();
 		migrateFromConfigToData();
@@ -141,6 +152,20 @@ public final class Configuration {
 		copyDefaultConfigFilesIfNeeded();
 	}
 	
+	/**
+	 * Sets the {@link Path configuration directory} without initializing it,
+	 * for example for clients which only read from it.
+	 * 
+	 * @param providedConfigurationDirectory The {@link Path} which should be
+	 *        used for storing the configuration files. {@code null} to use the
+	 *        defaults.
+	 */
+	public static final void setConfigDirectory(Path providedConfigurationDirectory) {
+		if (providedConfigurationDirectory != null) {
+			cachedConfigDirectory = providedConfigurationDirectory.normalize().toAbsolutePath();
+		}
+	}
+	
 	/**
 	 * Copies the given default configuration file, if it does not already
 	 * exist.
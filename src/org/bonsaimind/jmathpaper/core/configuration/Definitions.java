@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import org.bonsaimind.jmathpaper.core.Engine;
 import org.bonsaimind.jmathpaper.core.Evaluator;
 import org.bonsaimind.jmathpaper.core.InvalidExpressionException;
 import org.bonsaimind.jmathpaper.core.Paper;
@@ -20,6 +21,7 @@ public class Definitions {
 	protected Path paperTemplate = null;
 	protected List<String> prefixDefinitions = new ArrayList<>();
 	protected List<String> unitDefinitions = new ArrayList<>();
+	private UnitConverter preparedUnitConverter = null;
 	private List<String> readonlyAliasDefinitions = null;
 	private List<String> readonlyContextExpressions = null;
 	private List<String> readonlyConversionDefinitions = null;
@@ -40,14 +42,20 @@ public class Definitions {
 	
 	public void addConversionDefinition(String conversionDefinition) {
 		conversionDefinitions.add(conversionDefinition);
+		
+		clearPreparedUnitConverter();
 	}
 	
 	public void addPrefixDefinition(String prefixDefinition) {
 		prefixDefinitions.add(prefixDefinition);
+		
+		clearPreparedUnitConverter();
 	}
 	
 	public void addUnitDefinition(String unitDefinition) {
 		unitDefinitions.add(unitDefinition);
+		
+		clearPreparedUnitConverter();
 	}
 	
 	public void apply(Paper paper) {
@@ -63,19 +71,25 @@ public class Definitions {
 			}
 		}
 		
-		Evaluator evaluator = paper.getEvaluator();
-		
-		aliasDefinitions.forEach(evaluator::loadAlias);
-		
-		UnitConverter unitConverter = evaluator.getUnitConverter();
+		// Parsing the definitions is expensive, so they are only parsed once
+		// and every paper gets its own copy of the result.
+		apply(paper.getEvaluator(), new UnitConverter(getPreparedUnitConverter()));
+	}
+	
+	/**
+	 * Creates a new {@link Engine} with these definitions.
+	 * <p>
+	 * The parsed units are shared with all other {@link Engine}s created by
+	 * this instance, until units, prefixes or conversions are added.
+	 * 
+	 * @return A new {@link Engine}.
+	 */
+	public Engine createEngine() {
+		Evaluator evaluator = new Evaluator();
 		
-		prefixDefinitions.forEach(unitConverter::loadPrefix);
-		unitDefinitions.forEach(unitConverter::loadUnit);
-		conversionDefinitions.forEach(unitConverter::loadConversion);
+		apply(evaluator, getPreparedUnitConverter());
 		
-		// Load the context expressions last to make sure that everything is
-		// available for them.
-		contextExpressions.forEach(evaluator::loadContextExpression);
+		return new Engine(evaluator.getSnapshot());
 	}
 	
 	public List<String> getAliasDefinitions() {
@@ -125,4 +139,32 @@ public class Definitions {
 	public void setPaperTemplate(Path paperTemplate) {
 		this.paperTemplate = paperTemplate;
 	}
+	
+	protected synchronized void clearPreparedUnitConverter() {
+		preparedUnitConverter = null;
+	}
+	
+	protected synchronized UnitConverter getPreparedUnitConverter() {
+		if (preparedUnitConverter == null) {
+			UnitConverter unitConverter = new UnitConverter();
+			
+			prefixDefinitions.forEach(unitConverter::loadPrefix);
+			unitDefinitions.forEach(unitConverter::loadUnit);
+			conversionDefinitions.forEach(unitConverter::loadConversion);
+			
+			preparedUnitConverter = unitConverter;
+		}
+		
+		return preparedUnitConverter;
+	}
+	
+	private void apply(Evaluator evaluator, UnitConverter unitConverter) {
+		aliasDefinitions.forEach(evaluator::loadAlias);
+		
+		evaluator.setUnitConverter(unitConverter);
+		
+		// Load the context expressions last to make sure that everything is
+		// available for them.
+		contextExpressions.forEach(evaluator::loadContextExpression);
+	}
 }
@@ -23,6 +23,7 @@ import java.math.BigDecimal;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 
+import org.bonsaimind.jmathpaper.core.BigDecimalFormat;
 import org.bonsaimind.jmathpaper.core.EvaluatedExpression;
 
 /**
@@ -39,6 +40,9 @@ public abstract class AbstractEvaluatedExpression implements EvaluatedExpression
 	/** The result. */
 	protected BigDecimal result = null;
 	
+	/** The cached formatted result. */
+	private volatile FormattedResult formattedResult = null;
+	
 	/**
 	 * Creates a new instance of {@link AbstractEvaluatedExpression}.
 	 *
@@ -121,14 +125,22 @@ public abstract class AbstractEvaluatedExpression implements EvaluatedExpression
 	public String format(int idColumnWidth, int expressionColumnWidth, int resultColumnWidth, NumberFormat numberFormat) {
 		StringBuilder builder = new StringBuilder();
 		
+		format(builder, idColumnWidth, expressionColumnWidth, resultColumnWidth, numberFormat);
+		
+		return builder.toString();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void format(StringBuilder builder, int idColumnWidth, int expressionColumnWidth, int resultColumnWidth, NumberFormat numberFormat) {
 		appendPadded(builder, id, 0, idColumnWidth);
 		builder.append(" ");
 		appendPadded(builder, expression, expressionColumnWidth, 0);
 		builder.append(" = ");
 		
 		appendPadded(builder, getFormattedResult(numberFormat), resultColumnWidth, 0);
-		
-		return builder.toString();
 	}
 	
 	/**
@@ -144,7 +156,25 @@ public abstract class AbstractEvaluatedExpression implements EvaluatedExpression
 	 */
 	@Override
 	public String getFormattedResult(NumberFormat numberFormat) {
-		return numberFormat.format(result);
+		FormattedResult currentFormattedResult = formattedResult;
+		
+		// The formatted result is cached per NumberFormat instance, that
+		// means that the NumberFormat must not be modified after the first
+		// use.
+		if (currentFormattedResult == null || currentFormattedResult.numberFormat != numberFormat) {
+			String value = null;
+			
+			if (numberFormat instanceof BigDecimalFormat) {
+				value = ((BigDecimalFormat)numberFormat).format(result);
+			} else {
+				value = numberFormat.format(result);
+			}
+			
+			currentFormattedResult = new FormattedResult(numberFormat, value);
+			formattedResult = currentFormattedResult;
+		}
+		
+		return currentFormattedResult.value;
 	}
 	
 	/**
@@ -186,4 +216,30 @@ public abstract class AbstractEvaluatedExpression implements EvaluatedExpression
 	public String toString() {
 		return format(0, 0, 0, DecimalFormat.getNumberInstance());
 	}
+	
+	/**
+	 * {@link FormattedResult} is the cache entry for a formatted result,
+	 * holding the value and the {@link NumberFormat} which was used to create
+	 * it.
+	 */
+	private static final class FormattedResult {
+		/** The {@link NumberFormat} which was used. */
+		private final NumberFormat numberFormat;
+		
+		/** The formatted value. */
+		private final String value;
+		
+		/**
+		 * Creates a new instance of {@link FormattedResult}.
+		 *
+		 * @param numberFormat The {@link NumberFormat} which was used.
+		 * @param value The formatted value.
+		 */
+		public FormattedResult(NumberFormat numberFormat, String value) {
+			super();
+			
+			this.numberFormat = numberFormat;
+			this.value = value;
+		}
+	}
 }
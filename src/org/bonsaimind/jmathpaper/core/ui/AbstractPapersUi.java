@@ -31,8 +31,13 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.bonsaimind.jmathpaper.core.EvaluatedExpression;
+import org.bonsaimind.jmathpaper.core.EvaluationLimits;
 import org.bonsaimind.jmathpaper.core.InvalidExpressionException;
 import org.bonsaimind.jmathpaper.core.Paper;
 import org.bonsaimind.jmathpaper.core.configuration.Definitions;
@@ -44,6 +49,19 @@ import org.bonsaimind.jmathpaper.core.support.Topic;
  * functionality based on that.
  */
 public abstract class AbstractPapersUi implements Ui {
+	/** The seconds after which an idle evaluator thread is stopped. */
+	protected static final long PENDING_PAPERS_EVALUATOR_KEEP_ALIVE = 5;
+	/**
+	 * The {@link ExecutorService} on which opened {@link Paper}s are evaluated
+	 * in the background. It is shared by all instances, as sessions of the
+	 * services are instances of their own. Every {@link Paper} has its own
+	 * evaluator, so as many of them as there are processors are evaluated
+	 * concurrently, and idle threads are stopped.
+	 */
+	protected static final ExecutorService PENDING_PAPERS_EVALUATOR = createPendingPapersEvaluator();
+	/** The maximum count of IDs listed in a search results summary. */
+	protected static final int SEARCH_RESULTS_SUMMARY_LIMIT = 10;
+	
 	/** The {@link Definitions} to use by default. */
 	protected Definitions defaultDefinitions = null;
 	
@@ -58,6 +76,15 @@ public abstract class AbstractPapersUi implements Ui {
 	/** The {@link UiParameters} with which this has been run. */
 	protected UiParameters uiParameters = null;
 	
+	/** The count of currently open batches, see {@link #beginBatch()}. */
+	private int batchDepth = 0;
+	
+	/** The index of the first changed expression in the current batch. */
+	private int batchFirstChangedIndex = Integer.MAX_VALUE;
+	
+	/** If the current {@link Paper} has been modified in the current batch. */
+	private boolean batchModified = false;
+	
 	/** The counter for papers which are not saved. */
 	private int paperCounter = 0;
 	
@@ -83,7 +110,7 @@ public abstract class AbstractPapersUi implements Ui {
 		
 		paper.clear();
 		
-		currentPaperHasBeenModified();
+		paperHasBeenModified(0);
 	}
 	
 	/**
@@ -96,6 +123,7 @@ public abstract class AbstractPapersUi implements Ui {
 			
 			papers.remove(paper);
 			
+			flushBatch();
 			currentPaperHasBeenRemoved();
 			
 			if (!papers.isEmpty()) {
@@ -133,7 +161,7 @@ public abstract class AbstractPapersUi implements Ui {
 		
 		paper.evaluate(expression);
 		
-		currentPaperHasBeenModified();
+		paperHasBeenModified(paper.getEvaluatedExpressions().size() - 1);
 	}
 	
 	/**
@@ -296,6 +324,14 @@ public abstract class AbstractPapersUi implements Ui {
 					quit();
 					break;
 				
+				case SEARCH:
+					if (parameters != null && parameters.length > 0) {
+						search(String.join(" ", parameters));
+					} else {
+						throw new CommandExecutionException("No search term provided: search TERM");
+					}
+					break;
+				
 			}
 		} catch (CommandExecutionException e) {
 			throw e;
@@ -331,7 +367,10 @@ public abstract class AbstractPapersUi implements Ui {
 	public void init(UiParameters uiParameters) throws Exception {
 		this.uiParameters = uiParameters;
 		
-		help = Topic.buildFrom("help");
+		// Extending classes might share the help with other instances.
+		if (help == null) {
+			help = Topic.buildFrom("help");
+		}
 	}
 	
 	/**
@@ -383,13 +422,17 @@ public abstract class AbstractPapersUi implements Ui {
 		
 		Paper loadedPaper = createNewPaper();
 		loadedPaper.setFile(file);
-		loadedPaper.loadFrom(file);
+		loadedPaper.loadLazilyFrom(file);
+		
+		// The paper is only evaluated when it is needed, until then it is
+		// evaluated in the background.
+		PENDING_PAPERS_EVALUATOR.execute(loadedPaper::awaitEvaluation);
 		
 		// Paper could be successfully loaded.
 		if (papers.size() == 1
 				&& paper != null
-				&& paper.getEvaluatedExpressions().isEmpty()
-				&& paper.getFile() == null) {
+				&& paper.getFile() == null
+				&& paper.getEvaluatedExpressions().isEmpty()) {
 			// Seems like a new and empty paper, let's close it.
 			close();
 		}
@@ -423,10 +466,16 @@ public abstract class AbstractPapersUi implements Ui {
 	 */
 	@Override
 	public void process(String input) throws CommandExecutionException, InvalidExpressionException {
-		for (String part : splitStatements(input)) {
-			if (!tryAsCommand(part)) {
-				evaluate(part);
+		beginBatch();
+		
+		try {
+			for (String part : splitStatements(input)) {
+				if (!tryAsCommand(part)) {
+					evaluate(part);
+				}
 			}
+		} finally {
+			endBatch();
 		}
 	}
 	
@@ -439,6 +488,7 @@ public abstract class AbstractPapersUi implements Ui {
 		
 		paper.load();
 		
+		flushBatch();
 		currentPaperHasBeenReset();
 	}
 	
@@ -451,6 +501,7 @@ public abstract class AbstractPapersUi implements Ui {
 		
 		paper.save();
 		
+		flushBatch();
 		currentPaperHasBeenReset();
 	}
 	
@@ -481,9 +532,14 @@ public abstract class AbstractPapersUi implements Ui {
 		
 		try {
 			switch (option) {
+				case ADAPTIVE_PRECISION:
+					getPaper().setAdaptivePrecision(getBoolean(value));
+					reevaluate();
+					break;
+				
 				case NUMBER_FORMAT:
 					getPaper().setNumberFormat(value);
-					reevaluate();
+					reformat();
 					break;
 				
 				case PRECISION:
@@ -555,7 +611,7 @@ public abstract class AbstractPapersUi implements Ui {
 	protected void addConversion(String conversion) {
 		checkCurrentPaper();
 		
-		paper.getEvaluator().getUnitConverter().loadConversion(conversion);
+		paper.getEvaluator().loadConversion(conversion);
 	}
 	
 	/**
@@ -566,7 +622,7 @@ public abstract class AbstractPapersUi implements Ui {
 	protected void addPrefix(String prefix) {
 		checkCurrentPaper();
 		
-		paper.getEvaluator().getUnitConverter().loadPrefix(prefix);
+		paper.getEvaluator().loadPrefix(prefix);
 	}
 	
 	/**
@@ -577,18 +633,36 @@ public abstract class AbstractPapersUi implements Ui {
 	protected void addUnit(String unit) {
 		checkCurrentPaper();
 		
-		paper.getEvaluator().getUnitConverter().loadUnit(unit);
+		paper.getEvaluator().loadUnit(unit);
 	}
 	
 	/**
-	 * Checks that there is a {@link #paper}.
+	 * Begins a batch, until the matching {@link #endBatch()} all modifications
+	 * of the current {@link Paper} are collected and reported as one
+	 * {@link #currentPaperHasBeenModified(int)}. Batches can be nested, only
+	 * the outermost one reports the modifications.
+	 */
+	protected void beginBatch() {
+		batchDepth++;
+	}
+	
+	/**
+	 * Checks that there is a {@link #paper}, and that it has been evaluated
+	 * completely if it has been loaded lazily.
 	 *
-	 * @throws IllegalStateException If there is no current {@link #paper}.
+	 * @throws IllegalStateException If there is no current {@link #paper}, or
+	 *         its lazy evaluation failed.
 	 */
 	protected void checkCurrentPaper() throws IllegalStateException {
 		if (paper == null) {
 			throw new IllegalStateException("This operation can only be performed with a paper open.");
 		}
+		
+		try {
+			paper.checkEvaluation();
+		} catch (InvalidExpressionException e) {
+			throw new IllegalStateException("The paper could only be evaluated partially, it has to be reloaded or cleared before it can be changed or saved: " + e.getMessage(), e);
+		}
 	}
 	
 	/**
@@ -670,6 +744,29 @@ public abstract class AbstractPapersUi implements Ui {
 				null);
 	}
 	
+	/**
+	 * Creates the {@link EvaluationLimits} for a new {@link Paper}, from the
+	 * UI parameters and the {@link #getDefaultEvaluationLimits() defaults}.
+	 * 
+	 * @return The {@link EvaluationLimits} for a new {@link Paper}.
+	 */
+	protected EvaluationLimits createEvaluationLimits() {
+		EvaluationLimits defaultEvaluationLimits = getDefaultEvaluationLimits();
+		
+		if (uiParameters == null) {
+			return defaultEvaluationLimits;
+		}
+		
+		EvaluationLimits evaluationLimits = new EvaluationLimits();
+		evaluationLimits.setMaxDigits(uiParameters.getInt("maxDigits", defaultEvaluationLimits.getMaxDigits()));
+		evaluationLimits.setMaxDuration(uiParameters.getInt("maxDuration", (int)defaultEvaluationLimits.getMaxDuration()));
+		evaluationLimits.setMaxExponent(uiParameters.getInt("maxExponent", defaultEvaluationLimits.getMaxExponent()));
+		evaluationLimits.setMaxLines(uiParameters.getInt("maxLines", defaultEvaluationLimits.getMaxLines()));
+		evaluationLimits.setMaxRecursionDepth(uiParameters.getInt("maxRecursionDepth", defaultEvaluationLimits.getMaxRecursionDepth()));
+		
+		return evaluationLimits;
+	}
+	
 	/**
 	 * Creates a new {@link Paper} instance.
 	 * 
@@ -682,6 +779,8 @@ public abstract class AbstractPapersUi implements Ui {
 			defaultDefinitions.apply(paper);
 		}
 		
+		paper.setEvaluationLimits(createEvaluationLimits());
+		
 		return paper;
 	}
 	
@@ -707,6 +806,27 @@ public abstract class AbstractPapersUi implements Ui {
 		// For extending classes.
 	}
 	
+	/**
+	 * Invoked whenever the current {@link Paper} has been modified, meaning
+	 * that one or more additional expressions has been added. Modifications
+	 * which happen during a {@link #beginBatch() batch} are reported only once,
+	 * at its end.
+	 * <p>
+	 * The default implementation invokes
+	 * {@link #currentPaperHasBeenModified()}.
+	 * <p>
+	 * Overriding classes can safely assume that there is a current
+	 * {@link Paper}.
+	 * 
+	 * @param firstChangedIndex The index of the first expression which has
+	 *        been added or changed, all expressions from there on have to be
+	 *        considered new. Equal to the count of expressions if only the
+	 *        notes have changed.
+	 */
+	protected void currentPaperHasBeenModified(int firstChangedIndex) {
+		currentPaperHasBeenModified();
+	}
+	
 	/**
 	 * Invoked whenever the current {@link Paper} has been removed.
 	 * <p>
@@ -792,7 +912,60 @@ public abstract class AbstractPapersUi implements Ui {
 				break;
 		}
 		
-		currentPaperHasBeenModified();
+		paperHasBeenModified(paper.getEvaluatedExpressions().size());
+	}
+	
+	/**
+	 * Ends a batch which has been started with {@link #beginBatch()}, if it is
+	 * the outermost one all collected modifications are reported.
+	 */
+	protected void endBatch() {
+		batchDepth--;
+		
+		if (batchDepth == 0) {
+			flushBatch();
+		}
+	}
+	
+	/**
+	 * A helper method which gets the boolean value from the given
+	 * {@link String}.
+	 * 
+	 * @param value The value to convert.
+	 * @return The boolean value.
+	 * @throws IllegalArgumentException If {@code value} is not a known boolean
+	 *         value.
+	 */
+	protected boolean getBoolean(String value) {
+		if (value != null) {
+			switch (value.trim().toLowerCase()) {
+				case "true":
+				case "t":
+				case "yes":
+				case "y":
+				case "on":
+					return true;
+				
+				case "false":
+				case "f":
+				case "no":
+				case "n":
+				case "off":
+					return false;
+			}
+		}
+		
+		throw new IllegalArgumentException("\"" + value + "\" is not a boolean value.");
+	}
+	
+	/**
+	 * Gets the {@link EvaluationLimits} which are used if they are not given
+	 * as UI parameters, without any limits by default.
+	 * 
+	 * @return The default {@link EvaluationLimits}.
+	 */
+	protected EvaluationLimits getDefaultEvaluationLimits() {
+		return new EvaluationLimits();
 	}
 	
 	/**
@@ -925,11 +1098,32 @@ public abstract class AbstractPapersUi implements Ui {
 		return evaluatedExpressions;
 	}
 	
+	/**
+	 * Gets the text of the given help {@link Topic}, which is followed by the
+	 * list of all available topics if it is the root topic.
+	 * 
+	 * @param topic The help {@link Topic}.
+	 * @return The text of the given help {@link Topic}, without a trailing
+	 *         line break.
+	 */
+	protected String getHelpText(Topic topic) {
+		StringBuilder helpText = new StringBuilder(topic.getContent());
+		
+		if (topic == help) {
+			helpText.append("\n");
+			helpText.append("\n");
+			helpText.append("All available help topics:");
+			appendHelpTopics(helpText, topic, "  ");
+		}
+		
+		return helpText.toString();
+	}
+	
 	/**
 	 * Gets the long title for the given {@link Paper}.
 	 * <p>
 	 * The long title contains the full path (if any) and a short notice if the
-	 * {@link Paper} has unsaved modifications.
+	 * {@link Paper} has unsaved modifications or has not been evaluated yet.
 	 * 
 	 * @param paper The {@link Paper} to get the long title for, can be
 	 *        {@code null} in which case an empty {@link String} is returned.
@@ -943,7 +1137,9 @@ public abstract class AbstractPapersUi implements Ui {
 		if (paper.getFile() != null) {
 			String title = paper.getFile().toAbsolutePath().toString();
 			
-			if (paper.isChanged()) {
+			if (paper.isPending()) {
+				title = "(pending) " + title;
+			} else if (paper.isChanged()) {
 				title = "(not saved) " + title;
 			}
 			
@@ -989,6 +1185,42 @@ public abstract class AbstractPapersUi implements Ui {
 		}
 	}
 	
+	/**
+	 * Gets a short summary of the given search results, listing the IDs of the
+	 * found {@link EvaluatedExpression}s.
+	 * 
+	 * @param evaluatedExpressions The found {@link EvaluatedExpression}s.
+	 * @return The summary of the search results.
+	 */
+	protected String getSearchResultsSummary(List<EvaluatedExpression> evaluatedExpressions) {
+		if (evaluatedExpressions.isEmpty()) {
+			return "No matches.";
+		}
+		
+		StringBuilder summary = new StringBuilder();
+		summary.append(evaluatedExpressions.size());
+		
+		if (evaluatedExpressions.size() == 1) {
+			summary.append(" match: ");
+		} else {
+			summary.append(" matches: ");
+		}
+		
+		for (int index = 0; index < Math.min(evaluatedExpressions.size(), SEARCH_RESULTS_SUMMARY_LIMIT); index++) {
+			if (index > 0) {
+				summary.append(", ");
+			}
+			
+			summary.append(evaluatedExpressions.get(index).getId());
+		}
+		
+		if (evaluatedExpressions.size() > SEARCH_RESULTS_SUMMARY_LIMIT) {
+			summary.append(", ...");
+		}
+		
+		return summary.toString();
+	}
+	
 	/**
 	 * Reevaluates the current {@link Paper}.
 	 * <p>
@@ -1003,9 +1235,39 @@ public abstract class AbstractPapersUi implements Ui {
 		
 		paper.reevaluate();
 		
+		flushBatch();
+		currentPaperHasBeenReset();
+	}
+	
+	/**
+	 * Reformats the current {@link Paper}, meaning that only the presentation
+	 * of the results is updated without evaluating them again.
+	 * <p>
+	 * Extending classes should override this function and update accordingly
+	 * after calling super.
+	 */
+	protected void reformat() {
+		checkCurrentPaper();
+		
+		paper.reformat();
+		
+		flushBatch();
 		currentPaperHasBeenReset();
 	}
 	
+	/**
+	 * Searches the expressions of the current {@link Paper} for the given term
+	 * and {@link #showSearchResults(String, List) shows the results}.
+	 * 
+	 * @param term The term to search for.
+	 * @throws IllegalStateException If there is no current {@link Paper}.
+	 */
+	protected void search(String term) throws IllegalStateException {
+		checkCurrentPaper();
+		
+		showSearchResults(term, paper.search(term));
+	}
+	
 	/**
 	 * Sets the current {@link Paper}.
 	 *
@@ -1020,6 +1282,8 @@ public abstract class AbstractPapersUi implements Ui {
 		}
 		
 		if (paper != this.paper) {
+			flushBatch();
+			
 			this.paper = paper;
 			
 			currentSelectedPaperHasChanged();
@@ -1027,13 +1291,22 @@ public abstract class AbstractPapersUi implements Ui {
 	}
 	
 	protected void showHelp(Topic topic) {
-		System.out.println(topic.getContent());
-		
-		if (topic == help) {
-			System.out.println();
-			System.out.println("All available help topics:");
-			printHelpTopics(topic, "  ");
+		System.out.println(getHelpText(topic));
+	}
+	
+	/**
+	 * Shows the results of a search, by default they are printed to
+	 * {@link System#out}.
+	 * 
+	 * @param term The term which has been searched for.
+	 * @param evaluatedExpressions The found {@link EvaluatedExpression}s.
+	 */
+	protected void showSearchResults(String term, List<EvaluatedExpression> evaluatedExpressions) {
+		for (EvaluatedExpression evaluatedExpression : evaluatedExpressions) {
+			System.out.println(paper.format(evaluatedExpression));
 		}
+		
+		System.out.println(getSearchResultsSummary(evaluatedExpressions));
 	}
 	
 	/**
@@ -1225,11 +1498,64 @@ public abstract class AbstractPapersUi implements Ui {
 		return false;
 	}
 	
-	private void printHelpTopics(Topic topic, String indentation) {
+	private static final ExecutorService createPendingPapersEvaluator() {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(
+				Runtime.getRuntime().availableProcessors(),
+				Runtime.getRuntime().availableProcessors(),
+				PENDING_PAPERS_EVALUATOR_KEEP_ALIVE,
+				TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(),
+				AbstractPapersUi::createPendingPapersEvaluatorThread);
+		executor.allowCoreThreadTimeOut(true);
+		
+		return executor;
+	}
+	
+	private static final Thread createPendingPapersEvaluatorThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, "jMathPaper Paper Evaluator");
+		thread.setDaemon(true);
+		
+		return thread;
+	}
+	
+	private void appendHelpTopics(StringBuilder helpText, Topic topic, String indentation) {
 		for (Topic childTopic : topic.getTopics()) {
-			System.out.println(indentation + childTopic.getName() + ": " + childTopic.getTitle());
+			helpText.append("\n");
+			helpText.append(indentation + childTopic.getName() + ": " + childTopic.getTitle());
+			
+			appendHelpTopics(helpText, childTopic, indentation + "  ");
+		}
+	}
+	
+	/**
+	 * Reports the modifications which have been collected in the current
+	 * batch, if any.
+	 */
+	private void flushBatch() {
+		if (batchModified) {
+			int firstChangedIndex = batchFirstChangedIndex;
 			
-			printHelpTopics(childTopic, indentation + "  ");
+			batchModified = false;
+			batchFirstChangedIndex = Integer.MAX_VALUE;
+			
+			if (paper != null) {
+				currentPaperHasBeenModified(firstChangedIndex);
+			}
+		}
+	}
+	
+	/**
+	 * Reports that the current {@link Paper} has been modified, or collects
+	 * the modification if a batch is open.
+	 * 
+	 * @param firstChangedIndex The index of the first changed expression.
+	 */
+	private void paperHasBeenModified(int firstChangedIndex) {
+		if (batchDepth > 0) {
+			batchModified = true;
+			batchFirstChangedIndex = Math.min(batchFirstChangedIndex, firstChangedIndex);
+		} else {
+			currentPaperHasBeenModified(firstChangedIndex);
 		}
 	}
 }
@@ -74,7 +74,10 @@ public enum Command {
 	 * Save the current paper, if a name is given, at that location and then
 	 * exit.
 	 */
-	SAVE_AND_QUIT(":x");
+	SAVE_AND_QUIT(":x"),
+	
+	/** Searches the expressions of the current paper. */
+	SEARCH("search", "find");
 	
 	private String[] aliases = null;
 	
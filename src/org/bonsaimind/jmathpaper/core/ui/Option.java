@@ -25,6 +25,14 @@ import java.math.RoundingMode;
  * An {@link Option} allows to change the way the {@link Ui} behaves.
  */
 public enum Option {
+	/**
+	 * Sets whether adaptive precision should be used.
+	 * <p>
+	 * The value must be a boolean, {@code true}, {@code yes} or {@code on} to
+	 * enable it.
+	 */
+	ADAPTIVE_PRECISION("adaptive-precision", "adaptive"),
+	
 	NUMBER_FORMAT("numberformat", "number-format", "format", "fmt"),
 	
 	/**
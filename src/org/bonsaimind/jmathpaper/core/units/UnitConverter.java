@@ -31,6 +31,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.function.UnaryOperator;
 
 import org.bonsaimind.jmathpaper.core.units.CompoundUnit.Token;
 import org.bonsaimind.jmathpaper.core.units.CompoundUnit.TokenType;
@@ -55,13 +56,30 @@ public class UnitConverter {
 		registerUnit(Unit.ONE);
 	}
 	
-	public BigDecimal convert(CompoundUnit from, CompoundUnit to, BigDecimal value, MathContext mathContext) {
-		MathContext calculationMathContext = createCalculationMathContext(mathContext);
+	/**
+	 * Creates a new instance of {@link UnitConverter} with all the prefixes,
+	 * units and conversions of the given {@link UnitConverter}.
+	 * <p>
+	 * The {@link Prefix}es and {@link Unit}s themselves are shared, but
+	 * registering anything with the new instance does not change the given
+	 * one, and vice versa.
+	 * 
+	 * @param unitConverter The {@link UnitConverter} to copy.
+	 */
+	public UnitConverter(UnitConverter unitConverter) {
+		super();
 		
-		return getConversionFactor(from, to, calculationMathContext)
-				.multiply(value, calculationMathContext)
-				.round(mathContext)
-				.stripTrailingZeros();
+		unitConverter.conversionFactors.forEach((unit, factors) -> conversionFactors.put(unit, new HashMap<>(factors)));
+		conversionMathContext = unitConverter.conversionMathContext;
+		unitConverter.conversions.forEach((unit, unitConversions) -> conversions.put(unit, new HashMap<>(unitConversions)));
+		prefixesByName.putAll(unitConverter.prefixesByName);
+		prefixesBySymbol.putAll(unitConverter.prefixesBySymbol);
+		unitsByName.putAll(unitConverter.unitsByName);
+		unitsBySymbol.putAll(unitConverter.unitsBySymbol);
+	}
+	
+	public BigDecimal convert(CompoundUnit from, CompoundUnit to, BigDecimal value, MathContext mathContext) {
+		return prepareConversion(from, to, mathContext).apply(value);
 	}
 	
 	public BigDecimal convert(PrefixedUnit from, PrefixedUnit to, BigDecimal value, MathContext mathContext) {
@@ -445,6 +463,30 @@ public class UnitConverter {
 		registerUnit(unit);
 	}
 	
+	/**
+	 * Prepares the conversion between the given {@link CompoundUnit}s.
+	 * <p>
+	 * The returned {@link UnaryOperator} converts values exactly like
+	 * {@link #convert(CompoundUnit, CompoundUnit, BigDecimal, MathContext)},
+	 * but the conversion factor is determined only once. It does not change
+	 * when units are registered afterwards, and it can be used from multiple
+	 * threads.
+	 * 
+	 * @param from The {@link CompoundUnit} to convert from.
+	 * @param to The {@link CompoundUnit} to convert to.
+	 * @param mathContext The {@link MathContext} of the results.
+	 * @return The {@link UnaryOperator} which converts values.
+	 */
+	public UnaryOperator<BigDecimal> prepareConversion(CompoundUnit from, CompoundUnit to, MathContext mathContext) {
+		MathContext calculationMathContext = createCalculationMathContext(mathContext);
+		BigDecimal conversionFactor = getConversionFactor(from, to, calculationMathContext);
+		
+		return (value) -> conversionFactor
+				.multiply(value, calculationMathContext)
+				.round(mathContext)
+				.stripTrailingZeros();
+	}
+	
 	public UnitConverter registerConversion(PrefixedUnit from, PrefixedUnit to, BigDecimal conversionFactor) {
 		return registerConversion(
 				from.getUnit(),
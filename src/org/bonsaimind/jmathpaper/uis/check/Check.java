@@ -0,0 +1,198 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.uis.check;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.bonsaimind.jmathpaper.core.PaperCheck;
+import org.bonsaimind.jmathpaper.core.PaperCheck.Mismatch;
+import org.bonsaimind.jmathpaper.core.ui.AbstractPapersUi;
+
+/**
+ * {@link Check} is a UI without any interaction which evaluates all given
+ * papers again and reports the lines whose stored results do not match
+ * anymore, and optionally saves them with the new results.
+ * <p>
+ * The papers are checked concurrently on all processors, all of them with the
+ * same default definitions. Directories are searched for papers recursively.
+ * The process exits with a non-zero status if any paper is outdated or could
+ * not be checked.
+ */
+public class Check extends AbstractPapersUi {
+	/** The extension of the files which are checked in directories. */
+	protected static final String PAPER_EXTENSION = ".jmathpaper";
+	/** The files to check. */
+	protected List<Path> files = new ArrayList<>();
+	
+	public Check() {
+		super();
+	}
+	
+	/**
+	 * Adds the given file to the files to check, or if it is a directory, all
+	 * papers in it.
+	 * 
+	 * @param file The file or directory to check.
+	 * @throws IOException If the directory could not be searched.
+	 */
+	@Override
+	public void open(Path file) throws IOException {
+		if (Files.isDirectory(file)) {
+			try (Stream<Path> directoryFiles = Files.walk(file)) {
+				files.addAll(directoryFiles
+						.filter(Files::isRegularFile)
+						.filter((directoryFile) -> directoryFile.getFileName().toString().endsWith(PAPER_EXTENSION))
+						.sorted()
+						.collect(Collectors.toList()));
+			}
+		} else {
+			files.add(file);
+		}
+	}
+	
+	@Override
+	public void quit() {
+		// Nothing to do here.
+	}
+	
+	@Override
+	public void run() throws Exception {
+		boolean rewrite = uiParameters.getBoolean("isRewrite");
+		long start = System.nanoTime();
+		
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Runtime.getRuntime().availableProcessors(),
+				Check::createCheckerThread);
+		
+		List<Future<PaperCheck>> futures = new ArrayList<>();
+		
+		try {
+			for (Path file : files) {
+				futures.add(executor.submit(() -> check(file, rewrite)));
+			}
+			
+			int outdated = 0;
+			int failed = 0;
+			
+			// The results are printed in the order of the files, as soon as
+			// they are available.
+			for (int index = 0; index < files.size(); index++) {
+				try {
+					PaperCheck paperCheck = futures.get(index).get();
+					
+					if (!paperCheck.isUpToDate()) {
+						outdated++;
+					}
+					
+					printPaperCheck(paperCheck, rewrite);
+				} catch (ExecutionException e) {
+					failed++;
+					
+					String reason = e.getCause().getMessage();
+					
+					if (reason == null) {
+						reason = e.getCause().toString();
+					}
+					
+					System.out.println(String.format(Locale.ROOT, "FAILED    %s: %s", files.get(index), reason));
+				}
+			}
+			
+			System.out.println();
+			System.out.println(String.format(
+					Locale.ROOT,
+					"Checked %d papers in %.1f ms, %d up to date, %d %s, %d failed.",
+					Integer.valueOf(files.size()),
+					Double.valueOf((System.nanoTime() - start) / 1000000.0d),
+					Integer.valueOf(files.size() - outdated - failed),
+					Integer.valueOf(outdated),
+					rewrite ? "rewritten" : "outdated",
+					Integer.valueOf(failed)));
+			
+			if (failed > 0 || (outdated > 0 && !rewrite)) {
+				System.exit(1);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Checks the given file and rewrites it if requested and required.
+	 * 
+	 * @param file The file to check.
+	 * @param rewrite Whether to rewrite the file if it is outdated.
+	 * @return The {@link PaperCheck} of the file.
+	 * @throws Exception If checking or rewriting the file failed.
+	 */
+	protected PaperCheck check(Path file, boolean rewrite) throws Exception {
+		PaperCheck paperCheck = new PaperCheck(file);
+		paperCheck.check(defaultDefinitions);
+		
+		if (rewrite && !paperCheck.isUpToDate()) {
+			paperCheck.rewrite();
+		}
+		
+		return paperCheck;
+	}
+	
+	private static final Thread createCheckerThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, "jMathPaper Checker");
+		thread.setDaemon(true);
+		
+		return thread;
+	}
+	
+	private static final void printPaperCheck(PaperCheck paperCheck, boolean rewrite) {
+		String status = "OK";
+		
+		if (!paperCheck.isUpToDate()) {
+			status = rewrite ? "REWRITTEN" : "OUTDATED";
+		}
+		
+		System.out.println(String.format(
+				Locale.ROOT,
+				"%-9s %s (%.1f ms)",
+				status,
+				paperCheck.getFile(),
+				Double.valueOf(paperCheck.getDuration() / 1000000.0d)));
+		
+		for (Mismatch mismatch : paperCheck.getMismatches()) {
+			System.out.println(String.format(
+					Locale.ROOT,
+					"          %d: %s = %s, stored was %s",
+					Integer.valueOf(mismatch.getLineNumber()),
+					mismatch.getExpression(),
+					mismatch.getResult(),
+					mismatch.getStoredResult() != null ? mismatch.getStoredResult() : "nothing"));
+		}
+	}
+}
@@ -20,13 +20,23 @@
 package org.bonsaimind.jmathpaper.uis.cli;
 
 import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
 
 import org.bonsaimind.jmathpaper.core.EvaluatedExpression;
 import org.bonsaimind.jmathpaper.core.ui.AbstractPapersUi;
 
 public class Cli extends AbstractPapersUi {
+	protected PrintStream output = null;
+	
 	public Cli() {
+		this(System.out);
+	}
+	
+	public Cli(PrintStream output) {
 		super();
+		
+		this.output = output;
 	}
 	
 	@Override
@@ -54,8 +64,8 @@ public class Cli extends AbstractPapersUi {
 	}
 	
 	@Override
-	protected void currentPaperHasBeenModified() {
-		super.currentPaperHasBeenModified();
+	protected void currentPaperHasBeenModified(int firstChangedIndex) {
+		super.currentPaperHasBeenModified(firstChangedIndex);
 		
 		if (paper.getFile() != null) {
 			try {
@@ -66,16 +76,25 @@ public class Cli extends AbstractPapersUi {
 			}
 		}
 		
-		EvaluatedExpression evaluatedExpression = paper.getEvaluatedExpressions().get(paper.getEvaluatedExpressions().size() - 1);
+		List<EvaluatedExpression> evaluatedExpressions = paper.getEvaluatedExpressions();
 		
+		// If only the notes have changed, the last expression is printed.
+		int firstIndex = Math.max(0, Math.min(firstChangedIndex, evaluatedExpressions.size() - 1));
+		
+		for (int index = firstIndex; index < evaluatedExpressions.size(); index++) {
+			printEvaluatedExpression(evaluatedExpressions.get(index));
+		}
+	}
+	
+	private void printEvaluatedExpression(EvaluatedExpression evaluatedExpression) {
 		if (uiParameters.getBoolean("isPrintResultOnly")) {
-			System.out.print(evaluatedExpression.getFormattedResult(paper.getNumberFormat()));
+			output.print(evaluatedExpression.getFormattedResult(paper.getNumberFormat()));
 		} else {
-			System.out.print(paper.format(evaluatedExpression));
+			output.print(paper.format(evaluatedExpression));
 		}
 		
 		if (!uiParameters.getBoolean("isNoNewline")) {
-			System.out.println();
+			output.println();
 		}
 	}
 }
@@ -0,0 +1,352 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.uis.csv;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.bonsaimind.jmathpaper.core.EvaluatedExpression;
+import org.bonsaimind.jmathpaper.core.InvalidExpressionException;
+import org.bonsaimind.jmathpaper.core.Paper;
+import org.bonsaimind.jmathpaper.core.PaperTemplate;
+import org.bonsaimind.jmathpaper.core.ui.AbstractPapersUi;
+
+/**
+ * {@link Csv} is a UI without any interaction which uses the opened paper as
+ * template of formulas for every row of a CSV stream.
+ * <p>
+ * The rows are read from stdin, the columns of the header bind to the
+ * variables of the paper with the same name, and the results of the selected IDs are
+ * written as additional columns to stdout. The paper is compiled only once,
+ * the rows are evaluated concurrently in chunks and are written in their
+ * original order. Rows which could not be evaluated are reported on stderr
+ * and have empty results, the process then exits with a non-zero status.
+ */
+public class Csv extends AbstractPapersUi {
+	/** The size of the buffers of the input and output. */
+	protected static final int BUFFER_SIZE = 64 * 1024;
+	/** The count of rows which are evaluated together by default. */
+	protected static final int DEFAULT_CHUNK_SIZE = 1024;
+	/** The count of chunks which can be pending per worker. */
+	protected static final int PENDING_CHUNKS_PER_WORKER = 2;
+	
+	public Csv() {
+		super();
+	}
+	
+	@Override
+	public void quit() {
+		// Nothing to do here.
+	}
+	
+	@Override
+	public void run() throws Exception {
+		Paper paper = getPaper();
+		paper.awaitEvaluation();
+		paper.checkEvaluation();
+		
+		char delimiter = getDelimiter();
+		int chunkSize = Math.max(1, uiParameters.getInt("chunkSize", DEFAULT_CHUNK_SIZE));
+		int workerCount = Math.max(1, uiParameters.getInt("workers", Runtime.getRuntime().availableProcessors()));
+		
+		CsvReader reader = new CsvReader(
+				new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), BUFFER_SIZE),
+				delimiter);
+		// System.out is flushed with every line, so it is bypassed.
+		Writer writer = new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8),
+				BUFFER_SIZE);
+		
+		List<String> header = reader.readRecord();
+		
+		if (header == null) {
+			return;
+		}
+		
+		Set<String> paperIds = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		
+		for (EvaluatedExpression evaluatedExpression : paper.getEvaluatedExpressions()) {
+			paperIds.add(evaluatedExpression.getId());
+		}
+		
+		// Only the columns which are assigned in the paper are bound, the paper
+		// holds sample values for them.
+		List<String> variables = new ArrayList<>();
+		List<Integer> variableColumns = new ArrayList<>();
+		
+		for (int column = 0; column < header.size(); column++) {
+			String name = header.get(column).trim();
+			
+			if (paperIds.contains(name)) {
+				variables.add(name);
+				variableColumns.add(Integer.valueOf(column));
+			}
+		}
+		
+		PaperTemplate paperTemplate = new PaperTemplate(paper, variables);
+		List<String> ids = getOutputIds(paperTemplate);
+		int[] resultIndexes = new int[ids.size()];
+		
+		for (int index = 0; index < ids.size(); index++) {
+			resultIndexes[index] = paperTemplate.indexOf(ids.get(index));
+			
+			if (resultIndexes[index] < 0) {
+				throw new IllegalArgumentException("No such ID in the template: " + ids.get(index));
+			}
+		}
+		
+		List<String> outputHeader = new ArrayList<>(header);
+		outputHeader.addAll(ids);
+		writeRecord(writer, outputHeader, delimiter);
+		
+		ChunkProcessor chunkProcessor = new ChunkProcessor(paperTemplate, variableColumns, resultIndexes, delimiter);
+		ThreadLocal<PaperTemplate.Evaluation> evaluations = ThreadLocal.withInitial(paperTemplate::newEvaluation);
+		ExecutorService executor = Executors.newFixedThreadPool(workerCount, Csv::createWorkerThread);
+		Deque<Future<Chunk>> pendingChunks = new ArrayDeque<>();
+		int failedRows = 0;
+		
+		try {
+			int rowNumber = 1;
+			List<String> record = reader.readRecord();
+			
+			while (record != null) {
+				Chunk chunk = new Chunk(rowNumber);
+				
+				while (record != null && chunk.records.size() < chunkSize) {
+					// Empty lines are skipped.
+					if (record.size() > 1 || !record.get(0).isEmpty()) {
+						chunk.records.add(record);
+					}
+					
+					record = reader.readRecord();
+				}
+				
+				rowNumber = rowNumber + chunk.records.size();
+				pendingChunks.add(executor.submit(() -> chunkProcessor.process(chunk, evaluations.get())));
+				
+				// Only a limited amount of chunks is held in memory, the
+				// oldest is written before more rows are read.
+				if (pendingChunks.size() >= workerCount * PENDING_CHUNKS_PER_WORKER) {
+					failedRows = failedRows + writeChunk(writer, pendingChunks.poll().get());
+				}
+			}
+			
+			while (!pendingChunks.isEmpty()) {
+				failedRows = failedRows + writeChunk(writer, pendingChunks.poll().get());
+			}
+		} finally {
+			writer.flush();
+			executor.shutdownNow();
+		}
+		
+		if (failedRows > 0) {
+			System.err.println("Rows which could not be evaluated: " + failedRows);
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * Gets the delimiter from the parameters, a comma by default.
+	 * 
+	 * @return The delimiter.
+	 */
+	protected char getDelimiter() {
+		String delimiter = uiParameters.getString("delimiter", ",");
+		
+		if (delimiter.equalsIgnoreCase("tab")) {
+			return '\t';
+		} else if (delimiter.length() != 1) {
+			throw new IllegalArgumentException("The delimiter must be a single character or \"tab\": " + delimiter);
+		}
+		
+		return delimiter.charAt(0);
+	}
+	
+	/**
+	 * Gets the IDs whose results are written, either the ones given as
+	 * parameter or all named ones of the template.
+	 * 
+	 * @param paperTemplate The {@link PaperTemplate}.
+	 * @return The IDs whose results are written.
+	 */
+	protected List<String> getOutputIds(PaperTemplate paperTemplate) {
+		List<String> ids = new ArrayList<>();
+		String columns = uiParameters.getString("columns");
+		
+		if (columns != null && !columns.trim().isEmpty()) {
+			for (String column : columns.split(",")) {
+				ids.add(column.trim());
+			}
+		} else {
+			for (int index = 0; index < paperTemplate.getIds().size(); index++) {
+				String id = paperTemplate.getIds().get(index);
+				
+				if (!id.startsWith("#")
+						&& !paperTemplate.isFunction(index)
+						&& paperTemplate.indexOf(id) == index) {
+					ids.add(id);
+				}
+			}
+		}
+		
+		return ids;
+	}
+	
+	private static final void appendRecord(StringBuilder builder, List<String> fields, char delimiter) {
+		for (int index = 0; index < fields.size(); index++) {
+			if (index > 0) {
+				builder.append(delimiter);
+			}
+			
+			String field = fields.get(index);
+			
+			if (field.indexOf(delimiter) >= 0
+					|| field.indexOf('"') >= 0
+					|| field.indexOf('\n') >= 0
+					|| field.indexOf('\r') >= 0) {
+				builder.append('"').append(field.replace("\"", "\"\"")).append('"');
+			} else {
+				builder.append(field);
+			}
+		}
+		
+		builder.append('\n');
+	}
+	
+	private static final Thread createWorkerThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, "jMathPaper CSV Worker");
+		thread.setDaemon(true);
+		
+		return thread;
+	}
+	
+	private static final int writeChunk(Writer writer, Chunk chunk) throws IOException {
+		writer.write(chunk.output);
+		
+		for (String error : chunk.errors) {
+			System.err.println(error);
+		}
+		
+		return chunk.errors.size();
+	}
+	
+	private static final void writeRecord(Writer writer, List<String> fields, char delimiter) throws IOException {
+		StringBuilder builder = new StringBuilder();
+		appendRecord(builder, fields, delimiter);
+		writer.write(builder.toString());
+	}
+	
+	/**
+	 * {@link Chunk} holds consecutive rows which are evaluated together.
+	 */
+	private static final class Chunk {
+		private List<String> errors = new ArrayList<>();
+		private int firstRowNumber = 0;
+		private String output = null;
+		private List<List<String>> records = new ArrayList<>();
+		
+		public Chunk(int firstRowNumber) {
+			super();
+			
+			this.firstRowNumber = firstRowNumber;
+		}
+	}
+	
+	/**
+	 * {@link ChunkProcessor} evaluates the rows of a {@link Chunk} and formats
+	 * them.
+	 */
+	private static final class ChunkProcessor {
+		private char delimiter = ',';
+		private PaperTemplate paperTemplate = null;
+		private int[] resultIndexes = null;
+		private List<Integer> variableColumns = null;
+		
+		public ChunkProcessor(PaperTemplate paperTemplate, List<Integer> variableColumns, int[] resultIndexes, char delimiter) {
+			super();
+			
+			this.paperTemplate = paperTemplate;
+			this.variableColumns = variableColumns;
+			this.resultIndexes = resultIndexes;
+			this.delimiter = delimiter;
+		}
+		
+		public Chunk process(Chunk chunk, PaperTemplate.Evaluation evaluation) {
+			StringBuilder output = new StringBuilder();
+			BigDecimal[] values = new BigDecimal[variableColumns.size()];
+			
+			for (int index = 0; index < chunk.records.size(); index++) {
+				List<String> fields = new ArrayList<>(chunk.records.get(index));
+				int rowNumber = chunk.firstRowNumber + index;
+				
+				try {
+					for (int variable = 0; variable < values.length; variable++) {
+						int column = variableColumns.get(variable).intValue();
+						String field = column < fields.size() ? fields.get(column).trim() : "";
+						
+						try {
+							values[variable] = new BigDecimal(field);
+						} catch (NumberFormatException e) {
+							throw new InvalidExpressionException(
+									"Not a number in column " + paperTemplate.getVariables().get(variable) + ": " + field,
+									e);
+						}
+					}
+					
+					BigDecimal[] results = evaluation.evaluate(values);
+					
+					for (int resultIndex : resultIndexes) {
+						fields.add(results[resultIndex] != null ? results[resultIndex].toPlainString() : "");
+					}
+				} catch (InvalidExpressionException e) {
+					chunk.errors.add("Row " + rowNumber + ": " + e.getMessage());
+					
+					while (fields.size() < chunk.records.get(index).size() + resultIndexes.length) {
+						fields.add("");
+					}
+				}
+				
+				appendRecord(output, fields, delimiter);
+			}
+			
+			chunk.output = output.toString();
+			chunk.records = null;
+			
+			return chunk;
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.uis.csv;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link CsvReader} reads delimiter separated records from a {@link Reader},
+ * one record at a time.
+ * <p>
+ * Fields can be quoted with double quotes, in which case they can contain the
+ * delimiter, line breaks and double quotes, which are escaped by doubling
+ * them.
+ */
+public class CsvReader {
+	private static final char QUOTE = '"';
+	private char delimiter = ',';
+	private int next = -2;
+	private Reader reader = null;
+	
+	/**
+	 * Creates a new instance of {@link CsvReader}.
+	 *
+	 * @param reader The {@link Reader} to read from, should be buffered.
+	 * @param delimiter The delimiter between the fields.
+	 */
+	public CsvReader(Reader reader, char delimiter) {
+		super();
+		
+		this.reader = reader;
+		this.delimiter = delimiter;
+	}
+	
+	/**
+	 * Reads the next record.
+	 * 
+	 * @return The fields of the next record, {@code null} if the end has been
+	 *         reached.
+	 * @throws IOException If reading failed.
+	 */
+	public List<String> readRecord() throws IOException {
+		int current = read();
+		
+		if (current < 0) {
+			return null;
+		}
+		
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		
+		while (true) {
+			if (quoted) {
+				if (current < 0) {
+					fields.add(field.toString());
+					return fields;
+				} else if (current == QUOTE) {
+					if (peek() == QUOTE) {
+						field.append(QUOTE);
+						read();
+					} else {
+						quoted = false;
+					}
+				} else {
+					field.append((char)current);
+				}
+			} else if (current < 0 || current == '\n' || current == '\r') {
+				if (current == '\r' && peek() == '\n') {
+					read();
+				}
+				
+				fields.add(field.toString());
+				return fields;
+			} else if (current == delimiter) {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else if (current == QUOTE && field.length() == 0) {
+				quoted = true;
+			} else {
+				field.append((char)current);
+			}
+			
+			current = read();
+		}
+	}
+	
+	private int peek() throws IOException {
+		if (next == -2) {
+			next = reader.read();
+		}
+		
+		return next;
+	}
+	
+	private int read() throws IOException {
+		int current = peek();
+		next = -2;
+		
+		return current;
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.uis.daemon;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+
+import org.bonsaimind.jmathpaper.core.configuration.Configuration;
+import org.bonsaimind.jmathpaper.core.ui.AbstractPapersUi;
+import org.bonsaimind.jmathpaper.uis.server.Server;
+
+/**
+ * {@link Daemon} is a {@link Server} which answers the requests of
+ * {@link DaemonClient}s, so that evaluating an expression from the command line
+ * does not require to start and warm up a new process every time.
+ * <p>
+ * Every connection is served by its own {@link DaemonSession}, which opens and
+ * saves files as the user who started the {@link Daemon}. So the
+ * {@link Daemon} only listens on loopback addresses, and every request must
+ * start with a random token which is written to a file in the configuration
+ * directory that only that user can read, see
+ * {@link Configuration#getDaemonTokenFile(int)}.
+ */
+public class Daemon extends Server {
+	/** The count of random bytes of the token. */
+	protected static final int TOKEN_LENGTH = 32;
+	/** The token which must be sent with every request. */
+	protected String token = null;
+	
+	public Daemon() {
+		super();
+	}
+	
+	@Override
+	public void run() throws Exception {
+		String address = uiParameters.getString("address", DEFAULT_ADDRESS);
+		
+		if (!InetAddress.getByName(address).isLoopbackAddress()) {
+			throw new IllegalArgumentException("The daemon can only listen on a loopback address, not on: " + address);
+		}
+		
+		Path tokenFile = Configuration.getDaemonTokenFile(getPort());
+		
+		token = createToken();
+		writeTokenFile(tokenFile, token);
+		// The daemon is usually stopped by a signal, which skips the finally.
+		tokenFile.toFile().deleteOnExit();
+		
+		try {
+			super.run();
+		} finally {
+			Files.deleteIfExists(tokenFile);
+		}
+	}
+	
+	@Override
+	protected AbstractPapersUi createSession(InputStream input, PrintStream output) {
+		return new DaemonSession(input, output, help, token);
+	}
+	
+	@Override
+	protected int getPort() {
+		return uiParameters.getInt("port", DaemonClient.DEFAULT_PORT);
+	}
+	
+	/**
+	 * Creates a new random token.
+	 * 
+	 * @return The new random token, as hexadecimal {@link String}.
+	 */
+	private static final String createToken() {
+		byte[] bytes = new byte[TOKEN_LENGTH];
+		new SecureRandom().nextBytes(bytes);
+		
+		StringBuilder token = new StringBuilder(bytes.length * 2);
+		
+		for (byte value : bytes) {
+			token.append(String.format("%02x", Byte.valueOf(value)));
+		}
+		
+		return token.toString();
+	}
+	
+	/**
+	 * Writes the given token to the given file, which is only readable and
+	 * writable by the current user if the file system supports it.
+	 * 
+	 * @param tokenFile The {@link Path} of the token file.
+	 * @param token The token to write.
+	 * @throws IOException If writing the file failed.
+	 */
+	private static final void writeTokenFile(Path tokenFile, String token) throws IOException {
+		// The file is created anew, so that no one else can hold it open.
+		Files.deleteIfExists(tokenFile);
+		Files.createDirectories(tokenFile.getParent());
+		
+		if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+			Files.createFile(tokenFile, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+		} else {
+			Files.createFile(tokenFile);
+		}
+		
+		Files.write(tokenFile, token.getBytes(StandardCharsets.UTF_8));
+	}
+}
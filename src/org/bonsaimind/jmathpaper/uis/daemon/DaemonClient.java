@@ -0,0 +1,112 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.uis.daemon;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.bonsaimind.jmathpaper.core.configuration.Configuration;
+
+/**
+ * {@link DaemonClient} forwards the arguments of the command line to a
+ * running {@link Daemon} and prints its answer.
+ * <p>
+ * It is deliberately kept thin, nothing besides the connection is set up.
+ */
+public final class DaemonClient {
+	/** The address on which the {@link Daemon} is reached by default. */
+	public static final String DEFAULT_ADDRESS = "127.0.0.1";
+	/** The port on which the {@link Daemon} is reached by default. */
+	public static final int DEFAULT_PORT = 4243;
+	
+	private DaemonClient() {
+		// No instancing required.
+	}
+	
+	/**
+	 * Sends the given files and input to the {@link Daemon} and prints the
+	 * answer to the given {@link PrintStream}.
+	 * 
+	 * @param address The address of the {@link Daemon}.
+	 * @param port The port of the {@link Daemon}, its token is read from
+	 *        {@link Configuration#getDaemonTokenFile(int)}.
+	 * @param files The files to open, relative paths are resolved against the
+	 *        current directory.
+	 * @param input The input to process, can be {@code null}.
+	 * @param output The {@link PrintStream} to print the answer to.
+	 * @return {@code true} if the {@link Daemon} did not report an error.
+	 * @throws IOException If the token could not be read or the {@link Daemon}
+	 *         could not be reached.
+	 */
+	public static final boolean send(String address, int port, List<Path> files, String input, PrintStream output) throws IOException {
+		String token = new String(Files.readAllBytes(Configuration.getDaemonTokenFile(port)), StandardCharsets.UTF_8).trim();
+		
+		try (Socket socket = new Socket(address, port)) {
+			Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+			
+			writer.write(DaemonSession.TOKEN_PREFIX);
+			writer.write(token);
+			writer.write("\n");
+			
+			for (Path file : files) {
+				writer.write(DaemonSession.OPEN_PREFIX);
+				writer.write(file.toAbsolutePath().toString());
+				writer.write("\n");
+			}
+			
+			if (input != null) {
+				for (String inputLine : input.split("\n")) {
+					writer.write(DaemonSession.PROCESS_PREFIX);
+					writer.write(inputLine);
+					writer.write("\n");
+				}
+			}
+			
+			writer.write("\n");
+			writer.flush();
+			
+			boolean successful = true;
+			
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			String line = reader.readLine();
+			
+			while (line != null) {
+				output.println(line);
+				
+				if (line.startsWith(DaemonSession.ERROR_PREFIX)) {
+					successful = false;
+				}
+				
+				line = reader.readLine();
+			}
+			
+			return successful;
+		}
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.uis.daemon;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+
+import org.bonsaimind.jmathpaper.core.InvalidExpressionException;
+import org.bonsaimind.jmathpaper.core.configuration.Configuration;
+import org.bonsaimind.jmathpaper.core.support.Topic;
+import org.bonsaimind.jmathpaper.core.ui.CommandExecutionException;
+import org.bonsaimind.jmathpaper.uis.cli.Cli;
+
+/**
+ * {@link DaemonSession} is a {@link Cli} which serves a single request of a
+ * {@link DaemonClient}.
+ * <p>
+ * A request starts with a line consisting of {@link #TOKEN_PREFIX} followed by
+ * the token of the {@link Daemon}, requests without it are rejected. The
+ * following lines each start with either {@link #OPEN_PREFIX} followed by the
+ * path of a paper to open, or {@link #PROCESS_PREFIX} followed by the input to
+ * process. The request ends
+ * with an empty line or the end of the input, and the session answers exactly
+ * like the {@link Cli} would have with the same arguments. Lines which could not be processed are
+ * answered with {@link #ERROR_PREFIX} followed by the reason.
+ */
+public class DaemonSession extends Cli {
+	/** The prefix of answer lines which report an error. */
+	public static final String ERROR_PREFIX = "Error: ";
+	/** The prefix of request lines which name a paper to open. */
+	public static final String OPEN_PREFIX = "open ";
+	/** The prefix of request lines which contain the input to process. */
+	public static final String PROCESS_PREFIX = "process ";
+	/** The prefix of the first request line, which contains the token. */
+	public static final String TOKEN_PREFIX = "token ";
+	/** The lock held by all sessions while using the global paper. */
+	private static final Object GLOBAL_PAPER_LOCK = new Object();
+	protected InputStream input = null;
+	/** The token of the {@link Daemon}, which must be sent by the client. */
+	protected String token = null;
+	
+	/**
+	 * Creates a new instance of {@link DaemonSession}.
+	 * 
+	 * @param input The {@link InputStream} of the connection.
+	 * @param output The {@link PrintStream} of the connection.
+	 * @param help The help {@link Topic} of the {@link Daemon}, which is shared
+	 *        by all sessions.
+	 * @param token The token of the {@link Daemon}, which must be sent by the
+	 *        client.
+	 */
+	public DaemonSession(InputStream input, PrintStream output, Topic help, String token) {
+		super(output);
+		
+		this.input = input;
+		this.help = help;
+		this.token = token;
+	}
+	
+	@Override
+	public void run() throws Exception {
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+			if (!isAuthorized(reader.readLine())) {
+				output.print(ERROR_PREFIX);
+				output.print("The request has not been authorized by the token of the daemon.");
+				output.println();
+				output.flush();
+				
+				return;
+			}
+			
+			String line = reader.readLine();
+			
+			// Either an empty line or the end of the input ends the request.
+			while (line != null && !line.isEmpty()) {
+				try {
+					processRequestLine(line);
+				} catch (Exception e) {
+					output.print(ERROR_PREFIX);
+					output.print(e.getMessage());
+					output.println();
+				}
+				
+				line = reader.readLine();
+			}
+			
+			// Closing the reader closes the connection, so the answer must
+			// be flushed before that.
+			output.flush();
+		}
+	}
+	
+	/**
+	 * Checks whether the given first line of the request contains the token
+	 * of the {@link Daemon}.
+	 * 
+	 * @param line The first line of the request, can be {@code null}.
+	 * @return {@code true} if the line contains the token.
+	 */
+	protected boolean isAuthorized(String line) {
+		if (token == null || line == null || !line.startsWith(TOKEN_PREFIX)) {
+			return false;
+		}
+		
+		// Compared in constant time, so that the token can not be guessed
+		// from the time it takes to reject it.
+		return MessageDigest.isEqual(
+				token.getBytes(StandardCharsets.UTF_8),
+				line.substring(TOKEN_PREFIX.length()).getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Processes the given line of the request.
+	 * 
+	 * @param line The line of the request.
+	 * @throws Exception If the line could not be processed.
+	 */
+	protected void processRequestLine(String line) throws Exception {
+		if (line.startsWith(OPEN_PREFIX)) {
+			open(Paths.get(line.substring(OPEN_PREFIX.length())));
+		} else if (line.startsWith(PROCESS_PREFIX)) {
+			processInput(line.substring(PROCESS_PREFIX.length()));
+		} else {
+			throw new IllegalArgumentException("Unknown request: " + line);
+		}
+	}
+	
+	private void processInput(String input) throws CommandExecutionException, InvalidExpressionException, IOException {
+		if (paper == null) {
+			// Like on the command line, the input goes into the global paper,
+			// which must not be loaded and saved by two sessions at once.
+			synchronized (GLOBAL_PAPER_LOCK) {
+				open(Configuration.getGlobalPaperFile());
+				process(input);
+			}
+		} else {
+			process(input);
+		}
+	}
+}
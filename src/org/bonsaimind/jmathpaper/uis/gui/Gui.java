@@ -27,6 +27,13 @@ import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JFileChooser;
@@ -44,21 +51,31 @@ import javax.swing.UIManager;
 import javax.swing.event.ChangeEvent;
 
 import org.bonsaimind.jmathpaper.Version;
+import org.bonsaimind.jmathpaper.core.EvaluatedExpression;
+import org.bonsaimind.jmathpaper.core.Paper;
 import org.bonsaimind.jmathpaper.core.support.Topic;
 import org.bonsaimind.jmathpaper.core.ui.AbstractPapersUi;
 import org.bonsaimind.jmathpaper.core.ui.UiParameters;
-import org.bonsaimind.jmathpaper.uis.gui.components.PaperComponent;
+import org.bonsaimind.jmathpaper.uis.gui.components.PaperTab;
 import org.bonsaimind.jmathpaper.uis.gui.events.ActionForwardingListener;
 import org.bonsaimind.jmathpaper.uis.gui.events.UiQuittingWindowListener;
 import org.bonsaimind.jmathpaper.uis.gui.help.HelpFrame;
 
 public class Gui extends AbstractPapersUi {
+	protected static final int DEFAULT_MATERIALIZED_TABS_LIMIT = 8;
 	protected JFileChooser fileChooser = null;
 	protected JFrame frame = null;
 	protected HelpFrame helpFrame = null;
+	/**
+	 * The single thread on which all commands and evaluations of all papers
+	 * are run, so that the state of the UI is only ever changed by that
+	 * thread and never concurrently.
+	 */
+	private static final ExecutorService WORKER = Executors.newSingleThreadExecutor(Gui::createWorkerThread);
 	private JMenuItem clearPaperMenuItem;
 	private JMenuItem closeAllPapersMenuItem;
 	private JMenuItem closePaperMenuItem;
+	private int materializedTabsLimit = DEFAULT_MATERIALIZED_TABS_LIMIT;
 	private JMenuItem nextPaperMenuItem;
 	private boolean notesVisible = true;
 	private JMenuItem previousPaperMenuItem;
@@ -78,6 +95,8 @@ public class Gui extends AbstractPapersUi {
 		setupLookAndFeel();
 		setupAlternateRowColor();
 		
+		materializedTabsLimit = Math.max(1, uiParameters.getInt("materializedTabs", DEFAULT_MATERIALIZED_TABS_LIMIT));
+		
 		fileChooser = new JFileChooser();
 		
 		helpFrame = new HelpFrame(help);
@@ -90,7 +109,7 @@ public class Gui extends AbstractPapersUi {
 		newPaperMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_N, KeyEvent.CTRL_DOWN_MASK));
 		newPaperMenuItem.setMnemonic('N');
 		newPaperMenuItem.setText("New paper");
-		newPaperMenuItem.addActionListener(new ActionForwardingListener(this::new_));
+		newPaperMenuItem.addActionListener(new ActionForwardingListener(() -> runOnWorkerThread(this::new_)));
 		
 		JMenuItem openPaperMenuItem = new JMenuItem();
 		openPaperMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_O, KeyEvent.CTRL_DOWN_MASK));
@@ -102,13 +121,13 @@ public class Gui extends AbstractPapersUi {
 		closePaperMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_W, KeyEvent.CTRL_DOWN_MASK));
 		closePaperMenuItem.setMnemonic('C');
 		closePaperMenuItem.setText("Close");
-		closePaperMenuItem.addActionListener(new ActionForwardingListener(this::close));
+		closePaperMenuItem.addActionListener(new ActionForwardingListener(() -> runOnWorkerThread(this::close)));
 		
 		closeAllPapersMenuItem = new JMenuItem();
 		closeAllPapersMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_W, KeyEvent.CTRL_DOWN_MASK | KeyEvent.SHIFT_DOWN_MASK));
 		closeAllPapersMenuItem.setMnemonic('l');
 		closeAllPapersMenuItem.setText("Close all");
-		closeAllPapersMenuItem.addActionListener(new ActionForwardingListener(this::closeAll));
+		closeAllPapersMenuItem.addActionListener(new ActionForwardingListener(() -> runOnWorkerThread(this::closeAll)));
 		
 		savePaperMenuItem = new JMenuItem();
 		savePaperMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_S, KeyEvent.CTRL_DOWN_MASK));
@@ -125,7 +144,7 @@ public class Gui extends AbstractPapersUi {
 		clearPaperMenuItem = new JMenuItem();
 		clearPaperMenuItem.setMnemonic('r');
 		clearPaperMenuItem.setText("Clear");
-		clearPaperMenuItem.addActionListener(new ActionForwardingListener(this::clear));
+		clearPaperMenuItem.addActionListener(new ActionForwardingListener(() -> runOnWorkerThread(this::clear)));
 		
 		JMenuItem quitMenuItem = new JMenuItem();
 		quitMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Q, KeyEvent.CTRL_DOWN_MASK));
@@ -153,13 +172,13 @@ public class Gui extends AbstractPapersUi {
 		nextPaperMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_TAB, KeyEvent.CTRL_MASK));
 		nextPaperMenuItem.setMnemonic('e');
 		nextPaperMenuItem.setText("Next paper");
-		nextPaperMenuItem.addActionListener(new ActionForwardingListener(this::next));
+		nextPaperMenuItem.addActionListener(new ActionForwardingListener(() -> runOnWorkerThread(this::next)));
 		
 		previousPaperMenuItem = new JMenuItem();
 		previousPaperMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_TAB, KeyEvent.CTRL_MASK | KeyEvent.SHIFT_MASK));
 		previousPaperMenuItem.setMnemonic('r');
 		previousPaperMenuItem.setText("Previous paper");
-		previousPaperMenuItem.addActionListener(new ActionForwardingListener(this::previous));
+		previousPaperMenuItem.addActionListener(new ActionForwardingListener(() -> runOnWorkerThread(this::previous)));
 		
 		JCheckBoxMenuItem notesMenuItem = new JCheckBoxMenuItem();
 		notesMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F4, 0));
@@ -210,11 +229,13 @@ public class Gui extends AbstractPapersUi {
 	
 	@Override
 	public void quit() {
-		helpFrame.setVisible(false);
-		helpFrame.dispose();
-		
-		frame.setVisible(false);
-		frame.dispose();
+		runOnEventDispatchThread(() -> {
+			helpFrame.setVisible(false);
+			helpFrame.dispose();
+			
+			frame.setVisible(false);
+			frame.dispose();
+		});
 	}
 	
 	@Override
@@ -227,12 +248,31 @@ public class Gui extends AbstractPapersUi {
 		}
 	}
 	
+	/**
+	 * Runs the given {@link Runnable} on the worker thread, after all commands
+	 * which have been queued before it.
+	 * <p>
+	 * Everything which changes the current paper or the list of papers must
+	 * go through this method, failures are shown in the status bar.
+	 * 
+	 * @param runnable The {@link Runnable} to run.
+	 */
+	public void runOnWorkerThread(Runnable runnable) {
+		WORKER.execute(() -> {
+			try {
+				runnable.run();
+			} catch (RuntimeException e) {
+				runOnEventDispatchThread(() -> setStatusMessage(e.getMessage()));
+			}
+		});
+	}
+	
 	@Override
 	public void save() throws IOException {
 		checkCurrentPaper();
 		
 		if (paper.getFile() == null) {
-			onSaveAsMenuItemClicked();
+			runOnEventDispatchThread(this::onSaveAsMenuItemClicked);
 		} else {
 			super.save();
 		}
@@ -240,70 +280,140 @@ public class Gui extends AbstractPapersUi {
 	
 	@Override
 	protected void currentPaperHasBeenAdded() {
-		PaperComponent paperComponent = new PaperComponent(this, paper);
-		paperComponent.setNotesVisible(notesVisible);
-		
-		tabbedPane.addTab(
-				getShortPaperTitle(paper),
-				null,
-				paperComponent,
-				getLongPaperTitle(paper));
-		
-		tabbedPane.setSelectedComponent(paperComponent);
-		
-		SwingUtilities.invokeLater(tabbedPane.getSelectedComponent()::requestFocus);
+		runOnEventDispatchThread(() -> {
+			PaperTab paperTab = new PaperTab(this, paper);
+			paperTab.setNotesVisible(notesVisible);
+			
+			tabbedPane.addTab(
+					getShortPaperTitle(paper),
+					null,
+					paperTab,
+					getLongPaperTitle(paper));
+			
+			tabbedPane.setSelectedComponent(paperTab);
+			
+			SwingUtilities.invokeLater(tabbedPane.getSelectedComponent()::requestFocus);
+		});
 	}
 	
 	@Override
-	protected void currentPaperHasBeenModified() {
-		setStatusMessage(null);
-		
-		refreshCurrentPaper();
+	protected void currentPaperHasBeenModified(int firstChangedIndex) {
+		runOnEventDispatchThread(() -> {
+			setStatusMessage(null);
+			
+			refreshCurrentPaper(firstChangedIndex);
+		});
 	}
 	
 	@Override
 	protected void currentPaperHasBeenRemoved() {
-		tabbedPane.remove(tabbedPane.getSelectedComponent());
+		runOnEventDispatchThread(() -> tabbedPane.remove(tabbedPane.getSelectedComponent()));
 	}
 	
 	@Override
 	protected void currentPaperHasBeenReset() {
-		setStatusMessage(null);
-		
-		refreshCurrentPaper();
+		runOnEventDispatchThread(() -> {
+			setStatusMessage(null);
+			
+			resetCurrentPaper();
+		});
 	}
 	
 	@Override
 	protected void currentSelectedPaperHasChanged() {
-		savePaperAsMenuItem.setEnabled(paper != null);
-		savePaperMenuItem.setEnabled(paper != null);
-		closePaperMenuItem.setEnabled(paper != null);
-		closeAllPapersMenuItem.setEnabled(paper != null);
-		clearPaperMenuItem.setEnabled(paper != null);
-		
-		nextPaperMenuItem.setEnabled(paper != null && papers.indexOf(paper) < papers.size() - 1);
-		previousPaperMenuItem.setEnabled(paper != null && papers.indexOf(paper) > 0);
-		
-		setStatusMessage(null);
-		
-		for (Component component : tabbedPane.getComponents()) {
-			if (((PaperComponent)component).getPaper() == paper) {
-				tabbedPane.setSelectedComponent(component);
-				component.requestFocus();
-				break;
+		runOnEventDispatchThread(() -> {
+			savePaperAsMenuItem.setEnabled(paper != null);
+			savePaperMenuItem.setEnabled(paper != null);
+			closePaperMenuItem.setEnabled(paper != null);
+			closeAllPapersMenuItem.setEnabled(paper != null);
+			clearPaperMenuItem.setEnabled(paper != null);
+			
+			nextPaperMenuItem.setEnabled(paper != null && papers.indexOf(paper) < papers.size() - 1);
+			previousPaperMenuItem.setEnabled(paper != null && papers.indexOf(paper) > 0);
+			
+			setStatusMessage(null);
+			
+			for (Component component : tabbedPane.getComponents()) {
+				if (((PaperTab)component).getPaper() == paper) {
+					tabbedPane.setSelectedComponent(component);
+					component.requestFocus();
+					break;
+				}
 			}
+		});
+	}
+	
+	protected void refreshCurrentPaper(int firstChangedIndex) {
+		if (tabbedPane.getSelectedComponent() != null) {
+			((PaperTab)tabbedPane.getSelectedComponent()).refresh(firstChangedIndex);
+			
+			tabbedPane.setTitleAt(tabbedPane.getSelectedIndex(), getShortPaperTitle(paper));
+			tabbedPane.setToolTipTextAt(tabbedPane.getSelectedIndex(), getShortPaperTitle(paper));
 		}
 	}
 	
-	protected void refreshCurrentPaper() {
+	protected void resetCurrentPaper() {
 		if (tabbedPane.getSelectedComponent() != null) {
-			((PaperComponent)tabbedPane.getSelectedComponent()).refresh();
+			((PaperTab)tabbedPane.getSelectedComponent()).reset();
 			
 			tabbedPane.setTitleAt(tabbedPane.getSelectedIndex(), getShortPaperTitle(paper));
 			tabbedPane.setToolTipTextAt(tabbedPane.getSelectedIndex(), getShortPaperTitle(paper));
 		}
 	}
 	
+	/**
+	 * Runs the given {@link Runnable} on the Event Dispatch Thread and waits
+	 * for it to finish.
+	 * <p>
+	 * Expressions and commands are processed on a background thread, so all
+	 * changes to components triggered by them must go through this method.
+	 * 
+	 * @param runnable The {@link Runnable} to run.
+	 */
+	protected void runOnEventDispatchThread(Runnable runnable) {
+		if (SwingUtilities.isEventDispatchThread()) {
+			runnable.run();
+		} else {
+			try {
+				SwingUtilities.invokeAndWait(runnable);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (InvocationTargetException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException)e.getCause();
+				} else {
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Releases the components of all tabs which have not been viewed
+	 * recently, so that at most the configured number of tabs keep them.
+	 */
+	protected void releaseUnviewedTabs() {
+		List<PaperTab> materializedPaperTabs = new ArrayList<>();
+		
+		for (Component component : tabbedPane.getComponents()) {
+			PaperTab paperTab = (PaperTab)component;
+			
+			if (paperTab.isMaterialized()) {
+				materializedPaperTabs.add(paperTab);
+			}
+		}
+		
+		if (materializedPaperTabs.size() > materializedTabsLimit) {
+			materializedPaperTabs.sort(Comparator.comparingLong(PaperTab::getLastViewed).reversed());
+			
+			for (PaperTab paperTab : materializedPaperTabs.subList(materializedTabsLimit, materializedPaperTabs.size())) {
+				if (paperTab != tabbedPane.getSelectedComponent()) {
+					paperTab.release();
+				}
+			}
+		}
+	}
+	
 	protected void setStatusMessage(String message) {
 		if (message == null) {
 			statusLabel.setText(" ");
@@ -346,8 +456,22 @@ public class Gui extends AbstractPapersUi {
 	
 	@Override
 	protected void showHelp(Topic topic) {
-		helpFrame.showTopic(topic);
-		helpFrame.setVisible(true);
+		runOnEventDispatchThread(() -> {
+			helpFrame.showTopic(topic);
+			helpFrame.setVisible(true);
+		});
+	}
+	
+	@Override
+	protected void showSearchResults(String term, List<EvaluatedExpression> evaluatedExpressions) {
+		runOnEventDispatchThread(() -> setStatusMessage(getSearchResultsSummary(evaluatedExpressions)));
+	}
+	
+	private static final Thread createWorkerThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, "jMathPaper Worker");
+		thread.setDaemon(true);
+		
+		return thread;
 	}
 	
 	private void onAwtEvent(AWTEvent event) {
@@ -363,9 +487,9 @@ public class Gui extends AbstractPapersUi {
 			if (keyEvent.getKeyCode() == KeyEvent.VK_TAB) {
 				if ((keyEvent.getModifiers() & KeyEvent.CTRL_MASK) == KeyEvent.CTRL_MASK) {
 					if ((keyEvent.getModifiers() & KeyEvent.SHIFT_MASK) == KeyEvent.SHIFT_MASK) {
-						previous();
+						runOnWorkerThread(this::previous);
 					} else {
-						next();
+						runOnWorkerThread(this::next);
 					}
 					
 					keyEvent.consume();
@@ -380,40 +504,69 @@ public class Gui extends AbstractPapersUi {
 	
 	private void onOpenMenuItemClicked() {
 		if (fileChooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
-			try {
-				open(fileChooser.getSelectedFile().toPath());
-			} catch (Exception e) {
-				setStatusMessage(e.getMessage());
-			}
+			Path file = fileChooser.getSelectedFile().toPath();
+			
+			runOnWorkerThread(() -> {
+				try {
+					open(file);
+				} catch (Exception e) {
+					runOnEventDispatchThread(() -> setStatusMessage(e.getMessage()));
+				}
+			});
 		}
 	}
 	
 	private void onSaveAsMenuItemClicked() {
 		if (fileChooser.showSaveDialog(frame) == JFileChooser.APPROVE_OPTION) {
-			try {
-				paper.setFile(fileChooser.getSelectedFile().toPath());
-				save();
-			} catch (Exception e) {
-				setStatusMessage(e.getMessage());
-			}
+			Path file = fileChooser.getSelectedFile().toPath();
+			
+			runOnWorkerThread(() -> {
+				try {
+					checkCurrentPaper();
+					
+					paper.setFile(file);
+					save();
+				} catch (Exception e) {
+					runOnEventDispatchThread(() -> setStatusMessage(e.getMessage()));
+				}
+			});
 		}
 	}
 	
 	private void onSaveMenuItemClicked() {
-		try {
-			save();
-		} catch (Exception e) {
-			setStatusMessage(e.getMessage());
-		}
+		runOnWorkerThread(() -> {
+			try {
+				save();
+			} catch (Exception e) {
+				runOnEventDispatchThread(() -> setStatusMessage(e.getMessage()));
+			}
+		});
 	}
 	
 	private void onSelectedTabChanged(ChangeEvent event) {
 		if (tabbedPane.getSelectedComponent() != null) {
-			setPaper(((PaperComponent)tabbedPane.getSelectedComponent()).getPaper());
+			PaperTab paperTab = (PaperTab)tabbedPane.getSelectedComponent();
+			paperTab.materialize();
+			
+			releaseUnviewedTabs();
+			
+			Paper selectedPaper = paperTab.getPaper();
+			
+			// The paper might have been closed in the meantime, in which case
+			// the removal of its tab has already selected another one.
+			runOnWorkerThread(() -> {
+				if (papers.contains(selectedPaper)) {
+					setPaper(selectedPaper);
+				}
+			});
 			
 			SwingUtilities.invokeLater(tabbedPane.getSelectedComponent()::requestFocus);
 		} else {
-			setPaper(null);
+			runOnWorkerThread(() -> {
+				if (papers.isEmpty()) {
+					setPaper(null);
+				}
+			});
 		}
 	}
 	
@@ -423,7 +576,7 @@ public class Gui extends AbstractPapersUi {
 		((JCheckBoxMenuItem)event.getSource()).setSelected(notesVisible);
 		
 		for (Component component : tabbedPane.getComponents()) {
-			((PaperComponent)component).setNotesVisible(notesVisible);
+			((PaperTab)component).setNotesVisible(notesVisible);
 		}
 	}
 }
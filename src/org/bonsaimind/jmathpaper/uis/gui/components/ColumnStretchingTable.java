@@ -20,14 +20,21 @@
 package org.bonsaimind.jmathpaper.uis.gui.components;
 
 import java.awt.Component;
+import java.awt.Font;
+import java.awt.FontMetrics;
 import java.awt.event.HierarchyBoundsListener;
 import java.awt.event.HierarchyEvent;
+import java.util.Arrays;
 
 import javax.swing.JTable;
+import javax.swing.event.TableModelEvent;
 import javax.swing.table.TableCellRenderer;
 import javax.swing.table.TableColumn;
 
+import org.bonsaimind.jmathpaper.core.ColumnSizeTracker;
+
 public class ColumnStretchingTable extends JTable {
+	protected ColumnWidths[] columnWidths = null;
 	protected int stretchedColumnIndex = -1;
 	
 	public ColumnStretchingTable(int stretchedColumnIndex) {
@@ -37,6 +44,8 @@ public class ColumnStretchingTable extends JTable {
 		
 		setAutoResizeMode(AUTO_RESIZE_OFF);
 		addHierarchyBoundsListener(new ColumnResizingHierarchyBoundsListener());
+		
+		measureAllRows();
 	}
 	
 	public int getStretchedColumnIndex() {
@@ -60,35 +69,85 @@ public class ColumnStretchingTable extends JTable {
 			}
 		}
 		
-		if (stretchedColumnIndex >= 0) {
+		if (stretchedColumnIndex >= 0 && getParent() != null) {
 			TableColumn column = getColumnModel().getColumn(stretchedColumnIndex);
 			
 			column.setPreferredWidth(getParent().getWidth() - totalColumnWidth);
 		}
 	}
 	
+	@Override
+	public void setFont(Font font) {
+		super.setFont(font);
+		
+		// The widths are measured with the font, so they are all invalid now.
+		measureAllRows();
+	}
+	
 	public void setStretchedColumnIndex(int stretchedColumnIndex) {
 		this.stretchedColumnIndex = stretchedColumnIndex;
 	}
 	
+	@Override
+	public void tableChanged(TableModelEvent e) {
+		super.tableChanged(e);
+		
+		if (e == null
+				|| e.getFirstRow() == TableModelEvent.HEADER_ROW
+				|| e.getLastRow() == Integer.MAX_VALUE
+				|| columnWidths == null
+				|| columnWidths.length != getModel().getColumnCount()) {
+			measureAllRows();
+		} else {
+			for (int modelColumnIndex = 0; modelColumnIndex < columnWidths.length; modelColumnIndex++) {
+				if (e.getColumn() == TableModelEvent.ALL_COLUMNS || e.getColumn() == modelColumnIndex) {
+					ColumnWidths widths = columnWidths[modelColumnIndex];
+					
+					switch (e.getType()) {
+						case TableModelEvent.INSERT:
+							widths.insert(e.getFirstRow(), e.getLastRow() - e.getFirstRow() + 1);
+							measureRows(modelColumnIndex, e.getFirstRow(), e.getLastRow());
+							break;
+						
+						case TableModelEvent.DELETE:
+							widths.delete(e.getFirstRow(), e.getLastRow() - e.getFirstRow() + 1);
+							break;
+						
+						default:
+							measureRows(modelColumnIndex, e.getFirstRow(), e.getLastRow());
+							break;
+					}
+				}
+			}
+		}
+	}
+	
+	protected int calculateCellInsetsSize(int columnIndex) {
+		if (getRowCount() == 0) {
+			return 0;
+		}
+		
+		TableCellRenderer renderer = getCellRenderer(0, columnIndex);
+		
+		Component component = renderer.getTableCellRendererComponent(
+				this,
+				"",
+				false,
+				false,
+				0,
+				columnIndex);
+		
+		return (int)component.getPreferredSize().getWidth();
+	}
+	
 	protected int calculateDataSize(TableColumn column, int columnIndex) {
 		int columnWidth = 0;
 		
-		for (int rowIndex = 0; rowIndex < getModel().getRowCount(); rowIndex++) {
-			TableCellRenderer renderer = getCellRenderer(rowIndex, columnIndex);
+		if (columnWidths != null && column.getModelIndex() < columnWidths.length) {
+			int maximumTextWidth = columnWidths[column.getModelIndex()].getMaximum();
 			
-			Component component = renderer.getTableCellRendererComponent(
-					this,
-					" " + getValueAt(rowIndex, columnIndex).toString() + " ",
-					false,
-					false,
-					rowIndex,
-					columnIndex);
-			
-			int cellWidth = (int)component.getPreferredSize().getWidth();
-			
-			if (cellWidth >= columnWidth) {
-				columnWidth = cellWidth;
+			if (maximumTextWidth > 0) {
+				columnWidth = maximumTextWidth + calculateCellInsetsSize(columnIndex);
 			}
 		}
 		
@@ -117,6 +176,96 @@ public class ColumnStretchingTable extends JTable {
 		return headerComponent.getPreferredSize().width;
 	}
 	
+	protected int calculateTextSize(FontMetrics fontMetrics, int rowIndex, int modelColumnIndex) {
+		Object value = getModel().getValueAt(rowIndex, modelColumnIndex);
+		
+		if (value == null) {
+			return 0;
+		}
+		
+		return fontMetrics.stringWidth(" " + value.toString() + " ");
+	}
+	
+	protected void measureAllRows() {
+		// This is also invoked from the constructor of JTable, before the
+		// fields of this class have been initialized.
+		if (getModel() == null || getFont() == null) {
+			return;
+		}
+		
+		columnWidths = new ColumnWidths[getModel().getColumnCount()];
+		
+		for (int modelColumnIndex = 0; modelColumnIndex < columnWidths.length; modelColumnIndex++) {
+			columnWidths[modelColumnIndex] = new ColumnWidths();
+			columnWidths[modelColumnIndex].insert(0, getModel().getRowCount());
+			
+			measureRows(modelColumnIndex, 0, getModel().getRowCount() - 1);
+		}
+	}
+	
+	protected void measureRows(int modelColumnIndex, int firstRowIndex, int lastRowIndex) {
+		FontMetrics fontMetrics = getFontMetrics(getFont());
+		ColumnWidths widths = columnWidths[modelColumnIndex];
+		
+		for (int rowIndex = firstRowIndex; rowIndex <= lastRowIndex && rowIndex < widths.getCount(); rowIndex++) {
+			widths.set(rowIndex, calculateTextSize(fontMetrics, rowIndex, modelColumnIndex));
+		}
+	}
+	
+	/**
+	 * {@link ColumnWidths} holds the measured width of every row of a column
+	 * together with a {@link ColumnSizeTracker} for their maximum.
+	 */
+	protected static final class ColumnWidths {
+		private int count = 0;
+		private ColumnSizeTracker tracker = new ColumnSizeTracker();
+		private int[] widths = new int[64];
+		
+		public ColumnWidths() {
+			super();
+		}
+		
+		public void delete(int rowIndex, int rowsCount) {
+			for (int index = rowIndex; index < rowIndex + rowsCount; index++) {
+				tracker.remove(widths[index]);
+			}
+			
+			System.arraycopy(widths, rowIndex + rowsCount, widths, rowIndex, count - rowIndex - rowsCount);
+			
+			count = count - rowsCount;
+		}
+		
+		public int getCount() {
+			return count;
+		}
+		
+		public int getMaximum() {
+			return tracker.getMaximum();
+		}
+		
+		public void insert(int rowIndex, int rowsCount) {
+			if (count + rowsCount > widths.length) {
+				widths = Arrays.copyOf(widths, Math.max(widths.length * 2, count + rowsCount));
+			}
+			
+			System.arraycopy(widths, rowIndex, widths, rowIndex + rowsCount, count - rowIndex);
+			Arrays.fill(widths, rowIndex, rowIndex + rowsCount, 0);
+			
+			for (int index = 0; index < rowsCount; index++) {
+				tracker.add(0);
+			}
+			
+			count = count + rowsCount;
+		}
+		
+		public void set(int rowIndex, int width) {
+			tracker.remove(widths[rowIndex]);
+			tracker.add(width);
+			
+			widths[rowIndex] = width;
+		}
+	}
+	
 	private final class ColumnResizingHierarchyBoundsListener implements HierarchyBoundsListener {
 		public ColumnResizingHierarchyBoundsListener() {
 			super();
@@ -22,6 +22,10 @@ package org.bonsaimind.jmathpaper.uis.gui.components;
 import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.event.KeyEvent;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.JComponent;
 import javax.swing.JLabel;
@@ -33,10 +37,8 @@ import javax.swing.ListSelectionModel;
 import javax.swing.SwingUtilities;
 import javax.swing.event.ListSelectionEvent;
 
-import org.bonsaimind.jmathpaper.core.InvalidExpressionException;
 import org.bonsaimind.jmathpaper.core.Paper;
-import org.bonsaimind.jmathpaper.core.ui.CommandExecutionException;
-import org.bonsaimind.jmathpaper.core.ui.Ui;
+import org.bonsaimind.jmathpaper.uis.gui.Gui;
 import org.bonsaimind.jmathpaper.uis.gui.events.KeyPressedListener;
 import org.bonsaimind.jmathpaper.uis.gui.events.NotifyingDocumentListener;
 import org.bonsaimind.jmathpaper.uis.gui.models.PaperColumnModel;
@@ -46,9 +48,18 @@ import com.sibvisions.rad.ui.swing.ext.JVxSplitPane;
 
 public class PaperComponent extends JComponent {
 	private static final double DEFAULT_DIVIDER_LOCATION = 0.75d;
+	private static final long PREVIEW_DELAY = 150;
+	/**
+	 * The single thread on which the previews of all papers are run. Previews
+	 * are evaluated against the snapshot of the paper, so they never block
+	 * the evaluations on the worker thread of the {@link Gui}.
+	 */
+	private static final ScheduledExecutorService PREVIEWER = Executors.newSingleThreadScheduledExecutor(PaperComponent::createPreviewerThread);
 	private String bufferedInput = null;
+	private boolean evaluating = false;
 	private ColumnStretchingTable expressionsTable = null;
 	private boolean firstRepaint = true;
+	private Gui gui = null;
 	private JTextField inputTextField = null;
 	private JLabel messageLabel = null;
 	private JScrollPane notesScrollContainer = null;
@@ -56,15 +67,22 @@ public class PaperComponent extends JComponent {
 	private int originalDividerLocation = -1;
 	private int originalDividerSize = -1;
 	private Paper paper = null;
+	/**
+	 * The count of changes to the notes which have been queued on the worker
+	 * thread but not yet applied to the {@link Paper}.
+	 */
+	private int pendingNotesChanges = 0;
 	private PaperModel paperModel = null;
+	private Future<?> previewFuture = null;
+	private volatile int previewGeneration = 0;
 	private JVxSplitPane splitPane = null;
 	private JScrollPane tableScrollContainer = null;
-	private Ui ui = null;
+	private boolean updatingNotes = false;
 	
-	public PaperComponent(Ui ui, Paper paper) {
+	public PaperComponent(Gui gui, Paper paper) {
 		super();
 		
-		this.ui = ui;
+		this.gui = gui;
 		this.paper = paper;
 		
 		paperModel = new PaperModel();
@@ -135,21 +153,25 @@ public class PaperComponent extends JComponent {
 		setLayout(new BorderLayout());
 		add(splitPane, BorderLayout.CENTER);
 		
-		refresh();
+		refreshComponents();
+	}
+	
+	public String getInput() {
+		if (bufferedInput != null) {
+			return bufferedInput;
+		}
+		
+		return inputTextField.getText();
 	}
 	
 	public Paper getPaper() {
 		return paper;
 	}
 	
-	public void refresh() {
-		paperModel.refresh();
-		expressionsTable.resizeColumns();
-		tableScrollContainer.getVerticalScrollBar().setValue(tableScrollContainer.getVerticalScrollBar().getMaximum());
+	public void refresh(int firstChangedIndex) {
+		paperModel.refresh(firstChangedIndex);
 		
-		notesTextArea.setText(paper.getNotes());
-		
-		resetInput();
+		refreshComponents();
 	}
 	
 	@Override
@@ -174,6 +196,17 @@ public class PaperComponent extends JComponent {
 		inputTextField.requestFocus();
 	}
 	
+	public void reset() {
+		paperModel.reset();
+		
+		refreshComponents();
+	}
+	
+	public void setInput(String input) {
+		expressionsTable.getSelectionModel().clearSelection();
+		inputTextField.setText(input);
+	}
+	
 	public void setNotesVisible(boolean notesVisible) {
 		notesScrollContainer.setVisible(notesVisible);
 		
@@ -192,6 +225,40 @@ public class PaperComponent extends JComponent {
 		}
 	}
 	
+	protected void cancelPreview() {
+		previewGeneration++;
+		
+		if (previewFuture != null) {
+			// Interrupting a running preview lets it stop at the next check
+			// of its evaluation guard.
+			previewFuture.cancel(true);
+			previewFuture = null;
+		}
+	}
+	
+	protected void refreshComponents() {
+		expressionsTable.resizeColumns();
+		tableScrollContainer.getVerticalScrollBar().setValue(tableScrollContainer.getVerticalScrollBar().getMaximum());
+		
+		// Changes which have not been applied yet are newer than the notes of
+		// the paper.
+		if (pendingNotesChanges == 0) {
+			String notes = paper.getNotes();
+			
+			if (!notesTextArea.getText().equals(notes)) {
+				updatingNotes = true;
+				
+				try {
+					notesTextArea.setText(notes);
+				} finally {
+					updatingNotes = false;
+				}
+			}
+		}
+		
+		resetInput();
+	}
+	
 	protected void resetInput() {
 		inputTextField.setText("");
 		setMessage(null);
@@ -207,13 +274,30 @@ public class PaperComponent extends JComponent {
 		}
 	}
 	
+	private static final Thread createPreviewerThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, "jMathPaper Previewer");
+		thread.setDaemon(true);
+		
+		return thread;
+	}
+	
+	private void onEvaluationFinished(String errorMessage) {
+		evaluating = false;
+		
+		if (errorMessage != null) {
+			setMessage(errorMessage);
+		} else {
+			resetInput();
+		}
+	}
+	
 	private void onExpressionsTableSelectionChanged(ListSelectionEvent event) {
 		if (expressionsTable.getSelectedRow() >= 0) {
 			if (bufferedInput == null) {
 				bufferedInput = inputTextField.getText();
 			}
 			
-			inputTextField.setText(paper.getEvaluatedExpressions().get(expressionsTable.getSelectedRow()).getExpression());
+			inputTextField.setText(paperModel.getEvaluatedExpression(expressionsTable.getSelectedRow()).getExpression());
 		} else {
 			if (bufferedInput != null) {
 				inputTextField.setText(bufferedInput);
@@ -224,7 +308,34 @@ public class PaperComponent extends JComponent {
 	}
 	
 	private void onInputTextFieldChanged() {
-		setMessage(paper.previewResult(inputTextField.getText()));
+		cancelPreview();
+		
+		if (evaluating) {
+			return;
+		}
+		
+		String input = inputTextField.getText();
+		int generation = previewGeneration;
+		
+		if (input.trim().isEmpty()) {
+			setMessage(null);
+			return;
+		}
+		
+		previewFuture = PREVIEWER.schedule(() -> {
+			// Skip the preview if it has been superseded while waiting.
+			if (generation != previewGeneration) {
+				return;
+			}
+			
+			String preview = paper.previewResult(input);
+			
+			SwingUtilities.invokeLater(() -> {
+				if (generation == previewGeneration) {
+					setMessage(preview);
+				}
+			});
+		}, PREVIEW_DELAY, TimeUnit.MILLISECONDS);
 	}
 	
 	private void onInputTextFieldDownKey() {
@@ -248,17 +359,35 @@ public class PaperComponent extends JComponent {
 	}
 	
 	private void onInputTextFieldReturnKey() {
-		if (inputTextField.getText().length() > 0) {
-			try {
-				ui.process(inputTextField.getText());
-				resetInput();
-			} catch (CommandExecutionException | InvalidExpressionException e) {
-				if (e.getMessage() != null) {
-					setMessage(e.getMessage());
-				} else {
-					setMessage("No details available: " + e.getClass().getSimpleName());
+		if (evaluating) {
+			return;
+		}
+		
+		String input = inputTextField.getText();
+		
+		if (input.length() > 0) {
+			cancelPreview();
+			
+			evaluating = true;
+			setMessage("Evaluating...");
+			
+			gui.runOnWorkerThread(() -> {
+				String errorMessage = null;
+				
+				try {
+					gui.process(input);
+				} catch (Exception e) {
+					if (e.getMessage() != null) {
+						errorMessage = e.getMessage();
+					} else {
+						errorMessage = "No details available: " + e.getClass().getSimpleName();
+					}
 				}
-			}
+				
+				String message = errorMessage;
+				
+				SwingUtilities.invokeLater(() -> onEvaluationFinished(message));
+			});
 		} else {
 			resetInput();
 		}
@@ -277,6 +406,20 @@ public class PaperComponent extends JComponent {
 	}
 	
 	private void onNotesTextAreaChanged() {
-		paper.setNotes(notesTextArea.getText());
+		if (updatingNotes) {
+			return;
+		}
+		
+		String notes = notesTextArea.getText();
+		
+		pendingNotesChanges++;
+		
+		gui.runOnWorkerThread(() -> {
+			try {
+				paper.setNotes(notes);
+			} finally {
+				SwingUtilities.invokeLater(() -> pendingNotesChanges--);
+			}
+		});
 	}
 }
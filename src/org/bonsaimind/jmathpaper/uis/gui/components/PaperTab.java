@@ -0,0 +1,159 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.uis.gui.components;
+
+import java.awt.BorderLayout;
+
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.Timer;
+
+import org.bonsaimind.jmathpaper.core.Paper;
+import org.bonsaimind.jmathpaper.uis.gui.Gui;
+
+/**
+ * {@link PaperTab} is the lightweight content of a tab, which creates the
+ * actual {@link PaperComponent} only when it is being viewed and can release
+ * it again when it has not been viewed for a while.
+ */
+public class PaperTab extends JComponent {
+	private static final int PENDING_CHECK_INTERVAL = 100;
+	private static final long serialVersionUID = 1L;
+	private Gui gui = null;
+	private String input = "";
+	private long lastViewed = 0;
+	private boolean notesVisible = true;
+	private Paper paper = null;
+	private PaperComponent paperComponent = null;
+	private JLabel pendingLabel = null;
+	private Timer pendingTimer = null;
+	
+	public PaperTab(Gui gui, Paper paper) {
+		super();
+		
+		this.gui = gui;
+		this.paper = paper;
+		
+		setLayout(new BorderLayout());
+		
+		pendingLabel = new JLabel("Evaluating...");
+		pendingLabel.setHorizontalAlignment(JLabel.CENTER);
+		
+		pendingTimer = new Timer(PENDING_CHECK_INTERVAL, (event) -> onPendingTimer());
+	}
+	
+	public long getLastViewed() {
+		return lastViewed;
+	}
+	
+	public Paper getPaper() {
+		return paper;
+	}
+	
+	public boolean isMaterialized() {
+		return paperComponent != null;
+	}
+	
+	public void materialize() {
+		lastViewed = System.nanoTime();
+		
+		if (paperComponent == null) {
+			if (paper.isPending()) {
+				// The paper is still being evaluated in the background,
+				// accessing it now would block until that is done.
+				if (!pendingTimer.isRunning()) {
+					add(pendingLabel, BorderLayout.CENTER);
+					revalidate();
+					repaint();
+					
+					pendingTimer.start();
+				}
+				
+				return;
+			}
+			
+			paperComponent = new PaperComponent(gui, paper);
+			paperComponent.setNotesVisible(notesVisible);
+			paperComponent.setInput(input);
+			
+			add(paperComponent, BorderLayout.CENTER);
+			revalidate();
+			repaint();
+		}
+	}
+	
+	public void refresh(int firstChangedIndex) {
+		if (paperComponent != null) {
+			paperComponent.refresh(firstChangedIndex);
+		}
+	}
+	
+	public void release() {
+		if (pendingTimer.isRunning()) {
+			pendingTimer.stop();
+			
+			remove(pendingLabel);
+			revalidate();
+			repaint();
+		}
+		
+		if (paperComponent != null) {
+			input = paperComponent.getInput();
+			
+			remove(paperComponent);
+			paperComponent = null;
+			
+			revalidate();
+			repaint();
+		}
+	}
+	
+	@Override
+	public void requestFocus() {
+		if (paperComponent != null) {
+			paperComponent.requestFocus();
+		}
+	}
+	
+	public void reset() {
+		if (paperComponent != null) {
+			paperComponent.reset();
+		}
+	}
+	
+	public void setNotesVisible(boolean notesVisible) {
+		this.notesVisible = notesVisible;
+		
+		if (paperComponent != null) {
+			paperComponent.setNotesVisible(notesVisible);
+		}
+	}
+	
+	private void onPendingTimer() {
+		if (!paper.isPending()) {
+			pendingTimer.stop();
+			
+			remove(pendingLabel);
+			materialize();
+			
+			paperComponent.requestFocus();
+		}
+	}
+}
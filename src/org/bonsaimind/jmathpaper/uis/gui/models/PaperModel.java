@@ -19,46 +19,139 @@
 
 package org.bonsaimind.jmathpaper.uis.gui.models;
 
-import javax.swing.table.DefaultTableModel;
+import java.text.NumberFormat;
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.table.AbstractTableModel;
 
 import org.bonsaimind.jmathpaper.core.EvaluatedExpression;
+import org.bonsaimind.jmathpaper.core.EvaluatorSnapshot;
 import org.bonsaimind.jmathpaper.core.Paper;
 
-public class PaperModel extends DefaultTableModel {
+/**
+ * {@link PaperModel} is a table model which reads from the
+ * {@link EvaluatorSnapshot} of the {@link Paper}, without copying the values.
+ * <p>
+ * The {@link Paper} is modified on the worker thread, so the snapshot is only
+ * taken on {@link #refresh(int)}, {@link #reset()} and
+ * {@link #setPaper(Paper)}, and the model always matches the events which
+ * have been fired, no matter what happens to the {@link Paper} in the
+ * meantime.
+ */
+public class PaperModel extends AbstractTableModel {
+	private static final int COLUMN_EXPRESSION = 1;
+	private static final int COLUMN_ID = 0;
+	private static final int COLUMN_RESULT = 2;
+	private static final int COLUMNS_COUNT = 3;
+	private List<EvaluatedExpression> evaluatedExpressions = Collections.emptyList();
+	private NumberFormat numberFormat = null;
 	private Paper paper = null;
 	
 	public PaperModel() {
-		super(0, 3);
+		super();
+	}
+	
+	@Override
+	public int getColumnCount() {
+		return COLUMNS_COUNT;
+	}
+	
+	/**
+	 * Gets the {@link EvaluatedExpression} which is displayed in the given
+	 * row.
+	 * 
+	 * @param rowIndex The index of the row.
+	 * @return The {@link EvaluatedExpression} of that row.
+	 */
+	public EvaluatedExpression getEvaluatedExpression(int rowIndex) {
+		return evaluatedExpressions.get(rowIndex);
 	}
 	
 	public Paper getPaper() {
 		return paper;
 	}
 	
+	@Override
+	public int getRowCount() {
+		return evaluatedExpressions.size();
+	}
+	
+	@Override
+	public Object getValueAt(int rowIndex, int columnIndex) {
+		EvaluatedExpression evaluatedExpression = getEvaluatedExpression(rowIndex);
+		
+		switch (columnIndex) {
+			case COLUMN_ID:
+				return " " + evaluatedExpression.getId() + " ";
+			
+			case COLUMN_EXPRESSION:
+				return " " + evaluatedExpression.getExpression() + " ";
+			
+			case COLUMN_RESULT:
+				return " " + evaluatedExpression.getFormattedResult(numberFormat) + " ";
+			
+			default:
+				throw new IndexOutOfBoundsException("No such column: " + columnIndex);
+		}
+	}
+	
 	@Override
 	public boolean isCellEditable(int row, int column) {
 		return false;
 	}
 	
-	public void refresh() {
-		while (getRowCount() > 0) {
-			removeRow(0);
+	/**
+	 * Refreshes the model after the expressions of the {@link Paper} have
+	 * changed from the given index on, the rows before it are considered
+	 * unchanged.
+	 * 
+	 * @param firstChangedIndex The index of the first expression which has
+	 *        been added or changed.
+	 */
+	public void refresh(int firstChangedIndex) {
+		int oldRowCount = evaluatedExpressions.size();
+		
+		takeSnapshot();
+		
+		int newRowCount = evaluatedExpressions.size();
+		
+		if (newRowCount > oldRowCount) {
+			fireTableRowsInserted(oldRowCount, newRowCount - 1);
+		} else if (newRowCount < oldRowCount) {
+			fireTableRowsDeleted(newRowCount, oldRowCount - 1);
 		}
 		
-		if (paper != null) {
-			for (EvaluatedExpression evaluatedExpression : paper.getEvaluatedExpressions()) {
-				addRow(new Object[] {
-						" " + evaluatedExpression.getId() + " ",
-						" " + evaluatedExpression.getExpression() + " ",
-						" " + evaluatedExpression.getFormattedResult(paper.getNumberFormat()) + " "
-				});
-			}
+		int updatedRowCount = Math.min(oldRowCount, newRowCount);
+		
+		if (firstChangedIndex < updatedRowCount) {
+			fireTableRowsUpdated(Math.max(0, firstChangedIndex), updatedRowCount - 1);
 		}
 	}
 	
+	/**
+	 * Resets the model after the complete {@link Paper} has changed, for
+	 * example after it has been evaluated again.
+	 */
+	public void reset() {
+		refresh(0);
+	}
+	
 	public void setPaper(Paper paper) {
 		this.paper = paper;
 		
-		refresh();
+		takeSnapshot();
+		
+		fireTableDataChanged();
+	}
+	
+	private void takeSnapshot() {
+		if (paper != null) {
+			evaluatedExpressions = paper.getSnapshot().getEvaluatedExpressions();
+			numberFormat = paper.getNumberFormat();
+		} else {
+			evaluatedExpressions = Collections.emptyList();
+			numberFormat = null;
+		}
 	}
 }
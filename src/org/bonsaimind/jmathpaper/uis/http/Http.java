@@ -0,0 +1,443 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.uis.http;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.bonsaimind.jmathpaper.core.EvaluatedExpression;
+import org.bonsaimind.jmathpaper.core.evaluatedexpressions.NumberEvaluatedExpression;
+import org.bonsaimind.jmathpaper.core.ui.AbstractPapersUi;
+import org.bonsaimind.jmathpaper.core.ui.UiParameters;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * {@link Http} is a UI which answers HTTP requests with JSON.
+ * <p>
+ * Inputs are sent as plain text in the body of a request, one per line, and are
+ * processed either in a new paper ({@code POST /evaluate}) or in a named paper
+ * which is kept in memory ({@code POST /papers/NAME}). The named papers can
+ * also be retrieved ({@code GET /papers/NAME}) and dropped
+ * ({@code DELETE /papers/NAME}). The count of named papers is limited, new ones
+ * are rejected once the limit has been reached.
+ * <p>
+ * Requests are handled by a bounded pool of workers. If all of them are busy
+ * and the queue is full, the requests are handled by the thread accepting the
+ * connections, which stops accepting new ones until then.
+ */
+public class Http extends AbstractPapersUi {
+	/** The address on which is listened by default. */
+	protected static final String DEFAULT_ADDRESS = "127.0.0.1";
+	/** The maximum count of named papers by default. */
+	protected static final int DEFAULT_MAX_PAPERS = 1000;
+	/** The port on which is listened by default. */
+	protected static final int DEFAULT_PORT = 4244;
+	/** The count of requests which can be queued per worker by default. */
+	protected static final int DEFAULT_QUEUE_SIZE_PER_WORKER = 16;
+	/** The path under which the named papers are available. */
+	protected static final String PAPERS_PATH = "/papers/";
+	/** The maximum count of named papers, zero for unlimited. */
+	protected int maxPapers = DEFAULT_MAX_PAPERS;
+	/** The named {@link HttpSession}s. */
+	protected Map<String, HttpSession> namedSessions = new ConcurrentHashMap<>();
+	/** The {@link HttpServer} which answers the requests. */
+	protected HttpServer server = null;
+	/** The {@link ThreadPoolExecutor} which handles the requests. */
+	protected ThreadPoolExecutor workers = null;
+	private CountDownLatch stopped = new CountDownLatch(1);
+	
+	public Http() {
+		super();
+	}
+	
+	@Override
+	public void init(UiParameters uiParameters) throws Exception {
+		super.init(uiParameters);
+		
+		maxPapers = Math.max(0, uiParameters.getInt("maxPapers", DEFAULT_MAX_PAPERS));
+		
+		int workerCount = uiParameters.getInt("workers", Runtime.getRuntime().availableProcessors());
+		
+		workers = new ThreadPoolExecutor(
+				workerCount,
+				workerCount,
+				0,
+				TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(uiParameters.getInt("queueSize", workerCount * DEFAULT_QUEUE_SIZE_PER_WORKER)),
+				Http::createWorkerThread,
+				new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+	
+	@Override
+	public void quit() {
+		if (server != null) {
+			server.stop(0);
+		}
+		
+		stopped.countDown();
+	}
+	
+	@Override
+	public void run() throws Exception {
+		// The headers and the body of a response are written separately, which
+		// together with delayed acknowledgments would stall every response
+		// on a kept-alive connection, unless Nagle's algorithm is disabled.
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", Boolean.TRUE.toString());
+		}
+		
+		server = HttpServer.create(
+				new InetSocketAddress(
+						InetAddress.getByName(uiParameters.getString("address", DEFAULT_ADDRESS)),
+						uiParameters.getInt("port", DEFAULT_PORT)),
+				0);
+		server.createContext("/evaluate", this::handleEvaluate);
+		server.createContext(PAPERS_PATH, this::handlePaper);
+		server.createContext("/", (exchange) -> respondError(exchange, 404, "No such resource: " + exchange.getRequestURI().getPath()));
+		server.setExecutor(workers);
+		server.start();
+		
+		try {
+			stopped.await();
+		} finally {
+			workers.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Creates a new {@link HttpSession} with a new paper.
+	 * 
+	 * @return The new {@link HttpSession}.
+	 */
+	protected HttpSession createSession() {
+		HttpSession session = new HttpSession(help);
+		
+		try {
+			session.init(uiParameters);
+		} catch (Exception e) {
+			throw new IllegalStateException("Failed to create the paper.", e);
+		}
+		
+		session.setDefaultDefinitions(defaultDefinitions);
+		session.new_();
+		
+		return session;
+	}
+	
+	/**
+	 * Gets the named {@link HttpSession} with the given name, or creates it if
+	 * the maximum count of named papers has not been reached yet.
+	 * 
+	 * @param name The name of the paper.
+	 * @return The {@link HttpSession} with the given name, {@code null} if it
+	 *         did not exist and could not be created.
+	 */
+	protected HttpSession getOrCreateNamedSession(String name) {
+		HttpSession session = namedSessions.get(name);
+		
+		if (session == null) {
+			// Locked, so that concurrent requests can not exceed the limit.
+			synchronized (namedSessions) {
+				session = namedSessions.get(name);
+				
+				if (session == null && (maxPapers == 0 || namedSessions.size() < maxPapers)) {
+					session = createSession();
+					namedSessions.put(name, session);
+				}
+			}
+		}
+		
+		return session;
+	}
+	
+	/**
+	 * Handles a request to {@code /evaluate}, which processes the body in a new
+	 * paper.
+	 * 
+	 * @param exchange The {@link HttpExchange} of the request.
+	 * @throws IOException If reading the request or writing the response
+	 *         failed.
+	 */
+	protected void handleEvaluate(HttpExchange exchange) throws IOException {
+		if (!"POST".equals(exchange.getRequestMethod())) {
+			respondMethodNotAllowed(exchange, "POST");
+			return;
+		}
+		
+		respond(exchange, 200, process(null, createSession(), readInputs(exchange)));
+	}
+	
+	/**
+	 * Handles a request to {@code /papers/NAME}.
+	 * 
+	 * @param exchange The {@link HttpExchange} of the request.
+	 * @throws IOException If reading the request or writing the response
+	 *         failed.
+	 */
+	protected void handlePaper(HttpExchange exchange) throws IOException {
+		String name = exchange.getRequestURI().getPath().substring(PAPERS_PATH.length());
+		
+		if (name.isEmpty() || name.contains("/")) {
+			respondError(exchange, 404, "No such resource: " + exchange.getRequestURI().getPath());
+			return;
+		}
+		
+		switch (exchange.getRequestMethod()) {
+			case "DELETE":
+				if (namedSessions.remove(name) != null) {
+					respond(exchange, 200, appendPaper(new StringBuilder("{"), name).append("}"));
+				} else {
+					respondError(exchange, 404, "No such paper: " + name);
+				}
+				break;
+			
+			case "GET":
+				HttpSession session = namedSessions.get(name);
+				
+				if (session != null) {
+					StringBuilder response = appendPaper(new StringBuilder("{"), name);
+					response.append(",\"expressions\":");
+					appendEvaluatedExpressions(response, session.getEvaluatedExpressions());
+					response.append("}");
+					
+					respond(exchange, 200, response);
+				} else {
+					respondError(exchange, 404, "No such paper: " + name);
+				}
+				break;
+			
+			case "POST":
+				List<String> inputs = readInputs(exchange);
+				HttpSession namedSession = getOrCreateNamedSession(name);
+				
+				if (namedSession != null) {
+					respond(exchange, 200, process(name, namedSession, inputs));
+				} else {
+					respondError(exchange, 507, "Too many papers, at most " + maxPapers + " can be kept, drop others first.");
+				}
+				break;
+			
+			default:
+				respondMethodNotAllowed(exchange, "DELETE, GET, POST");
+		}
+	}
+	
+	/**
+	 * Processes the given inputs in the given {@link HttpSession} and creates
+	 * the response with the changed expressions and the timing of every input.
+	 * 
+	 * @param name The name of the paper, can be {@code null}.
+	 * @param session The {@link HttpSession} to use.
+	 * @param inputs The inputs to process.
+	 * @return The response.
+	 */
+	protected StringBuilder process(String name, HttpSession session, List<String> inputs) {
+		long requestStart = System.nanoTime();
+		
+		StringBuilder response = new StringBuilder("{");
+		
+		if (name != null) {
+			appendPaper(response, name).append(",");
+		}
+		
+		response.append("\"results\":[");
+		
+		for (int index = 0; index < inputs.size(); index++) {
+			String input = inputs.get(index);
+			
+			if (index > 0) {
+				response.append(",");
+			}
+			
+			response.append("{\"input\":");
+			appendString(response, input);
+			
+			long inputStart = System.nanoTime();
+			
+			try {
+				List<EvaluatedExpression> evaluatedExpressions = session.processInput(input);
+				
+				appendTime(response, inputStart);
+				response.append(",\"expressions\":");
+				appendEvaluatedExpressions(response, evaluatedExpressions);
+			} catch (Exception e) {
+				appendTime(response, inputStart);
+				response.append(",\"error\":");
+				appendString(response, e.getMessage());
+			}
+			
+			response.append("}");
+		}
+		
+		response.append("]");
+		appendTime(response, requestStart);
+		response.append("}");
+		
+		return response;
+	}
+	
+	/**
+	 * Reads the inputs from the body of the given request, one per line, empty
+	 * lines are skipped.
+	 * 
+	 * @param exchange The {@link HttpExchange} of the request.
+	 * @return The inputs.
+	 * @throws IOException If reading the request failed.
+	 */
+	protected List<String> readInputs(HttpExchange exchange) throws IOException {
+		List<String> inputs = new ArrayList<>();
+		
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+			String line = reader.readLine();
+			
+			while (line != null) {
+				if (!line.trim().isEmpty()) {
+					inputs.add(line);
+				}
+				
+				line = reader.readLine();
+			}
+		}
+		
+		return inputs;
+	}
+	
+	private static final void appendEvaluatedExpressions(StringBuilder json, List<EvaluatedExpression> evaluatedExpressions) {
+		json.append("[");
+		
+		for (int index = 0; index < evaluatedExpressions.size(); index++) {
+			EvaluatedExpression evaluatedExpression = evaluatedExpressions.get(index);
+			
+			if (index > 0) {
+				json.append(",");
+			}
+			
+			json.append("{\"id\":");
+			appendString(json, evaluatedExpression.getId());
+			json.append(",\"expression\":");
+			appendString(json, evaluatedExpression.getExpression());
+			json.append(",\"result\":");
+			
+			BigDecimal result = evaluatedExpression.getResult();
+			
+			if (result != null) {
+				// As string, to not lose any precision in the client.
+				appendString(json, result.toPlainString());
+			} else {
+				json.append("null");
+			}
+			
+			if (evaluatedExpression instanceof NumberEvaluatedExpression
+					&& !((NumberEvaluatedExpression)evaluatedExpression).getUnit().isOne()) {
+				json.append(",\"unit\":");
+				appendString(json, ((NumberEvaluatedExpression)evaluatedExpression).getUnit().toString());
+			}
+			
+			json.append("}");
+		}
+		
+		json.append("]");
+	}
+	
+	private static final StringBuilder appendPaper(StringBuilder json, String name) {
+		json.append("\"paper\":");
+		appendString(json, name);
+		
+		return json;
+	}
+	
+	private static final void appendString(StringBuilder json, String value) {
+		if (value == null) {
+			json.append("null");
+			return;
+		}
+		
+		json.append('"');
+		
+		for (int index = 0; index < value.length(); index++) {
+			char character = value.charAt(index);
+			
+			if (character == '"' || character == '\\') {
+				json.append('\\').append(character);
+			} else if (character < ' ') {
+				json.append(String.format("\\u%04x", Integer.valueOf(character)));
+			} else {
+				json.append(character);
+			}
+		}
+		
+		json.append('"');
+	}
+	
+	private static final void appendTime(StringBuilder json, long start) {
+		json.append(",\"time\":");
+		json.append(String.format(Locale.ROOT, "%.3f", Double.valueOf((System.nanoTime() - start) / 1000000.0d)));
+	}
+	
+	private static final Thread createWorkerThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, "jMathPaper HTTP Worker");
+		thread.setDaemon(true);
+		
+		return thread;
+	}
+	
+	private static final void respond(HttpExchange exchange, int status, CharSequence json) throws IOException {
+		byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+		
+		// With a known length, the connection can be kept alive.
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+		exchange.sendResponseHeaders(status, body.length);
+		
+		try (OutputStream responseBody = exchange.getResponseBody()) {
+			responseBody.write(body);
+		}
+	}
+	
+	private static final void respondError(HttpExchange exchange, int status, String message) throws IOException {
+		StringBuilder json = new StringBuilder("{\"error\":");
+		appendString(json, message);
+		json.append("}");
+		
+		respond(exchange, status, json);
+	}
+	
+	private static final void respondMethodNotAllowed(HttpExchange exchange, String allowedMethods) throws IOException {
+		exchange.getResponseHeaders().set("Allow", allowedMethods);
+		
+		respondError(exchange, 405, "Method not allowed: " + exchange.getRequestMethod());
+	}
+}
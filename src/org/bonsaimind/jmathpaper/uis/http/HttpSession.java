@@ -0,0 +1,151 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.uis.http;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.bonsaimind.jmathpaper.core.EvaluatedExpression;
+import org.bonsaimind.jmathpaper.core.EvaluationLimits;
+import org.bonsaimind.jmathpaper.core.InvalidExpressionException;
+import org.bonsaimind.jmathpaper.core.support.Topic;
+import org.bonsaimind.jmathpaper.core.ui.AbstractPapersUi;
+import org.bonsaimind.jmathpaper.core.ui.Command;
+import org.bonsaimind.jmathpaper.core.ui.CommandExecutionException;
+
+/**
+ * {@link HttpSession} holds a single paper of the {@link Http} UI.
+ * <p>
+ * Every input is processed as if it had been entered by the user, except that
+ * neither files nor the clipboard can be accessed.
+ * {@link #processInput(String)} and {@link #getEvaluatedExpressions()} are
+ * synchronized, so the same paper can be used by multiple requests at once,
+ * all other methods must only be used from a single thread.
+ */
+public class HttpSession extends AbstractPapersUi {
+	private int firstChangedIndex = Integer.MAX_VALUE;
+	
+	/**
+	 * Creates a new instance of {@link HttpSession}.
+	 * 
+	 * @param help The help {@link Topic} of the {@link Http} UI, which is
+	 *        shared by all sessions.
+	 */
+	public HttpSession(Topic help) {
+		super();
+		
+		this.help = help;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The {@link Command#COPY} command is rejected, as the clipboard of the
+	 * host can not be accessed.
+	 */
+	@Override
+	public void execute(Command command, String... parameters) throws CommandExecutionException {
+		if (command == Command.COPY) {
+			throw new CommandExecutionException("The clipboard can not be accessed over HTTP.");
+		}
+		
+		super.execute(command, parameters);
+	}
+	
+	/**
+	 * Gets a copy of all {@link EvaluatedExpression}s of the paper.
+	 * 
+	 * @return A copy of all {@link EvaluatedExpression}s of the paper.
+	 */
+	public synchronized List<EvaluatedExpression> getEvaluatedExpressions() {
+		return new ArrayList<>(paper.getEvaluatedExpressions());
+	}
+	
+	@Override
+	public void open(Path file) {
+		throw new UnsupportedOperationException("Files can not be accessed over HTTP.");
+	}
+	
+	/**
+	 * Processes the given input and returns the {@link EvaluatedExpression}s
+	 * which have been changed by it.
+	 * 
+	 * @param input The input to process.
+	 * @return The {@link EvaluatedExpression}s which have been changed, in
+	 *         order, never {@code null}.
+	 * @throws CommandExecutionException If the input was a command and it
+	 *         failed.
+	 * @throws InvalidExpressionException If the input was an invalid
+	 *         expression.
+	 */
+	public synchronized List<EvaluatedExpression> processInput(String input) throws CommandExecutionException, InvalidExpressionException {
+		firstChangedIndex = Integer.MAX_VALUE;
+		
+		process(input);
+		
+		List<EvaluatedExpression> evaluatedExpressions = paper.getEvaluatedExpressions();
+		
+		if (firstChangedIndex >= evaluatedExpressions.size()) {
+			return Collections.emptyList();
+		}
+		
+		return new ArrayList<>(evaluatedExpressions.subList(firstChangedIndex, evaluatedExpressions.size()));
+	}
+	
+	@Override
+	public void quit() {
+		// Nothing to do here.
+	}
+	
+	@Override
+	public void run() throws Exception {
+		// Nothing to do here.
+	}
+	
+	@Override
+	public void save() {
+		throw new UnsupportedOperationException("Files can not be accessed over HTTP.");
+	}
+	
+	@Override
+	public void save(Path file) {
+		throw new UnsupportedOperationException("Files can not be accessed over HTTP.");
+	}
+	
+	@Override
+	protected void currentPaperHasBeenModified(int firstChangedIndex) {
+		super.currentPaperHasBeenModified(firstChangedIndex);
+		
+		this.firstChangedIndex = Math.min(this.firstChangedIndex, firstChangedIndex);
+	}
+	
+	/**
+	 * Limits the resources by default, as the input might come from anyone.
+	 * 
+	 * @return The {@link EvaluationLimits#createServiceDefaults() defaults for
+	 *         services}.
+	 */
+	@Override
+	protected EvaluationLimits getDefaultEvaluationLimits() {
+		return EvaluationLimits.createServiceDefaults();
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.uis.server;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.bonsaimind.jmathpaper.core.ui.AbstractPapersUi;
+import org.bonsaimind.jmathpaper.core.ui.UiParameters;
+
+/**
+ * {@link Server} is a UI which listens on a local TCP socket and serves every
+ * connection as its own {@link ServerSession}, with its own paper.
+ * <p>
+ * All sessions share the same default definitions, which are only read.
+ */
+public class Server extends AbstractPapersUi {
+	/** The address on which is listened by default. */
+	protected static final String DEFAULT_ADDRESS = "127.0.0.1";
+	/** The port on which is listened by default. */
+	protected static final int DEFAULT_PORT = 4242;
+	/** The {@link ExecutorService} on which the sessions are run. */
+	protected ExecutorService sessionExecutor = null;
+	/** The {@link ServerSocket} on which is listened. */
+	protected volatile ServerSocket serverSocket = null;
+	private volatile boolean running = true;
+	
+	public Server() {
+		super();
+	}
+	
+	@Override
+	public void init(UiParameters uiParameters) throws Exception {
+		super.init(uiParameters);
+		
+		sessionExecutor = createSessionExecutor();
+	}
+	
+	@Override
+	public void quit() {
+		running = false;
+		
+		if (serverSocket != null) {
+			try {
+				serverSocket.close();
+			} catch (IOException e) {
+				// Nothing we can do, we are quitting anyway.
+			}
+		}
+	}
+	
+	@Override
+	public void run() throws Exception {
+		try (ServerSocket serverSocket = new ServerSocket(
+				getPort(),
+				0,
+				InetAddress.getByName(uiParameters.getString("address", DEFAULT_ADDRESS)))) {
+			this.serverSocket = serverSocket;
+			
+			while (running) {
+				try {
+					Socket socket = serverSocket.accept();
+					
+					sessionExecutor.execute(() -> serve(socket));
+				} catch (SocketException e) {
+					// The socket has been closed by quitting.
+					if (running) {
+						throw e;
+					}
+				}
+			}
+		} finally {
+			sessionExecutor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Creates the session which serves a single connection.
+	 * 
+	 * @param input The {@link InputStream} of the connection.
+	 * @param output The {@link PrintStream} of the connection.
+	 * @return The session which serves the connection.
+	 */
+	protected AbstractPapersUi createSession(InputStream input, PrintStream output) {
+		return new ServerSession(input, output, help);
+	}
+	
+	/**
+	 * Creates the {@link ExecutorService} on which the sessions are run.
+	 * <p>
+	 * Every session blocks on its connection most of the time, so virtual
+	 * threads are used if the runtime supports them. Otherwise every session
+	 * gets its own daemon thread.
+	 * 
+	 * @return The {@link ExecutorService} on which the sessions are run.
+	 */
+	protected ExecutorService createSessionExecutor() {
+		try {
+			// Looked up by reflection, as virtual threads are only available
+			// since Java 21.
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool(Server::createSessionThread);
+		}
+	}
+	
+	/**
+	 * Gets the port on which is listened.
+	 * 
+	 * @return The port on which is listened.
+	 */
+	protected int getPort() {
+		return uiParameters.getInt("port", DEFAULT_PORT);
+	}
+	
+	/**
+	 * Serves the given connection with a
+	 * {@link #createSession(InputStream, PrintStream) session} until either
+	 * side closes it.
+	 * 
+	 * @param socket The {@link Socket} of the connection.
+	 */
+	protected void serve(Socket socket) {
+		try (Socket connection = socket) {
+			AbstractPapersUi session = createSession(
+					connection.getInputStream(),
+					new PrintStream(new BufferedOutputStream(connection.getOutputStream()), false, StandardCharsets.UTF_8.name()));
+			session.init(uiParameters);
+			session.setDefaultDefinitions(defaultDefinitions);
+			session.run();
+		} catch (Exception e) {
+			// The connection has been lost, nothing else to do.
+		}
+	}
+	
+	private static final Thread createSessionThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, "jMathPaper Session");
+		thread.setDaemon(true);
+		
+		return thread;
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.uis.server;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+
+import org.bonsaimind.jmathpaper.core.support.Topic;
+import org.bonsaimind.jmathpaper.core.ui.Command;
+import org.bonsaimind.jmathpaper.core.ui.CommandExecutionException;
+import org.bonsaimind.jmathpaper.uis.service.Service;
+
+/**
+ * {@link ServerSession} is a {@link Service} which serves a single connection
+ * of a {@link Server}.
+ * <p>
+ * Every input is processed as if it had been entered by the user, except that
+ * neither files nor the clipboard can be accessed.
+ */
+public class ServerSession extends Service {
+	/**
+	 * Creates a new instance of {@link ServerSession}.
+	 * 
+	 * @param input The {@link InputStream} of the connection.
+	 * @param output The {@link PrintStream} of the connection.
+	 * @param help The help {@link Topic} of the {@link Server}, which is shared
+	 *        by all sessions.
+	 */
+	public ServerSession(InputStream input, PrintStream output, Topic help) {
+		super(input, output);
+		
+		this.help = help;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The {@link Command#COPY} command is rejected, as the clipboard of the
+	 * host can not be accessed.
+	 */
+	@Override
+	public void execute(Command command, String... parameters) throws CommandExecutionException {
+		if (command == Command.COPY) {
+			throw new CommandExecutionException("The clipboard can not be accessed over the network.");
+		}
+		
+		super.execute(command, parameters);
+	}
+	
+	@Override
+	public void open(Path file) {
+		throw new UnsupportedOperationException("Files can not be accessed over the network.");
+	}
+	
+	@Override
+	public void run() throws Exception {
+		// Every connection starts with a new paper.
+		if (paper == null) {
+			new_();
+		}
+		
+		super.run();
+	}
+	
+	@Override
+	public void save() {
+		throw new UnsupportedOperationException("Files can not be accessed over the network.");
+	}
+	
+	@Override
+	public void save(Path file) {
+		throw new UnsupportedOperationException("Files can not be accessed over the network.");
+	}
+}
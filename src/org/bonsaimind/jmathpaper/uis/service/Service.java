@@ -1,17 +1,61 @@
 
 package org.bonsaimind.jmathpaper.uis.service;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.bonsaimind.jmathpaper.core.EvaluatedExpression;
+import org.bonsaimind.jmathpaper.core.EvaluationLimits;
+import org.bonsaimind.jmathpaper.core.support.Topic;
 import org.bonsaimind.jmathpaper.core.ui.AbstractPapersUi;
+import org.bonsaimind.jmathpaper.core.ui.UiParameters;
 
 public class Service extends AbstractPapersUi {
+	/** The size of the buffers used in batch mode. */
+	protected static final int BATCH_BUFFER_SIZE = 64 * 1024;
+	/** The status of a framed response to a failed request. */
+	protected static final String FRAME_STATUS_ERROR = "error";
+	/** The status of a framed response to a successfully processed request. */
+	protected static final String FRAME_STATUS_OK = "ok";
+	protected InputStream input = null;
+	protected PrintStream output = null;
+	private int firstChangedIndex = Integer.MAX_VALUE;
+	/**
+	 * The lines which are printed while a framed request is processed, they
+	 * are printed as part of the response. {@code null} if there is none.
+	 */
+	private List<String> responseLines = null;
 	private volatile boolean running = true;
 	
 	public Service() {
+		this(System.in, System.out);
+	}
+	
+	public Service(InputStream input, PrintStream output) {
 		super();
+		
+		this.input = input;
+		this.output = output;
+	}
+	
+	@Override
+	public void init(UiParameters uiParameters) throws Exception {
+		super.init(uiParameters);
+		
+		if (uiParameters.getBoolean("isBatch") && output == System.out) {
+			// System.out is flushed with every line, so it is bypassed.
+			output = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), BATCH_BUFFER_SIZE), false);
+		}
 	}
 	
 	@Override
@@ -21,25 +65,206 @@ public class Service extends AbstractPapersUi {
 	
 	@Override
 	public void run() throws Exception {
-		try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in))) {
+		boolean batch = uiParameters.getBoolean("isBatch");
+		int flushInterval = uiParameters.getInt("flushInterval", 0);
+		int linesSinceFlush = 0;
+		
+		try (BufferedReader reader = createReader(batch)) {
 			while (running) {
-				process(reader.readLine());
+				String line = reader.readLine();
+				
+				if (line != null) {
+					if (uiParameters.getBoolean("isFramed")) {
+						processFramed(line);
+					} else {
+						processUnframed(line);
+					}
+					
+					linesSinceFlush++;
+					
+					// In batch mode, the output is only flushed after the given
+					// count of lines or when all available input has been
+					// processed.
+					if (!batch
+							|| (flushInterval > 0 && linesSinceFlush >= flushInterval)
+							|| !reader.ready()) {
+						output.flush();
+						linesSinceFlush = 0;
+					}
+				} else {
+					running = false;
+				}
 			}
+		} finally {
+			output.flush();
+		}
+	}
+	
+	@Override
+	protected void currentPaperHasBeenModified(int firstChangedIndex) {
+		if (uiParameters.getBoolean("isFramed")) {
+			// The changes are printed with the response to the request.
+			this.firstChangedIndex = Math.min(this.firstChangedIndex, firstChangedIndex);
+			return;
+		}
+		
+		List<EvaluatedExpression> evaluatedExpressions = paper.getEvaluatedExpressions();
+		
+		// If only the notes have changed, the last expression is printed.
+		int firstIndex = Math.max(0, Math.min(firstChangedIndex, evaluatedExpressions.size() - 1));
+		
+		for (int index = firstIndex; index < evaluatedExpressions.size(); index++) {
+			printEvaluatedExpression(evaluatedExpressions.get(index));
 		}
 	}
 	
+	/**
+	 * Limits the resources by default, as the input might come from anyone.
+	 * 
+	 * @return The {@link EvaluationLimits#createServiceDefaults() defaults for
+	 *         services}.
+	 */
+	@Override
+	protected EvaluationLimits getDefaultEvaluationLimits() {
+		return EvaluationLimits.createServiceDefaults();
+	}
+	
+	@Override
+	protected void showHelp(Topic topic) {
+		printMessage(getHelpText(topic));
+	}
+	
 	@Override
-	protected void currentPaperHasBeenModified() {
-		EvaluatedExpression evaluatedExpression = paper.getEvaluatedExpressions().get(paper.getEvaluatedExpressions().size() - 1);
+	protected void showSearchResults(String term, List<EvaluatedExpression> evaluatedExpressions) {
+		for (EvaluatedExpression evaluatedExpression : evaluatedExpressions) {
+			printMessage(formatEvaluatedExpression(evaluatedExpression));
+		}
 		
+		printMessage(getSearchResultsSummary(evaluatedExpressions));
+	}
+	
+	private BufferedReader createReader(boolean batch) {
+		if (batch) {
+			return new BufferedReader(new InputStreamReader(new BufferedInputStream(input, BATCH_BUFFER_SIZE), StandardCharsets.UTF_8), BATCH_BUFFER_SIZE);
+		} else {
+			return new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+		}
+	}
+	
+	private String formatEvaluatedExpression(EvaluatedExpression evaluatedExpression) {
 		if (uiParameters.getBoolean("isPrintResultOnly")) {
-			System.out.print(evaluatedExpression.getFormattedResult(paper.getNumberFormat()));
+			return evaluatedExpression.getFormattedResult(paper.getNumberFormat());
 		} else {
-			System.out.print(paper.format(evaluatedExpression));
+			return paper.format(evaluatedExpression);
 		}
+	}
+	
+	private void printEvaluatedExpression(EvaluatedExpression evaluatedExpression) {
+		output.print(formatEvaluatedExpression(evaluatedExpression));
 		
 		if (!uiParameters.getBoolean("isNoNewline")) {
-			System.out.println();
+			output.println();
+		}
+	}
+	
+	/**
+	 * Prints the given message, or adds its lines to the response if a framed
+	 * request is being processed.
+	 * 
+	 * @param message The message to print.
+	 */
+	private void printMessage(String message) {
+		if (responseLines != null) {
+			responseLines.addAll(Arrays.asList(message.split("\\r?\\n")));
+		} else {
+			output.println(message);
+		}
+	}
+	
+	/**
+	 * Processes the given framed request and prints the framed response.
+	 * <p>
+	 * A request consists of the ID, which is chosen by the client, followed by
+	 * a space and the input. The response starts with a line consisting of the
+	 * ID of the request, the status, the count of the following lines and, if
+	 * failed, the reason. The following lines are the expressions which have
+	 * been changed, followed by the messages, like help or search results.
+	 * This allows clients to send requests without waiting for the responses
+	 * and to still match them afterwards.
+	 * <p>
+	 * If an input with multiple statements fails, the statements before the
+	 * failing one stay applied, the expressions they changed are part of the
+	 * failed response.
+	 * 
+	 * @param line The framed request.
+	 */
+	private void processFramed(String line) {
+		int separatorIndex = line.indexOf(' ');
+		String id = line;
+		String input = "";
+		
+		if (separatorIndex >= 0) {
+			id = line.substring(0, separatorIndex);
+			input = line.substring(separatorIndex + 1);
+		}
+		
+		firstChangedIndex = Integer.MAX_VALUE;
+		responseLines = new ArrayList<>();
+		
+		String errorMessage = null;
+		
+		try {
+			process(input);
+		} catch (Exception e) {
+			// The reason must not break the framing.
+			errorMessage = String.valueOf(e.getMessage()).replace('\r', ' ').replace('\n', ' ');
+		}
+		
+		List<String> messageLines = responseLines;
+		responseLines = null;
+		
+		List<String> lines = new ArrayList<>();
+		
+		if (paper != null) {
+			List<EvaluatedExpression> evaluatedExpressions = paper.getEvaluatedExpressions();
+			
+			for (int index = Math.min(firstChangedIndex, evaluatedExpressions.size()); index < evaluatedExpressions.size(); index++) {
+				lines.add(formatEvaluatedExpression(evaluatedExpressions.get(index)));
+			}
+		}
+		
+		lines.addAll(messageLines);
+		
+		output.print(id);
+		output.print(" ");
+		
+		if (errorMessage == null) {
+			output.print(FRAME_STATUS_OK);
+			output.print(" ");
+			output.print(lines.size());
+		} else {
+			output.print(FRAME_STATUS_ERROR);
+			output.print(" ");
+			output.print(lines.size());
+			output.print(" ");
+			output.print(errorMessage);
+		}
+		
+		output.println();
+		
+		for (String responseLine : lines) {
+			output.print(responseLine);
+			output.println();
+		}
+	}
+	
+	private void processUnframed(String line) {
+		try {
+			process(line);
+		} catch (Exception e) {
+			output.print("Error: ");
+			output.print(e.getMessage());
+			output.println();
 		}
 	}
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.uis.tui;
+
+import org.bonsaimind.jmathpaper.core.Paper;
+import org.bonsaimind.jmathpaper.core.ui.Ui;
+import org.jline.reader.impl.LineReaderImpl;
+import org.jline.terminal.Terminal;
+
+/**
+ * {@link PaperSearchingLineReader} is a {@link LineReaderImpl} which serves
+ * the history search from the index of the current {@link Paper} instead of
+ * iterating over the whole history.
+ * <p>
+ * Case insensitive searches are not indexed and fall back to the default
+ * implementation.
+ */
+public class PaperSearchingLineReader extends LineReaderImpl {
+	private Ui ui = null;
+	
+	public PaperSearchingLineReader(Terminal terminal, Ui ui) {
+		super(terminal, null, null);
+		
+		this.ui = ui;
+	}
+	
+	@Override
+	public int searchBackwards(String searchTerm, int startIndex, boolean startsWith) {
+		if (isSet(Option.CASE_INSENSITIVE_SEARCH)) {
+			return super.searchBackwards(searchTerm, startIndex, startsWith);
+		}
+		
+		Paper paper = ui.getPaper();
+		
+		if (paper == null) {
+			return -1;
+		}
+		
+		int[] indexes = paper.find(searchTerm);
+		
+		for (int position = indexes.length - 1; position >= 0; position--) {
+			int index = indexes[position];
+			
+			if (index < startIndex && matches(paper, index, searchTerm, startsWith)) {
+				return index;
+			}
+		}
+		
+		return -1;
+	}
+	
+	@Override
+	public int searchForwards(String searchTerm, int startIndex, boolean startsWith) {
+		if (isSet(Option.CASE_INSENSITIVE_SEARCH)) {
+			return super.searchForwards(searchTerm, startIndex, startsWith);
+		}
+		
+		Paper paper = ui.getPaper();
+		
+		if (paper == null) {
+			return -1;
+		}
+		
+		if (startIndex > history.last()) {
+			startIndex = history.last();
+		}
+		
+		// The default implementation skips the current entry while a search
+		// is in progress.
+		if (searchIndex != -1) {
+			startIndex = startIndex + 1;
+		}
+		
+		for (int index : paper.find(searchTerm)) {
+			if (index >= startIndex && matches(paper, index, searchTerm, startsWith)) {
+				return index;
+			}
+		}
+		
+		return -1;
+	}
+	
+	private static final boolean matches(Paper paper, int index, String searchTerm, boolean startsWith) {
+		return !startsWith || paper.getEvaluatedExpressions().get(index).getExpression().startsWith(searchTerm);
+	}
+}
@@ -20,21 +20,48 @@
 package org.bonsaimind.jmathpaper.uis.tui;
 
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.bonsaimind.jmathpaper.core.EvaluatedExpression;
 import org.bonsaimind.jmathpaper.core.InvalidExpressionException;
 import org.bonsaimind.jmathpaper.core.Paper;
+import org.bonsaimind.jmathpaper.core.support.Topic;
 import org.bonsaimind.jmathpaper.core.ui.AbstractPapersUi;
-import org.jline.reader.LineReader;
 import org.jline.reader.LineReader.Option;
-import org.jline.reader.LineReaderBuilder;
 import org.jline.reader.UserInterruptException;
 import org.jline.terminal.Terminal;
 import org.jline.terminal.TerminalBuilder;
+import org.jline.utils.InfoCmp.Capability;
 
+/**
+ * {@link Tui} is a simple line based UI, which prints the paper to the
+ * terminal and reads the input line by line.
+ * <p>
+ * Only the last lines of the paper which fit into the terminal are printed.
+ * The printed lines are remembered, so that after the paper has been reset
+ * (for example by changing the precision) only the lines which have actually
+ * changed are printed again, in place, as long as they are still on the
+ * screen.
+ */
 public class Tui extends AbstractPapersUi {
+	/**
+	 * The formatted lines of the {@link #displayedPaper} which are currently
+	 * displayed at the bottom of the terminal.
+	 */
+	protected List<String> displayedLines = new ArrayList<>();
+	/** The index of the first of the {@link #displayedLines} in the paper. */
+	protected int displayedLinesStart = 0;
+	/**
+	 * The {@link Paper} of which the {@link #displayedLines} are, {@code null}
+	 * if the content of the terminal is not known.
+	 */
+	protected Paper displayedPaper = null;
 	protected boolean paperHasChanged = false;
+	/** The count of rows which have been printed after the displayed lines. */
+	protected int rowsBelowDisplayedLines = 0;
 	protected boolean running = true;
+	protected Terminal terminal = null;
 	protected PrintWriter writer = null;
 	
 	public Tui() {
@@ -49,16 +76,16 @@ public class Tui extends AbstractPapersUi {
 	@Override
 	public void run() throws Exception {
 		try (Terminal terminal = TerminalBuilder.terminal()) {
+			this.terminal = terminal;
 			writer = terminal.writer();
 			
 			printPaper();
 			terminal.flush();
 			
-			LineReader reader = LineReaderBuilder.builder()
-					.history(new PaperBasedHistory(this))
-					.option(Option.ERASE_LINE_ON_FINISH, true)
-					.option(Option.DELAY_LINE_WRAP, true)
-					.build();
+			PaperSearchingLineReader reader = new PaperSearchingLineReader(terminal, this);
+			reader.setHistory(new PaperBasedHistory(this));
+			reader.option(Option.ERASE_LINE_ON_FINISH, true);
+			reader.option(Option.DELAY_LINE_WRAP, true);
 			
 			String previousValue = null;
 			
@@ -78,19 +105,16 @@ public class Tui extends AbstractPapersUi {
 							try {
 								evaluate(input);
 							} catch (InvalidExpressionException e) {
-								writer.write(e.getCause().getMessage());
+								printMessage(e.getCause().getMessage());
 								
 								previousValue = input;
 							}
-							
-							writer.write("\n");
 						}
 					}
 				} catch (UserInterruptException e) {
 					running = false;
 				} catch (Exception e) {
-					writer.write(e.getMessage());
-					writer.write("\n");
+					printMessage(e.getMessage());
 				}
 				
 				terminal.flush();
@@ -99,19 +123,56 @@ public class Tui extends AbstractPapersUi {
 	}
 	
 	@Override
-	protected void currentPaperHasBeenModified() {
-		EvaluatedExpression evaluatedExpression = paper.getEvaluatedExpressions().get(paper.getEvaluatedExpressions().size() - 1);
+	protected void currentPaperHasBeenModified(int firstChangedIndex) {
+		List<EvaluatedExpression> evaluatedExpressions = paper.getEvaluatedExpressions();
 		
-		writer.write(evaluatedExpression.format(
-				paper.getIdColumnSize(),
-				paper.getExpressionColumnSize(),
-				paper.getResultColumnSize(),
-				paper.getNumberFormat()));
+		if (evaluatedExpressions.isEmpty()) {
+			printPaper();
+			return;
+		}
+		
+		if (firstChangedIndex >= evaluatedExpressions.size()) {
+			// Nothing has been added, for example only the notes have been
+			// edited.
+			return;
+		}
+		
+		if (displayedPaper == paper
+				&& firstChangedIndex < displayedLinesStart + displayedLines.size()) {
+			// Lines which are displayed have been replaced, for example
+			// because the paper has been cleared.
+			printPaper();
+			return;
+		}
+		
+		for (int index = firstChangedIndex; index < evaluatedExpressions.size(); index++) {
+			String line = format(evaluatedExpressions.get(index));
+			
+			if (displayedPaper == paper
+					&& rowsBelowDisplayedLines == 0
+					&& displayedLinesStart + displayedLines.size() == index) {
+				displayedLines.add(line);
+				
+				int availableRows = getAvailableRows();
+				
+				while (availableRows > 0 && displayedLines.size() > availableRows) {
+					displayedLines.remove(0);
+					displayedLinesStart++;
+				}
+			} else {
+				displayedPaper = null;
+			}
+			
+			writer.write(line);
+			writer.write("\n");
+		}
 	}
 	
 	@Override
 	protected void currentPaperHasBeenReset() {
-		printPaper();
+		if (!updateDisplayedLines()) {
+			printPaper();
+		}
 	}
 	
 	@Override
@@ -119,10 +180,63 @@ public class Tui extends AbstractPapersUi {
 		printPaper();
 	}
 	
+	protected String format(EvaluatedExpression evaluatedExpression) {
+		return evaluatedExpression.format(
+				paper.getIdColumnSize(),
+				paper.getExpressionColumnSize(),
+				paper.getResultColumnSize(),
+				paper.getNumberFormat());
+	}
+	
+	/**
+	 * Gets the count of rows which are available for the lines of the paper,
+	 * {@code 0} if the size of the terminal is not known.
+	 * 
+	 * @return The count of rows which are available for the lines of the
+	 *         paper.
+	 */
+	protected int getAvailableRows() {
+		if (terminal == null || terminal.getHeight() <= 0) {
+			return 0;
+		}
+		
+		// One row is taken by the prompt.
+		return Math.max(1, terminal.getHeight() - 1);
+	}
+	
+	/**
+	 * Gets the count of rows the given line takes in the terminal.
+	 * 
+	 * @param line The line.
+	 * @return The count of rows the given line takes in the terminal.
+	 */
+	protected int getRows(String line) {
+		if (terminal == null || terminal.getWidth() <= 0 || line.isEmpty()) {
+			return 1;
+		}
+		
+		return (line.length() + terminal.getWidth() - 1) / terminal.getWidth();
+	}
+	
+	protected void printMessage(String message) {
+		String text = String.valueOf(message);
+		
+		writer.write(text);
+		writer.write("\n");
+		
+		for (String line : text.split("\n", -1)) {
+			rowsBelowDisplayedLines = rowsBelowDisplayedLines + getRows(line);
+		}
+	}
+	
 	protected void printPaper() {
+		displayedPaper = null;
+		
 		if (writer != null) {
 			writer.write("------------------------------------------------------------\n");
 			
+			int headerRows = 2;
+			
 			for (Paper paper : papers) {
 				if (paper == this.paper) {
 					writer.write("> ");
@@ -131,6 +245,8 @@ public class Tui extends AbstractPapersUi {
 				writer.write(getLongPaperTitle(paper));
 				
 				writer.write("\n");
+				
+				headerRows++;
 			}
 			
 			writer.write("\n");
@@ -140,17 +256,127 @@ public class Tui extends AbstractPapersUi {
 					writer.write(paper.getNotes());
 					writer.write("\n");
 					writer.write("\n");
+					
+					headerRows = headerRows + paper.getNotes().split("\n", -1).length + 1;
 				}
 				
-				for (EvaluatedExpression evaluatedExpression : paper.getEvaluatedExpressions()) {
-					writer.write(evaluatedExpression.format(
-							paper.getIdColumnSize(),
-							paper.getExpressionColumnSize(),
-							paper.getResultColumnSize(),
-							paper.getNumberFormat()));
+				List<EvaluatedExpression> evaluatedExpressions = paper.getEvaluatedExpressions();
+				
+				int start = 0;
+				int availableRows = getAvailableRows();
+				
+				if (availableRows > 0) {
+					// Only print the lines which fit below the header, but at
+					// least a few so that the paper is not hidden by the header.
+					int availableLines = Math.max(Math.min(availableRows, 5), availableRows - headerRows - 1);
+					
+					if (evaluatedExpressions.size() > availableLines) {
+						start = evaluatedExpressions.size() - availableLines;
+						
+						writer.write("[" + start + " more lines]\n");
+					}
+				}
+				
+				displayedLines.clear();
+				
+				for (int index = start; index < evaluatedExpressions.size(); index++) {
+					String line = format(evaluatedExpressions.get(index));
+					
+					writer.write(line);
 					writer.write("\n");
+					
+					displayedLines.add(line);
 				}
+				
+				displayedLinesStart = start;
+				displayedPaper = paper;
+				rowsBelowDisplayedLines = 0;
+			}
+		}
+	}
+	
+	@Override
+	protected void showHelp(Topic topic) {
+		// The help is printed directly, so the content of the terminal is not
+		// known anymore.
+		displayedPaper = null;
+		
+		super.showHelp(topic);
+	}
+	
+	@Override
+	protected void showSearchResults(String term, List<EvaluatedExpression> evaluatedExpressions) {
+		for (EvaluatedExpression evaluatedExpression : evaluatedExpressions) {
+			printMessage(format(evaluatedExpression));
+		}
+		
+		printMessage(getSearchResultsSummary(evaluatedExpressions));
+	}
+	
+	/**
+	 * Updates the displayed lines in place, by moving the cursor to every line
+	 * which has changed and printing it again.
+	 * 
+	 * @return {@code true} if the displayed lines could be updated,
+	 *         {@code false} if the paper needs to be printed again.
+	 */
+	protected boolean updateDisplayedLines() {
+		if (writer == null
+				|| paper == null
+				|| displayedPaper != paper
+				|| displayedLinesStart + displayedLines.size() != paper.getEvaluatedExpressions().size()
+				|| terminal.getStringCapability(Capability.carriage_return) == null
+				|| terminal.getStringCapability(Capability.clr_eol) == null
+				|| terminal.getStringCapability(Capability.parm_down_cursor) == null
+				|| terminal.getStringCapability(Capability.parm_up_cursor) == null) {
+			return false;
+		}
+		
+		List<String> newLines = new ArrayList<>(displayedLines.size());
+		int displayedRows = rowsBelowDisplayedLines;
+		
+		for (int index = 0; index < displayedLines.size(); index++) {
+			String newLine = format(paper.getEvaluatedExpressions().get(displayedLinesStart + index));
+			String oldLine = displayedLines.get(index);
+			
+			// Lines spanning multiple rows cannot be replaced reliably.
+			if (!newLine.equals(oldLine) && (getRows(newLine) != 1 || getRows(oldLine) != 1)) {
+				return false;
 			}
+			
+			newLines.add(newLine);
+			displayedRows = displayedRows + getRows(oldLine);
 		}
+		
+		// The lines must still be completely on the screen.
+		if (displayedRows > getAvailableRows()) {
+			return false;
+		}
+		
+		// The cursor is at the start of the row below everything that has
+		// been printed.
+		int distance = displayedRows;
+		
+		for (int index = 0; index < displayedLines.size(); index++) {
+			String oldLine = displayedLines.get(index);
+			String newLine = newLines.get(index);
+			
+			if (!newLine.equals(oldLine)) {
+				Integer rows = Integer.valueOf(distance);
+				
+				terminal.puts(Capability.parm_up_cursor, rows);
+				terminal.puts(Capability.carriage_return);
+				terminal.puts(Capability.clr_eol);
+				writer.write(newLine);
+				terminal.puts(Capability.carriage_return);
+				terminal.puts(Capability.parm_down_cursor, rows);
+			}
+			
+			distance = distance - getRows(oldLine);
+		}
+		
+		displayedLines = newLines;
+		
+		return true;
 	}
 }
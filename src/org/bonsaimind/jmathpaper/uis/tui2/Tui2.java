@@ -21,6 +21,8 @@ package org.bonsaimind.jmathpaper.uis.tui2;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
 
 import org.bonsaimind.jmathpaper.core.EvaluatedExpression;
 import org.bonsaimind.jmathpaper.core.Paper;
@@ -28,6 +30,7 @@ import org.bonsaimind.jmathpaper.core.ui.AbstractPapersUi;
 import org.bonsaimind.jmathpaper.core.ui.UiParameters;
 import org.bonsaimind.jmathpaper.uis.tui2.components.EventExtendedTextBox;
 import org.bonsaimind.jmathpaper.uis.tui2.components.PseudoTabBar;
+import org.bonsaimind.jmathpaper.uis.tui2.components.TailFollowingTable;
 
 import com.googlecode.lanterna.TextColor.ANSI;
 import com.googlecode.lanterna.graphics.SimpleTheme;
@@ -45,6 +48,7 @@ import com.googlecode.lanterna.gui2.Window;
 import com.googlecode.lanterna.gui2.Window.Hint;
 import com.googlecode.lanterna.gui2.table.DefaultTableRenderer;
 import com.googlecode.lanterna.gui2.table.Table;
+import com.googlecode.lanterna.gui2.table.TableModel;
 import com.googlecode.lanterna.input.KeyStroke;
 import com.googlecode.lanterna.input.KeyType;
 import com.googlecode.lanterna.screen.Screen;
@@ -58,6 +62,7 @@ public class Tui2 extends AbstractPapersUi {
 	private Table<String> expressionsTable = null;
 	private EventExtendedTextBox inputTextBox = null;
 	private TextBox notesTextBox = null;
+	private String pendingMessage = null;
 	private Screen screen = null;
 	private PseudoTabBar<Paper> tabBar = null;
 	private Window window = null;
@@ -102,7 +107,7 @@ public class Tui2 extends AbstractPapersUi {
 		southPanel.addComponent(errorLabel, Location.CENTER);
 		southPanel.addComponent(inputTextBox, Location.BOTTOM);
 		
-		expressionsTable = new Table<String>("ID", "Expression", "Result")
+		expressionsTable = new TailFollowingTable<String>("ID", "Expression", "Result")
 				.setCellSelection(false)
 				.setEscapeByArrowKey(false);
 		((DefaultTableRenderer<?>)expressionsTable.getRenderer()).setExpandableColumns(Arrays.asList(Integer.valueOf(1)));
@@ -154,6 +159,8 @@ public class Tui2 extends AbstractPapersUi {
 				ANSI.WHITE,
 				ANSI.BLACK));
 		
+		updateExpressionTable(0);
+		
 		gui.addWindowAndWait(window);
 	}
 	
@@ -163,9 +170,8 @@ public class Tui2 extends AbstractPapersUi {
 	}
 	
 	@Override
-	protected void currentPaperHasBeenModified() {
-		clearExpressionsTable();
-		updateExpressionTable();
+	protected void currentPaperHasBeenModified(int firstChangedIndex) {
+		updateExpressionTable(firstChangedIndex);
 	}
 	
 	@Override
@@ -175,13 +181,16 @@ public class Tui2 extends AbstractPapersUi {
 	
 	@Override
 	protected void currentPaperHasBeenReset() {
-		clearExpressionsTable();
-		updateExpressionTable();
+		updateExpressionTable(0);
 	}
 	
 	@Override
 	protected void currentSelectedPaperHasChanged() {
-		updateExpressionTable();
+		// Papers which are only selected while opening them at startup are
+		// not displayed, so there is no need to wait for their evaluation.
+		if (screen != null) {
+			updateExpressionTable(0);
+		}
 	}
 	
 	protected void setMessage(String message) {
@@ -201,14 +210,23 @@ public class Tui2 extends AbstractPapersUi {
 		}
 	}
 	
+	@Override
+	protected void showSearchResults(String term, List<EvaluatedExpression> evaluatedExpressions) {
+		// The input is reset after processing, so the message is only shown
+		// after that.
+		pendingMessage = getSearchResultsSummary(evaluatedExpressions);
+	}
+	
 	private void addTab(Paper paper) {
 		tabBar.addTab(papers.indexOf(paper), getShortPaperTitle(paper), paper);
 	}
 	
 	private void clearExpressionsTable() {
-		while (expressionsTable.getTableModel().getRowCount() > 0) {
-			expressionsTable.getTableModel().removeRow(0);
-		}
+		// Replacing the model is a lot cheaper than removing every row on its
+		// own, which would fire an event for every row.
+		expressionsTable.setTableModel(new TableModel<String>(
+				expressionsTable.getTableModel().getColumnLabels().toArray(new String[0])));
+		expressionsTable.setSelectedRow(-1);
 	}
 	
 	private void onInputTextBoxDownKey(EventExtendedTextBox textBox) {
@@ -219,6 +237,11 @@ public class Tui2 extends AbstractPapersUi {
 		try {
 			process(inputTextBox.getText());
 			resetInput();
+			
+			if (pendingMessage != null) {
+				setMessage(pendingMessage);
+				pendingMessage = null;
+			}
 		} catch (Exception e) {
 			if (e.getMessage() != null) {
 				setMessage(e.getMessage());
@@ -245,7 +268,7 @@ public class Tui2 extends AbstractPapersUi {
 		
 		if (newSelectedTabIndex >= 0) {
 			setPaper(papers.get(newSelectedTabIndex));
-			updateExpressionTable();
+			updateExpressionTable(0);
 		}
 	}
 	
@@ -294,17 +317,53 @@ public class Tui2 extends AbstractPapersUi {
 		}
 	}
 	
-	private void updateExpressionTable() {
-		if (paper != null) {
-			for (int index = expressionsTable.getTableModel().getRowCount(); index < paper.getEvaluatedExpressions().size(); index++) {
-				EvaluatedExpression evaluatedExpression = paper.getEvaluatedExpressions().get(index);
-				
-				expressionsTable.getTableModel().addRow(
-						evaluatedExpression.getId(),
-						evaluatedExpression.getExpression(),
-						evaluatedExpression.getFormattedResult(paper.getNumberFormat()));
-				expressionsTable.setSelectedRow(-1);
-			}
+	private static final void updateCell(TableModel<String> tableModel, int columnIndex, int rowIndex, String value) {
+		if (!Objects.equals(tableModel.getCell(columnIndex, rowIndex), value)) {
+			tableModel.setCell(columnIndex, rowIndex, value);
+		}
+	}
+	
+	/**
+	 * Updates the table with the expressions of the current {@link Paper}.
+	 * <p>
+	 * Rows are only added or removed at the end, existing rows before the
+	 * given index are left untouched, of the others only the cells whose value
+	 * has changed are updated.
+	 * 
+	 * @param firstChangedIndex The index of the first expression which has
+	 *        been added or changed, zero if all of them might have changed,
+	 *        for example after the {@link Paper} has been reevaluated.
+	 */
+	private void updateExpressionTable(int firstChangedIndex) {
+		if (paper == null || paper.getEvaluatedExpressions().isEmpty()) {
+			clearExpressionsTable();
+			return;
+		}
+		
+		TableModel<String> tableModel = expressionsTable.getTableModel();
+		List<EvaluatedExpression> evaluatedExpressions = paper.getEvaluatedExpressions();
+		
+		while (tableModel.getRowCount() > evaluatedExpressions.size()) {
+			tableModel.removeRow(tableModel.getRowCount() - 1);
+		}
+		
+		for (int index = Math.max(0, firstChangedIndex); index < tableModel.getRowCount(); index++) {
+			EvaluatedExpression evaluatedExpression = evaluatedExpressions.get(index);
+			
+			updateCell(tableModel, 0, index, evaluatedExpression.getId());
+			updateCell(tableModel, 1, index, evaluatedExpression.getExpression());
+			updateCell(tableModel, 2, index, evaluatedExpression.getFormattedResult(paper.getNumberFormat()));
 		}
+		
+		for (int index = tableModel.getRowCount(); index < evaluatedExpressions.size(); index++) {
+			EvaluatedExpression evaluatedExpression = evaluatedExpressions.get(index);
+			
+			tableModel.addRow(
+					evaluatedExpression.getId(),
+					evaluatedExpression.getExpression(),
+					evaluatedExpression.getFormattedResult(paper.getNumberFormat()));
+		}
+		
+		expressionsTable.setSelectedRow(-1);
 	}
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.uis.tui2.components;
+
+import com.googlecode.lanterna.gui2.table.Table;
+
+/**
+ * {@link TailFollowingTable} is a {@link Table} which only renders the rows
+ * which fit into its size and which keeps the last row visible as long as no
+ * row is selected.
+ * <p>
+ * The default {@link Table} renders every row of the model on every draw,
+ * which becomes slow with many rows.
+ */
+public class TailFollowingTable<V> extends Table<V> {
+	public TailFollowingTable(String... columnLabels) {
+		super(columnLabels);
+	}
+	
+	@Override
+	protected void onBeforeDrawing() {
+		super.onBeforeDrawing();
+		
+		// One row is taken by the header.
+		int visibleRows = Math.max(1, getSize().getRows() - 1);
+		
+		if (visibleRows != getVisibleRows()) {
+			setVisibleRows(visibleRows);
+		}
+		
+		if (getSelectedRow() < 0) {
+			setViewTopRow(Math.max(0, getTableModel().getRowCount() - visibleRows));
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.core;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.Random;
+
+/**
+ * A simple benchmark which compares {@link BigDecimalFormat} with
+ * {@link DecimalFormat} using the default result format of a {@link Paper}.
+ * <p>
+ * This is not run as part of the tests, run it with {@link #main(String[])}.
+ */
+public final class BenchmarkBigDecimalFormat {
+	private static final int ITERATIONS = 20;
+	private static final int VALUES_COUNT = 100000;
+	
+	private BenchmarkBigDecimalFormat() {
+		super();
+	}
+	
+	public static final void main(String[] args) {
+		String pattern = ",##0.################################";
+		
+		BigDecimal[] values = createValues();
+		
+		DecimalFormat decimalFormat = new DecimalFormat(pattern);
+		decimalFormat.setRoundingMode(RoundingMode.HALF_UP);
+		
+		BigDecimalFormat bigDecimalFormat = new BigDecimalFormat(pattern, RoundingMode.HALF_UP);
+		
+		for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+			long decimalFormatTime = measure(decimalFormat, values);
+			long bigDecimalFormatTime = measure(bigDecimalFormat, values);
+			
+			System.out.println(String.format("%2d: DecimalFormat %6d ms, BigDecimalFormat %6d ms",
+					Integer.valueOf(iteration),
+					Long.valueOf(decimalFormatTime / 1000000),
+					Long.valueOf(bigDecimalFormatTime / 1000000)));
+		}
+	}
+	
+	private static final BigDecimal[] createValues() {
+		Random random = new Random(1);
+		MathContext mathContext = new MathContext(32, RoundingMode.HALF_UP);
+		
+		BigDecimal[] values = new BigDecimal[VALUES_COUNT];
+		
+		for (int index = 0; index < values.length; index++) {
+			values[index] = BigDecimal.valueOf(random.nextGaussian())
+					.multiply(BigDecimal.TEN.pow(random.nextInt(12)), mathContext)
+					.divide(BigDecimal.valueOf(random.nextInt(1000) + 1), mathContext);
+		}
+		
+		return values;
+	}
+	
+	private static final long measure(NumberFormat numberFormat, BigDecimal[] values) {
+		long length = 0;
+		long start = System.nanoTime();
+		
+		for (BigDecimal value : values) {
+			if (numberFormat instanceof BigDecimalFormat) {
+				length = length + ((BigDecimalFormat)numberFormat).format(value).length();
+			} else {
+				length = length + numberFormat.format(value).length();
+			}
+		}
+		
+		long time = System.nanoTime() - start;
+		
+		if (length == 0) {
+			throw new IllegalStateException("Nothing has been formatted.");
+		}
+		
+		return time;
+	}
+}
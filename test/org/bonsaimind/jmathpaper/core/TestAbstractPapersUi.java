@@ -19,8 +19,13 @@
 
 package org.bonsaimind.jmathpaper.core;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -35,6 +40,7 @@ import org.junit.Test;
 
 public class TestAbstractPapersUi extends AbstractPapersUi {
 	private String clipboard = "";
+	private List<Integer> modifications = new ArrayList<>();
 	private volatile boolean quitCalled = false;
 	
 	public TestAbstractPapersUi() {
@@ -187,6 +193,144 @@ public class TestAbstractPapersUi extends AbstractPapersUi {
 		assertLastResult("1000");
 	}
 	
+	@Test
+	public void testOpenFailing() throws CommandExecutionException, InvalidExpressionException, IOException {
+		Path file = Files.createTempFile("jmathpaper", ".jmathpaper");
+		
+		try {
+			Files.write(file, Arrays.asList("#1 1+1 = 2", "#2 1+ = 0", "#3 3+3 = 6", "", "Some notes."), StandardCharsets.UTF_8);
+			
+			open(file);
+			
+			try {
+				process("4+4");
+				Assert.fail("The failure of the evaluation should have been reported.");
+			} catch (IllegalStateException e) {
+				// Expected.
+			}
+			
+			try {
+				process("4+4");
+				Assert.fail("A partially evaluated paper should not be changeable.");
+			} catch (IllegalStateException e) {
+				// Expected.
+			}
+			
+			try {
+				save();
+				Assert.fail("A partially evaluated paper should not be saveable.");
+			} catch (IllegalStateException e) {
+				// Expected.
+			}
+			
+			Assert.assertEquals(1, getPaper().getEvaluatedExpressions().size());
+			Assert.assertEquals(
+					Arrays.asList("#1 1+1 = 2", "#2 1+ = 0", "#3 3+3 = 6", "", "Some notes."),
+					Files.readAllLines(file, StandardCharsets.UTF_8));
+			
+			clear();
+			process("4+4");
+			save();
+			
+			List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+			
+			Assert.assertEquals(3, lines.size());
+			Assert.assertTrue(lines.get(0).matches("#1 +4\\+4 += 8"));
+			Assert.assertEquals(Arrays.asList("", "Some notes."), lines.subList(1, 3));
+		} finally {
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void testOpenMultiple() throws InvalidExpressionException, IOException {
+		List<Path> files = new ArrayList<>();
+		
+		try {
+			for (int counter = 1; counter <= 12; counter++) {
+				Path file = Files.createTempFile("jmathpaper", ".jmathpaper");
+				files.add(file);
+				
+				List<String> lines = new ArrayList<>();
+				
+				for (int line = 1; line <= 50; line++) {
+					lines.add("#" + line + " " + counter + "*" + line + " = 0");
+				}
+				
+				Files.write(file, lines, StandardCharsets.UTF_8);
+			}
+			
+			for (Path file : files) {
+				open(file);
+			}
+			
+			Assert.assertEquals(files.size(), papers.size());
+			
+			for (int index = 0; index < files.size(); index++) {
+				Paper openedPaper = papers.get(index);
+				
+				Assert.assertEquals(files.get(index), openedPaper.getFile());
+				Assert.assertEquals(50, openedPaper.getEvaluatedExpressions().size());
+				Assert.assertEquals(
+						new BigDecimal((index + 1) * 50).stripTrailingZeros(),
+						openedPaper.getEvaluatedExpressions().get(49).getResult().stripTrailingZeros());
+				Assert.assertFalse(openedPaper.isChanged());
+			}
+			
+			Assert.assertSame(papers.get(papers.size() - 1), paper);
+		} finally {
+			for (Path file : files) {
+				Files.delete(file);
+			}
+		}
+	}
+	
+	@Test
+	public void testOptionNumberFormat() throws CommandExecutionException, InvalidExpressionException {
+		process("1000+1/4");
+		
+		EvaluatedExpression evaluatedExpression = paper.getEvaluatedExpressions().get(0);
+		Assert.assertEquals("1,000.25", evaluatedExpression.getFormattedResult(paper.getNumberFormat()));
+		
+		process("option format 0.0");
+		
+		// Changing the format must not evaluate the paper again.
+		Assert.assertSame(evaluatedExpression, paper.getEvaluatedExpressions().get(0));
+		Assert.assertEquals("1000.3", evaluatedExpression.getFormattedResult(paper.getNumberFormat()));
+		Assert.assertEquals(6, paper.getResultColumnSize());
+		
+		process("option precision 3");
+		
+		Assert.assertNotSame(evaluatedExpression, paper.getEvaluatedExpressions().get(0));
+		assertLastResult("1000");
+	}
+	
+	@Test
+	public void testProcessBatch() throws CommandExecutionException, InvalidExpressionException {
+		process("1+1;2+2;3+3");
+		
+		Assert.assertEquals(Collections.singletonList(Integer.valueOf(0)), modifications);
+		Assert.assertEquals(3, paper.getEvaluatedExpressions().size());
+		
+		modifications.clear();
+		process("4+4");
+		process("5+5;note add Some note");
+		
+		Assert.assertEquals(Arrays.asList(Integer.valueOf(3), Integer.valueOf(4)), modifications);
+		
+		modifications.clear();
+		process("6+6;clear;7+7");
+		
+		Assert.assertEquals(Collections.singletonList(Integer.valueOf(0)), modifications);
+		Assert.assertEquals(1, paper.getEvaluatedExpressions().size());
+		
+		modifications.clear();
+		evaluate("8+8");
+		evaluate("9+9");
+		
+		Assert.assertEquals(Arrays.asList(Integer.valueOf(1), Integer.valueOf(2)), modifications);
+	}
+	
 	@Test
 	public void testSplitParameters() {
 		assertSplitParameters(new String[] {}, null);
@@ -260,6 +404,11 @@ public class TestAbstractPapersUi extends AbstractPapersUi {
 		clipboard = value;
 	}
 	
+	@Override
+	protected void currentPaperHasBeenModified(int firstChangedIndex) {
+		modifications.add(Integer.valueOf(firstChangedIndex));
+	}
+	
 	private final void assertClipboard(String expected) {
 		Assert.assertEquals(expected, clipboard);
 	}
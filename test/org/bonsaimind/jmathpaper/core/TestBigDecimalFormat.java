@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.core;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestBigDecimalFormat {
+	private static final String[] PATTERNS = new String[] {
+			",##0.##########",
+			",##0.",
+			",##0",
+			"#,##,##0",
+			"#,#0.0#",
+			"0",
+			"0.00",
+			"0.###",
+			"00.0",
+			"000,000.000##" };
+	
+	private static final String[] VALUES = new String[] {
+			"0",
+			"-0",
+			"0.00000",
+			"0.5",
+			"-0.5",
+			"-0.001",
+			"-0.00001",
+			"1",
+			"-2.5",
+			"12.5",
+			"123.4565",
+			"999.9999",
+			"1234567.891",
+			"123456789",
+			"-98765432109876543210.0123456789",
+			"1E+3",
+			"1E-10",
+			"1E+30" };
+	
+	@Test
+	public void testFormatMatchesDecimalFormat() {
+		DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(Locale.ENGLISH);
+		
+		for (String pattern : PATTERNS) {
+			for (RoundingMode roundingMode : RoundingMode.values()) {
+				// DecimalFormat does not round values which are far below the
+				// last digit correctly with the directed rounding modes.
+				if (roundingMode == RoundingMode.UNNECESSARY
+						|| roundingMode == RoundingMode.UP
+						|| roundingMode == RoundingMode.CEILING
+						|| roundingMode == RoundingMode.FLOOR) {
+					continue;
+				}
+				
+				BigDecimalFormat bigDecimalFormat = new BigDecimalFormat(pattern, roundingMode, symbols);
+				DecimalFormat decimalFormat = new DecimalFormat(pattern, symbols);
+				decimalFormat.setRoundingMode(roundingMode);
+				
+				for (String value : VALUES) {
+					BigDecimal number = new BigDecimal(value);
+					
+					Assert.assertEquals(
+							pattern + " " + roundingMode + " " + value,
+							decimalFormat.format(number),
+							bigDecimalFormat.format(number));
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testFormatDirectedRoundingModes() {
+		DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(Locale.ENGLISH);
+		
+		Assert.assertEquals("1", new BigDecimalFormat(",##0", RoundingMode.UP, symbols).format(new BigDecimal("0.001")));
+		Assert.assertEquals("-1", new BigDecimalFormat(",##0", RoundingMode.UP, symbols).format(new BigDecimal("-0.001")));
+		Assert.assertEquals("0.01", new BigDecimalFormat("0.00", RoundingMode.CEILING, symbols).format(new BigDecimal("1E-10")));
+		Assert.assertEquals("-0.00", new BigDecimalFormat("0.00", RoundingMode.CEILING, symbols).format(new BigDecimal("-1E-10")));
+		Assert.assertEquals("-0.01", new BigDecimalFormat("0.00", RoundingMode.FLOOR, symbols).format(new BigDecimal("-0.00001")));
+		Assert.assertEquals("1,234.57", new BigDecimalFormat(",##0.##", RoundingMode.CEILING, symbols).format(new BigDecimal("1234.561")));
+		Assert.assertEquals("-1,234.57", new BigDecimalFormat(",##0.##", RoundingMode.FLOOR, symbols).format(new BigDecimal("-1234.561")));
+	}
+	
+	@Test
+	public void testFormatWithSymbols() {
+		DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(Locale.GERMAN);
+		
+		Assert.assertEquals("-1.234.567,89", new BigDecimalFormat(",##0.##", RoundingMode.HALF_UP, symbols).format(new BigDecimal("-1234567.891")));
+	}
+	
+	@Test
+	public void testImmutable() {
+		BigDecimalFormat format = new BigDecimalFormat(",##0.##", RoundingMode.HALF_UP);
+		
+		try {
+			format.setMaximumFractionDigits(5);
+			Assert.fail("BigDecimalFormat should not be modifiable.");
+		} catch (UnsupportedOperationException e) {
+			// Expected.
+		}
+		
+		Assert.assertEquals(2, format.getMaximumFractionDigits());
+		Assert.assertEquals(RoundingMode.HALF_UP, format.getRoundingMode());
+	}
+	
+	@Test
+	public void testUnsupportedPatterns() {
+		assertUnsupported("#.##");
+		assertUnsupported("#");
+		assertUnsupported(".00");
+		assertUnsupported("0#.00");
+		assertUnsupported("0,.00");
+		assertUnsupported("0.0#0");
+		assertUnsupported("0.00%");
+		assertUnsupported("0.00E0");
+		assertUnsupported("0.00;(0.00)");
+	}
+	
+	private static final void assertUnsupported(String pattern) {
+		try {
+			new BigDecimalFormat(pattern, RoundingMode.HALF_UP);
+			Assert.fail("Pattern <" + pattern + "> should not be supported.");
+		} catch (IllegalArgumentException e) {
+			// Expected.
+		}
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestColumnSizeTracker {
+	@Test
+	public void testAddRemove() {
+		ColumnSizeTracker tracker = new ColumnSizeTracker();
+		Assert.assertEquals(0, tracker.getMaximum());
+		
+		tracker.add(3);
+		tracker.add(7);
+		tracker.add(7);
+		tracker.add(150);
+		Assert.assertEquals(150, tracker.getMaximum());
+		
+		tracker.remove(150);
+		Assert.assertEquals(7, tracker.getMaximum());
+		
+		tracker.remove(7);
+		Assert.assertEquals(7, tracker.getMaximum());
+		
+		tracker.remove(7);
+		Assert.assertEquals(3, tracker.getMaximum());
+		
+		// Sizes which were never added are ignored.
+		tracker.remove(5);
+		tracker.remove(500);
+		Assert.assertEquals(3, tracker.getMaximum());
+		
+		tracker.clear();
+		Assert.assertEquals(0, tracker.getMaximum());
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.core;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.bonsaimind.jmathpaper.core.resources.ResourceLoader;
+import org.bonsaimind.jmathpaper.core.units.UnitConverter;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestEngine extends AbstractExpressionTest {
+	@Test
+	public void testConcurrentEvaluate() throws Exception {
+		PreparedExpression preparedExpression = new Engine().compile("price * qty + 1", Arrays.asList("price", "qty"));
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		List<Thread> threads = new ArrayList<>();
+		
+		for (int counter = 0; counter < 4; counter++) {
+			int offset = counter;
+			
+			Thread thread = new Thread(() -> {
+				try {
+					Bindings bindings = new Bindings();
+					
+					for (int value = 0; value < 2000; value++) {
+						bindings.clear()
+								.with("price", BigDecimal.valueOf(value))
+								.with("qty", BigDecimal.valueOf(offset));
+						
+						assertEquals(
+								BigDecimal.valueOf(value * offset + 1),
+								preparedExpression.evaluate(bindings));
+					}
+				} catch (Throwable th) {
+					failure.compareAndSet(null, th);
+				}
+			});
+			thread.start();
+			
+			threads.add(thread);
+		}
+		
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		
+		if (failure.get() != null) {
+			throw new AssertionError(failure.get());
+		}
+	}
+	
+	@Test
+	public void testEvaluate() throws InvalidExpressionException {
+		Engine engine = new Engine();
+		PreparedExpression preparedExpression = engine.compile("price * qty * (1 - discount)", Arrays.asList("price", "qty", "discount"));
+		
+		Assert.assertEquals(Arrays.asList("price", "qty", "discount"), preparedExpression.getVariables());
+		
+		Bindings bindings = new Bindings()
+				.with("price", "2.5")
+				.with("qty", "4")
+				.with("discount", "0.1");
+		
+		assertEquals(new BigDecimal("9"), preparedExpression.evaluate(bindings));
+		
+		bindings.with("DISCOUNT", "0.5");
+		
+		Assert.assertEquals(3, bindings.size());
+		assertEquals(new BigDecimal("5"), preparedExpression.evaluate(bindings));
+		
+		try {
+			preparedExpression.evaluate(bindings.clear().with("price", "1"));
+			Assert.fail("Evaluating without all values should have failed.");
+		} catch (InvalidExpressionException e) {
+			Assert.assertTrue(e.getMessage().contains("qty"));
+		}
+		
+		try {
+			engine.compile("ff(x) = x * 2");
+			Assert.fail("Compiling a function definition should have failed.");
+		} catch (InvalidExpressionException e) {
+			// Expected.
+		}
+	}
+	
+	@Test
+	public void testSnapshot() throws InvalidExpressionException {
+		Paper paper = new Paper();
+		paper.evaluate("rate = 0.2");
+		paper.evaluate("tax(x) = x * rate");
+		
+		Engine engine = new Engine(paper.getSnapshot());
+		
+		paper.evaluate("rate = 0.3");
+		
+		assertEquals(new BigDecimal("20"), engine.compile("tax(amount)", Arrays.asList("amount")).evaluate(new Bindings().with("amount", "100")));
+		
+		PreparedExpression preparedExpression = engine.compile("rate * 10");
+		
+		assertEquals(new BigDecimal("2"), preparedExpression.evaluate(null));
+		assertEquals(new BigDecimal("5"), preparedExpression.evaluate(new Bindings().with("rate", "0.5")));
+		assertEquals(new BigDecimal("2"), preparedExpression.evaluate(null));
+	}
+	
+	@Test
+	public void testUnits() throws InvalidExpressionException {
+		UnitConverter unitConverter = new UnitConverter();
+		ResourceLoader.processResource("units/si.prefixes", unitConverter::loadPrefix);
+		ResourceLoader.processResource("units/default.units", unitConverter::loadUnit);
+		ResourceLoader.processResource("units/default.conversions", unitConverter::loadConversion);
+		
+		Engine engine = new Engine(unitConverter);
+		
+		PreparedExpression conversion = engine.compile("length m in cm", Arrays.asList("length"));
+		
+		Assert.assertEquals("centimeter", conversion.getUnit().toString());
+		assertEquals(new BigDecimal("250"), conversion.evaluate(new Bindings().with("length", "2.5")));
+		
+		PreparedExpression variable = engine.compile("m * 2", Arrays.asList("m"));
+		
+		Assert.assertTrue(variable.getUnit().isOne());
+		assertEquals(new BigDecimal("6"), variable.evaluate(new Bindings().with("m", "3")));
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.core;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestEvaluationLimits {
+	@Test
+	public void testCancel() throws InvalidExpressionException, InterruptedException {
+		Evaluator evaluator = new Evaluator();
+		evaluator.evaluate("cc(n)=n");
+		evaluator.evaluate("dd(n)=IF(n<1,1,cc(n-1)+cc(n-1))");
+		evaluator.evaluate("cc(n)=dd(n)");
+		
+		Thread canceller = new Thread(() -> {
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				// Ignore it.
+			}
+			
+			evaluator.cancel();
+		});
+		canceller.start();
+		
+		try {
+			evaluator.evaluate("cc(60)");
+			Assert.fail("The evaluation should have been cancelled.");
+		} catch (InvalidExpressionException e) {
+			Assert.assertTrue(e.getMessage().contains("cancelled"));
+		}
+		
+		canceller.join();
+		
+		Assert.assertEquals(0, new BigDecimal("2").compareTo(evaluator.evaluate("1+1").getResult()));
+	}
+	
+	@Test
+	public void testMaxDigits() throws InvalidExpressionException {
+		Evaluator evaluator = new Evaluator();
+		evaluator.getLimits().setMaxDigits(100);
+		
+		evaluator.evaluate("1/3");
+		
+		evaluator.setCalculationMathContext(new MathContext(200, RoundingMode.HALF_UP));
+		assertFailure(evaluator, "1/3", "precision");
+		
+		Paper paper = new Paper();
+		paper.getEvaluationLimits().setMaxDigits(100);
+		paper.setPrecision(50);
+		
+		try {
+			paper.setPrecision(0);
+			Assert.fail("An unlimited precision should not be allowed.");
+		} catch (IllegalArgumentException e) {
+			Assert.assertEquals(50, paper.getPrecision());
+		}
+	}
+	
+	@Test
+	public void testMaxDuration() throws InvalidExpressionException {
+		Evaluator evaluator = new Evaluator();
+		evaluator.getLimits().setMaxDuration(200);
+		evaluator.evaluate("cc(n)=n");
+		evaluator.evaluate("dd(n)=IF(n<1,1,cc(n-1)+cc(n-1))");
+		evaluator.evaluate("cc(n)=dd(n)");
+		
+		assertFailure(evaluator, "cc(60)", "200 ms");
+		
+		Assert.assertEquals(0, new BigDecimal("8").compareTo(evaluator.evaluate("cc(3)").getResult()));
+	}
+	
+	@Test
+	public void testMaxExponent() throws InvalidExpressionException {
+		Evaluator evaluator = new Evaluator();
+		evaluator.getLimits().setMaxExponent(1000);
+		
+		assertFailure(evaluator, "10^999999999", "exponent");
+		assertFailure(evaluator, "FACT(100000)", "exponent");
+		assertFailure(evaluator, "FLOOR(10^5000/7)", "exponent");
+		assertFailure(evaluator, "ROUND(1.5, 999999999)", "exponent");
+		
+		Assert.assertEquals(0, new BigDecimal("120").compareTo(evaluator.evaluate("FACT(5)").getResult()));
+		Assert.assertEquals(0, new BigDecimal("1E+999").compareTo(evaluator.evaluate("10^999").getResult()));
+	}
+	
+	@Test
+	public void testMaxLines() throws InvalidExpressionException {
+		Evaluator evaluator = new Evaluator();
+		evaluator.getLimits().setMaxLines(2);
+		
+		evaluator.evaluate("1");
+		evaluator.evaluate("2");
+		
+		assertFailure(evaluator, "3", "lines");
+		
+		evaluator.reset();
+		evaluator.evaluate("3");
+	}
+	
+	@Test
+	public void testMaxRecursionDepth() throws InvalidExpressionException {
+		Evaluator evaluator = new Evaluator();
+		evaluator.getLimits().setMaxRecursionDepth(16);
+		evaluator.evaluate("pp(x)=x");
+		evaluator.evaluate("qq(x)=pp(x)+1");
+		
+		Assert.assertEquals(0, new BigDecimal("2").compareTo(evaluator.evaluate("qq(1)").getResult()));
+		
+		evaluator.evaluate("pp(x)=qq(x)");
+		
+		assertFailure(evaluator, "pp(1)", "recursion depth");
+	}
+	
+	private static final void assertFailure(Evaluator evaluator, String expression, String expectedMessagePart) {
+		try {
+			evaluator.evaluate(expression);
+			Assert.fail("Evaluating \"" + expression + "\" should have failed.");
+		} catch (InvalidExpressionException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains(expectedMessagePart));
+		}
+	}
+}
@@ -19,11 +19,78 @@
 
 package org.bonsaimind.jmathpaper.core;
 
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
 import org.bonsaimind.jmathpaper.core.resources.ResourceLoader;
 import org.junit.Assert;
 import org.junit.Test;
 
 public class TestEvaluator extends AbstractExpressionTest {
+	@Test
+	public void testAdaptivePrecision() throws InvalidExpressionException {
+		String[] expressions = new String[] {
+				"1+1",
+				"1/3",
+				"2/3",
+				"sqrt(2)",
+				"1/(1/60)",
+				"f(x)=x/7",
+				"f(22)",
+				"0.125*3",
+				"1/3*3",
+				"10^20/7",
+				"(1+10^-40)-1",
+				"(10^30+1)-10^30",
+				"(1+10^-100)-1+10^-50"
+		};
+		
+		for (int precision : new int[] { 2, 5, 16, 32 }) {
+			for (RoundingMode roundingMode : new RoundingMode[] { RoundingMode.HALF_UP, RoundingMode.DOWN, RoundingMode.CEILING }) {
+				Evaluator evaluator = new Evaluator();
+				evaluator.setCalculationMathContext(new MathContext(Math.max(precision * 2, 4), roundingMode));
+				evaluator.setResultMathContext(new MathContext(precision, roundingMode));
+				
+				Evaluator adaptiveEvaluator = new Evaluator(evaluator);
+				adaptiveEvaluator.setAdaptivePrecision(true);
+				
+				for (String expression : expressions) {
+					assertEquals(
+							evaluator.evaluate(expression).getResult(),
+							adaptiveEvaluator.evaluate(expression).getResult());
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testAdaptivePrecisionCancellation() throws InvalidExpressionException {
+		String[] expressions = new String[] {
+				"(1+10^-40)-1",
+				"(1+10^-70)-1",
+				"(1+10^-100)-1",
+				"(10^60+1)-10^60",
+				"(1+10^-60)*10^60-10^60",
+				"(1+10^-100)-1+10^-50"
+		};
+		
+		Evaluator evaluator = new Evaluator();
+		evaluator.setCalculationMathContext(new MathContext(200, RoundingMode.HALF_UP));
+		evaluator.setResultMathContext(new MathContext(32, RoundingMode.HALF_UP));
+		
+		Evaluator adaptiveEvaluator = new Evaluator(evaluator);
+		adaptiveEvaluator.setAdaptivePrecision(true);
+		
+		for (String expression : expressions) {
+			assertEquals(
+					evaluator.evaluate(expression).getResult(),
+					adaptiveEvaluator.evaluate(expression).getResult());
+		}
+		
+		assertEquals(new BigDecimal("1E-40"), adaptiveEvaluator.evaluate("(1+10^-40)-1").getResult());
+	}
+	
 	@Test
 	public void testAliases() throws InvalidExpressionException {
 		Evaluator evaluator = new Evaluator();
@@ -19,10 +19,42 @@
 
 package org.bonsaimind.jmathpaper.core;
 
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bonsaimind.jmathpaper.core.units.CompoundUnit;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.udojava.evalex.Expression;
+
 public class TestEvaluatorInternals extends Evaluator {
+	private List<Integer> workingPrecisions = new ArrayList<>();
+	
+	@Test
+	public void testAdaptivePrecisionAcceptsBelowCalculationPrecision() throws InvalidExpressionException {
+		setCalculationMathContext(new MathContext(64, RoundingMode.HALF_UP));
+		setResultMathContext(new MathContext(32, RoundingMode.HALF_UP));
+		setAdaptivePrecision(true);
+		
+		Assert.assertEquals(new BigDecimal("0.33333333333333333333333333333333"), evaluate("1/3").getResult());
+		Assert.assertEquals(Arrays.asList(Integer.valueOf(20), Integer.valueOf(40)), workingPrecisions);
+		
+		workingPrecisions.clear();
+		
+		Assert.assertEquals(new BigDecimal("1.4142135623730950488016887242097"), evaluate("sqrt(2)").getResult());
+		Assert.assertEquals(Arrays.asList(Integer.valueOf(20), Integer.valueOf(40)), workingPrecisions);
+		
+		workingPrecisions.clear();
+		
+		Assert.assertEquals(new BigDecimal("1E-40"), evaluate("(1+10^-40)-1").getResult());
+		Assert.assertEquals(Arrays.asList(Integer.valueOf(20), Integer.valueOf(40), Integer.valueOf(64)), workingPrecisions);
+	}
+	
 	@Test
 	public void testStripComments() {
 		Assert.assertNull(stripComments(null));
@@ -33,4 +65,11 @@ public class TestEvaluatorInternals extends Evaluator {
 		Assert.assertEquals("a  b  c  d ", stripComments("a /* test */ b /* // test */ c /* /* /* test */ d // Test"));
 		Assert.assertEquals("abc ", stripComments("abc /* Malformed but should not throw error."));
 	}
+	
+	@Override
+	protected BigDecimal evaluateMathExpression(Expression mathExpression, CompoundUnit unitSource, CompoundUnit unitTarget, MathContext mathContext) {
+		workingPrecisions.add(Integer.valueOf(mathContext.getPrecision()));
+		
+		return super.evaluateMathExpression(mathExpression, unitSource, unitTarget, mathContext);
+	}
 }
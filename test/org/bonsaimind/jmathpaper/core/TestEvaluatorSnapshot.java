@@ -0,0 +1,143 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.core;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestEvaluatorSnapshot extends AbstractExpressionTest {
+	@Test
+	public void testConcurrentPreview() throws Exception {
+		Evaluator evaluator = new Evaluator();
+		AtomicBoolean running = new AtomicBoolean(true);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		List<Thread> threads = new ArrayList<>();
+		
+		for (int counter = 0; counter < 4; counter++) {
+			Thread thread = new Thread(() -> {
+				try {
+					while (running.get()) {
+						EvaluatorSnapshot snapshot = evaluator.getSnapshot();
+						int size = snapshot.getEvaluatedExpressions().size();
+						
+						if (size > 0) {
+							assertEquals(
+									BigDecimal.valueOf(size + 1),
+									snapshot.preview("#1 + #" + size).getResult());
+							Assert.assertEquals(size, snapshot.getEvaluatedExpressions().size());
+						}
+					}
+				} catch (Throwable th) {
+					failure.compareAndSet(null, th);
+				}
+			});
+			thread.start();
+			
+			threads.add(thread);
+		}
+		
+		for (int value = 1; value <= 500; value++) {
+			evaluator.evaluate(Integer.toString(value));
+		}
+		
+		running.set(false);
+		
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		
+		if (failure.get() != null) {
+			throw new AssertionError(failure.get());
+		}
+	}
+	
+	@Test
+	public void testImmutability() throws InvalidExpressionException {
+		Evaluator evaluator = new Evaluator();
+		evaluator.evaluate("aa=1");
+		
+		EvaluatorSnapshot snapshot = evaluator.getSnapshot();
+		
+		evaluator.evaluate("bb=2");
+		evaluator.loadAlias("alias +10");
+		evaluator.loadUnit("meter 1");
+		
+		Assert.assertEquals(1, snapshot.getEvaluatedExpressions().size());
+		assertEquals(BigDecimal.valueOf(1), snapshot.preview("aa").getResult());
+		assertEquals(BigDecimal.valueOf(3), evaluator.getSnapshot().preview("aa+bb").getResult());
+		assertEquals(BigDecimal.valueOf(11), evaluator.getSnapshot().preview("1 alias").getResult());
+		
+		try {
+			snapshot.preview("aa+bb");
+			Assert.fail("The snapshot should not know about later expressions.");
+		} catch (InvalidExpressionException e) {
+			// Expected.
+		}
+		
+		try {
+			snapshot.preview("1 alias");
+			Assert.fail("The snapshot should not know about later aliases.");
+		} catch (InvalidExpressionException e) {
+			// Expected.
+		}
+		
+		try {
+			snapshot.compile("1 meter");
+			Assert.fail("The snapshot should not know about later units.");
+		} catch (InvalidExpressionException e) {
+			// Expected.
+		}
+		
+		Assert.assertNotNull(evaluator.getSnapshot().compile("1 meter").getUnitSource());
+		
+		EvaluatorSnapshot fullSnapshot = evaluator.getSnapshot();
+		
+		evaluator.reset();
+		
+		Assert.assertEquals(2, fullSnapshot.getEvaluatedExpressions().size());
+		Assert.assertEquals(0, evaluator.getSnapshot().getEvaluatedExpressions().size());
+		
+		evaluator.evaluate("cc=5");
+		
+		Assert.assertEquals("bb", fullSnapshot.getEvaluatedExpressions().get(1).getId());
+	}
+	
+	@Test
+	public void testPreview() throws InvalidExpressionException {
+		Evaluator evaluator = new Evaluator();
+		evaluator.evaluate("ff(x)=x*2");
+		evaluator.evaluate("aa=5");
+		
+		EvaluatorSnapshot snapshot = evaluator.getSnapshot();
+		EvaluatedExpression evaluatedExpression = snapshot.preview("ff(aa)");
+		
+		assertEquals(BigDecimal.valueOf(10), evaluatedExpression.getResult());
+		Assert.assertNull(evaluatedExpression.getId());
+		Assert.assertEquals(2, evaluator.getEvaluatedExpressions().size());
+		
+		assertEquals(BigDecimal.valueOf(7), snapshot.preview(snapshot.compile("aa+2")).getResult());
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestExpressionIndex {
+	@Test
+	public void testClear() {
+		ExpressionIndex index = new ExpressionIndex();
+		index.add("a=5");
+		index.add("b=a*2");
+		
+		index.clear();
+		
+		Assert.assertEquals(0, index.size());
+		Assert.assertArrayEquals(new int[0], index.find("a"));
+		
+		index.add("c=1");
+		
+		Assert.assertArrayEquals(new int[] { 0 }, index.find("c"));
+	}
+	
+	@Test
+	public void testFindEmpty() {
+		ExpressionIndex index = new ExpressionIndex();
+		index.add("a=5");
+		index.add("b=a*2");
+		
+		Assert.assertArrayEquals(new int[] { 0, 1 }, index.find(""));
+		Assert.assertArrayEquals(new int[] { 0, 1 }, index.find(null));
+	}
+	
+	@Test
+	public void testFindIncremental() {
+		ExpressionIndex index = new ExpressionIndex();
+		index.add("width=5");
+		
+		Assert.assertArrayEquals(new int[] { 0 }, index.find("width"));
+		
+		index.add("height=3");
+		index.add("width*height");
+		
+		Assert.assertArrayEquals(new int[] { 0, 2 }, index.find("width"));
+		Assert.assertArrayEquals(new int[] { 1, 2 }, index.find("height"));
+		Assert.assertEquals(3, index.size());
+	}
+	
+	@Test
+	public void testFindLongTerms() {
+		ExpressionIndex index = new ExpressionIndex();
+		index.add("sqrt(16)");
+		index.add("sqr+rt");
+		index.add("x=sqrt(2)*2");
+		
+		Assert.assertArrayEquals(new int[] { 0, 2 }, index.find("sqrt("));
+		Assert.assertArrayEquals(new int[] { 0 }, index.find("sqrt(16)"));
+		Assert.assertArrayEquals(new int[0], index.find("sqrt(3)"));
+		Assert.assertArrayEquals(new int[0], index.find("unknown"));
+	}
+	
+	@Test
+	public void testFindShortTerms() {
+		ExpressionIndex index = new ExpressionIndex();
+		index.add("1+1");
+		index.add("2*2");
+		index.add("11+1");
+		
+		Assert.assertArrayEquals(new int[] { 0, 2 }, index.find("1"));
+		Assert.assertArrayEquals(new int[] { 0, 2 }, index.find("1+"));
+		Assert.assertArrayEquals(new int[] { 2 }, index.find("11"));
+		Assert.assertArrayEquals(new int[] { 1 }, index.find("2*2"));
+		Assert.assertArrayEquals(new int[0], index.find("3"));
+	}
+}
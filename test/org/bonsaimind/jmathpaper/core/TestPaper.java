@@ -19,7 +19,13 @@
 
 package org.bonsaimind.jmathpaper.core;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -77,6 +83,88 @@ public class TestPaper extends AbstractExpressionTest {
 		assertExpression("#2", "3", "b(1)", paper.evaluate("b(1)"));
 	}
 	
+	@Test
+	public void testLoadLazilyFrom() throws InterruptedException, InvalidExpressionException, IOException {
+		Path file = Files.createTempFile("jmathpaper", ".jmathpaper");
+		
+		try {
+			Files.write(file, Arrays.asList("#1 1+1 = 2", "a  a=5 = 5", "#2 a*2 = 10", "", "Some notes."), StandardCharsets.UTF_8);
+			
+			Paper paper = new Paper();
+			paper.loadLazilyFrom(file);
+			
+			Assert.assertTrue(paper.isPending());
+			Assert.assertFalse(paper.isChanged());
+			
+			Thread thread = new Thread(paper::awaitEvaluation);
+			thread.start();
+			
+			Assert.assertEquals(3, paper.getEvaluatedExpressions().size());
+			Assert.assertFalse(paper.isPending());
+			Assert.assertFalse(paper.isChanged());
+			
+			assertExpression("#1", "2", "1+1", paper.getEvaluatedExpressions().get(0));
+			assertExpression("a", "5", "a=5", paper.getEvaluatedExpressions().get(1));
+			assertExpression("#2", "10", "a*2", paper.getEvaluatedExpressions().get(2));
+			Assert.assertEquals("Some notes.", paper.getNotes());
+			
+			thread.join();
+			
+			Assert.assertEquals(3, paper.getEvaluatedExpressions().size());
+			
+			paper.checkEvaluation();
+		} finally {
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void testLoadLazilyFromFailure() throws InvalidExpressionException, IOException {
+		Path file = Files.createTempFile("jmathpaper", ".jmathpaper");
+		
+		try {
+			Files.write(file, Arrays.asList("#1 1+1 = 2", "#2 1+ = 0", "#3 3+3 = 6"), StandardCharsets.UTF_8);
+			
+			Paper paper = new Paper();
+			paper.loadLazilyFrom(file);
+			
+			try {
+				paper.checkEvaluation();
+				Assert.fail("The evaluation should have failed.");
+			} catch (InvalidExpressionException e) {
+				// Expected.
+			}
+			
+			Assert.assertFalse(paper.isPending());
+			Assert.assertEquals(1, paper.getEvaluatedExpressions().size());
+			Assert.assertEquals(Arrays.asList("#2 1+ = 0", "#3 3+3 = 6"), paper.getUnevaluatedLines());
+			
+			// The failure is only reported once.
+			paper.checkEvaluation();
+		} finally {
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void testSetNumberFormat() throws InvalidExpressionException {
+		Paper paper = new Paper();
+		EvaluatedExpression evaluatedExpression = paper.evaluate("1000+1/4");
+		
+		Assert.assertEquals("1,000.25", evaluatedExpression.getFormattedResult(paper.getNumberFormat()));
+		Assert.assertEquals(8, paper.getResultColumnSize());
+		
+		paper.setNumberFormat("0.0");
+		paper.reformat();
+		
+		Assert.assertEquals("1000.3", evaluatedExpression.getFormattedResult(paper.getNumberFormat()));
+		Assert.assertEquals(6, paper.getResultColumnSize());
+		
+		paper.setRoundingMode(RoundingMode.FLOOR);
+		
+		Assert.assertEquals("1000.2", evaluatedExpression.getFormattedResult(paper.getNumberFormat()));
+	}
+	
 	@Test
 	public void testSetPrecision() throws InvalidExpressionException {
 		Paper paper = new Paper();
@@ -137,6 +225,27 @@ public class TestPaper extends AbstractExpressionTest {
 		Assert.assertEquals(paper.toString(), secondPaper.toString());
 	}
 	
+	@Test
+	public void testWriteTo() throws InvalidExpressionException, IOException {
+		Paper paper = new Paper();
+		paper.evaluate("1+1");
+		paper.evaluate("a=#1*1000");
+		paper.evaluate("1/3");
+		paper.setNotes("Some test text.");
+		
+		StringWriter writer = new StringWriter();
+		paper.writeTo(writer);
+		
+		Assert.assertEquals(paper.toString(), writer.toString());
+		Assert.assertEquals(
+				paper.format(paper.getEvaluatedExpressions().get(0)) + "\n"
+						+ paper.format(paper.getEvaluatedExpressions().get(1)) + "\n"
+						+ paper.format(paper.getEvaluatedExpressions().get(2)) + "\n"
+						+ "\n"
+						+ "Some test text.\n",
+				writer.toString());
+	}
+	
 	@Test
 	public void testVariabeLoading() throws InvalidExpressionException {
 		Paper paper = new Paper();
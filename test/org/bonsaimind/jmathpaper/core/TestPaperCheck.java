@@ -0,0 +1,103 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.core;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.bonsaimind.jmathpaper.core.configuration.Definitions;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestPaperCheck {
+	@Test
+	public void testCheck() throws InvalidExpressionException, IOException {
+		Path file = Files.createTempFile("jmathpaper", ".jmathpaper");
+		
+		try {
+			Files.write(file, Arrays.asList("#1 1+1 = 2", "a  a=5 = 5", "#2 a*2 = 12", "#3 a = ", "", "Some notes = 3."), StandardCharsets.UTF_8);
+			
+			PaperCheck paperCheck = new PaperCheck(file);
+			paperCheck.check(null);
+			
+			Assert.assertFalse(paperCheck.isUpToDate());
+			Assert.assertEquals(2, paperCheck.getMismatches().size());
+			
+			Assert.assertEquals(3, paperCheck.getMismatches().get(0).getLineNumber());
+			Assert.assertEquals("a*2", paperCheck.getMismatches().get(0).getExpression());
+			Assert.assertEquals("12", paperCheck.getMismatches().get(0).getStoredResult());
+			Assert.assertEquals("10", paperCheck.getMismatches().get(0).getResult());
+			
+			Assert.assertEquals(4, paperCheck.getMismatches().get(1).getLineNumber());
+			Assert.assertEquals("", paperCheck.getMismatches().get(1).getStoredResult());
+			Assert.assertEquals("5", paperCheck.getMismatches().get(1).getResult());
+			
+			paperCheck.rewrite();
+			paperCheck.check(null);
+			
+			Assert.assertTrue(paperCheck.isUpToDate());
+			Assert.assertTrue(Files.readAllLines(file, StandardCharsets.UTF_8).contains("Some notes = 3."));
+		} finally {
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void testCheckOtherNumberFormat() throws InvalidExpressionException, IOException {
+		Path file = Files.createTempFile("jmathpaper", ".jmathpaper");
+		
+		try {
+			Files.write(file, Arrays.asList("#1 5000*2 = 10000", "#2 1/4 = 0.250", "#3 1/3 = 0.33"), StandardCharsets.UTF_8);
+			
+			PaperCheck paperCheck = new PaperCheck(file);
+			paperCheck.check(null);
+			
+			Assert.assertEquals(1, paperCheck.getMismatches().size());
+			Assert.assertEquals(3, paperCheck.getMismatches().get(0).getLineNumber());
+		} finally {
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void testCheckWithDefinitions() throws InvalidExpressionException, IOException {
+		Path file = Files.createTempFile("jmathpaper", ".jmathpaper");
+		
+		try {
+			Files.write(file, Arrays.asList("#1 2thing to m = 2"), StandardCharsets.UTF_8);
+			
+			Definitions definitions = new Definitions();
+			definitions.addUnitDefinition("meter 1 m");
+			definitions.addUnitDefinition("thing 1");
+			definitions.addConversionDefinition("thing 3m");
+			
+			PaperCheck paperCheck = new PaperCheck(file);
+			paperCheck.check(definitions);
+			
+			Assert.assertFalse(paperCheck.isUpToDate());
+			Assert.assertEquals("6", paperCheck.getMismatches().get(0).getResult());
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.core;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestPaperTemplate {
+	@Test
+	public void testEvaluate() throws InvalidExpressionException {
+		Paper paper = new Paper();
+		paper.evaluate("price=10");
+		paper.evaluate("quantity=3");
+		paper.evaluate("rate=0.2");
+		paper.evaluate("total=price*quantity");
+		paper.evaluate("total*rate");
+		paper.evaluate("double(x)=x*2");
+		paper.evaluate("gross=double(total+#1)");
+		
+		PaperTemplate paperTemplate = new PaperTemplate(paper, Arrays.asList("price", "Quantity"));
+		
+		Assert.assertEquals(Arrays.asList("rate", "total", "#1", "double", "gross"), paperTemplate.getIds());
+		Assert.assertEquals(4, paperTemplate.indexOf("gross"));
+		Assert.assertEquals(-1, paperTemplate.indexOf("price"));
+		
+		PaperTemplate.Evaluation evaluation = paperTemplate.newEvaluation();
+		
+		BigDecimal[] results = evaluation.evaluate(new BigDecimal[] { new BigDecimal("5"), new BigDecimal("4") });
+		Assert.assertEquals(0, new BigDecimal("20").compareTo(results[1]));
+		Assert.assertEquals(0, new BigDecimal("4").compareTo(results[2]));
+		Assert.assertNull(results[3]);
+		Assert.assertEquals(0, new BigDecimal("48").compareTo(results[4]));
+		
+		results = evaluation.evaluate(new BigDecimal[] { new BigDecimal("1.5"), new BigDecimal("2") });
+		Assert.assertEquals(0, new BigDecimal("3").compareTo(results[1]));
+		Assert.assertEquals(0, new BigDecimal("7.2").compareTo(results[4]));
+	}
+	
+	@Test(expected = InvalidExpressionException.class)
+	public void testEvaluateFailure() throws InvalidExpressionException {
+		Paper paper = new Paper();
+		paper.evaluate("divisor=1");
+		paper.evaluate("result=10/divisor");
+		
+		new PaperTemplate(paper, Arrays.asList("divisor")).newEvaluation().evaluate(new BigDecimal[] { BigDecimal.ZERO });
+	}
+}
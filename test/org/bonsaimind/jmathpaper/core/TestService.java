@@ -0,0 +1,120 @@
+/*
+ * Copyright 2019, Robert 'Bobby' Zenz
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see <http://www.gnu.org/licenses/>
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.bonsaimind.jmathpaper.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bonsaimind.jmathpaper.core.ui.UiParameters;
+import org.bonsaimind.jmathpaper.uis.service.Service;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestService {
+	@Test
+	public void testFramedError() throws Exception {
+		List<String> lines = runFramed("a 5*(");
+		
+		Assert.assertEquals(1, lines.size());
+		Assert.assertTrue(lines.get(0).startsWith("a error 0 "));
+	}
+	
+	@Test
+	public void testFramedHelp() throws Exception {
+		List<String> lines = runFramed("a help", "b 1+1");
+		
+		String[] header = lines.get(0).split(" ");
+		int count = Integer.parseInt(header[2]);
+		
+		Assert.assertEquals("a", header[0]);
+		Assert.assertEquals("ok", header[1]);
+		Assert.assertTrue(count > 1);
+		Assert.assertTrue(lines.get(count).startsWith("  "));
+		Assert.assertEquals("b ok 1", lines.get(count + 1));
+		Assert.assertEquals(count + 3, lines.size());
+	}
+	
+	@Test
+	public void testFramedMultipleLines() throws Exception {
+		List<String> lines = runFramed("a 1+1; 2+2; 3+3", "b note Some note.");
+		
+		Assert.assertEquals(5, lines.size());
+		Assert.assertEquals("a ok 3", lines.get(0));
+		Assert.assertTrue(lines.get(1).matches("#1 +1\\+1 += 2"));
+		Assert.assertTrue(lines.get(2).matches("#2 +2\\+2 += 4"));
+		Assert.assertTrue(lines.get(3).matches("#3 +3\\+3 += 6"));
+		Assert.assertEquals("b ok 0", lines.get(4));
+	}
+	
+	@Test
+	public void testFramedPartialFailure() throws Exception {
+		List<String> lines = runFramed("a 1+1; 2+2; 5*(", "b 3+3");
+		
+		Assert.assertEquals(5, lines.size());
+		Assert.assertTrue(lines.get(0).startsWith("a error 2 "));
+		Assert.assertTrue(lines.get(1).matches("#1 +1\\+1 += 2"));
+		Assert.assertTrue(lines.get(2).matches("#2 +2\\+2 += 4"));
+		Assert.assertEquals("b ok 1", lines.get(3));
+		Assert.assertTrue(lines.get(4).matches("#3 +3\\+3 += 6"));
+	}
+	
+	@Test
+	public void testFramedSearch() throws Exception {
+		List<String> lines = runFramed("a 1+1; 2+2", "b search 2+2");
+		
+		Assert.assertEquals(6, lines.size());
+		Assert.assertEquals("b ok 2", lines.get(3));
+		Assert.assertTrue(lines.get(4).matches("#2 +2\\+2 += 4"));
+		Assert.assertEquals("1 match: #2", lines.get(5));
+	}
+	
+	@Test
+	public void testUnframedUtf8() throws Exception {
+		List<String> lines = run(new HashMap<>(), "help Grüße");
+		
+		Assert.assertEquals(Arrays.asList("Error: No such help topic: Grüße"), lines);
+	}
+	
+	private static final List<String> run(Map<String, String> parameters, String... input) throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		
+		Service service = new Service(
+				new ByteArrayInputStream(String.join("\n", input).getBytes(StandardCharsets.UTF_8)),
+				new PrintStream(output, true, StandardCharsets.UTF_8.name()));
+		service.init(new UiParameters(parameters));
+		service.new_();
+		service.run();
+		
+		return Arrays.asList(new String(output.toByteArray(), StandardCharsets.UTF_8).split("\\r?\\n"));
+	}
+	
+	private static final List<String> runFramed(String... input) throws Exception {
+		Map<String, String> parameters = new HashMap<>();
+		parameters.put("isFramed", "true");
+		
+		return run(parameters, input);
+	}
+}
@@ -22,6 +22,7 @@ package org.bonsaimind.jmathpaper.core.units;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
+import java.util.function.UnaryOperator;
 
 import org.bonsaimind.jmathpaper.core.resources.ResourceLoader;
 import org.junit.Assert;
@@ -235,6 +236,26 @@ public class TestUnitConverter {
 		assertEquals(new BigDecimal("0.0000035"), unitConverter.getConversionFactor(unitA, unitB, MathContext.DECIMAL128));
 	}
 	
+	@Test
+	public void testCopy() {
+		UnitConverter unitConverter = new UnitConverter();
+		
+		unitConverter.loadUnit("a 1");
+		unitConverter.loadUnit("b 1");
+		unitConverter.loadConversion("a 2b");
+		
+		UnitConverter copiedUnitConverter = new UnitConverter(unitConverter);
+		copiedUnitConverter.loadUnit("c 1");
+		copiedUnitConverter.loadConversion("b 3c");
+		
+		assertEquals(new BigDecimal("4"), copiedUnitConverter.convert("a", "b", new BigDecimal("2"), MathContext.DECIMAL128));
+		assertEquals(new BigDecimal("12"), copiedUnitConverter.convert("a", "c", new BigDecimal("2"), MathContext.DECIMAL128));
+		
+		Assert.assertNotNull(copiedUnitConverter.getUnit("c"));
+		Assert.assertNull(unitConverter.getUnit("c"));
+		Assert.assertNull(unitConverter.getConversions(unitConverter.getUnit("b"), copiedUnitConverter.getUnit("c")));
+	}
+	
 	@Test
 	public void testGetPlural() {
 		UnitConverter unitConverter = new UnitConverter()
@@ -279,6 +300,27 @@ public class TestUnitConverter {
 		assertEquals(new BigDecimal("0.001"), unitConverter.convert("a", "ka", new BigDecimal("1"), MathContext.DECIMAL128));
 	}
 	
+	@Test
+	public void testPrepareConversion() {
+		UnitConverter unitConverter = new UnitConverter();
+		unitConverter.loadUnit("a 1");
+		unitConverter.loadUnit("b 1");
+		unitConverter.loadUnit("c 1");
+		unitConverter.loadConversion("a 2b");
+		unitConverter.loadConversion("c 4b");
+		
+		UnaryOperator<BigDecimal> conversion = unitConverter.prepareConversion(
+				unitConverter.getCompoundUnit("a/c"),
+				unitConverter.getCompoundUnit("b/b"),
+				MathContext.DECIMAL128);
+		
+		assertEquals(new BigDecimal("0.5"), conversion.apply(new BigDecimal("1")));
+		assertEquals(new BigDecimal("3"), conversion.apply(new BigDecimal("6")));
+		assertEquals(
+				unitConverter.convert("a/c", "b/b", new BigDecimal("6"), MathContext.DECIMAL128),
+				conversion.apply(new BigDecimal("6")));
+	}
+	
 	@Test
 	public void testSimpleConversion() {
 		Unit unitA = new Unit("a", 1);